@@ -0,0 +1,52 @@
+package jdepend.framework;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Runs a complete analysis: builds the classes, collects the package
+ * graph and checks it for cycles.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyzeBenchmark {
+
+    /**
+     * Class directory or archive to analyze, or empty for the jdepend
+     * classes.
+     */
+    @Param({""})
+    public String input;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private File directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkData.classDirectory(input);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkData.delete(directory);
+    }
+
+    @Benchmark
+    public boolean analyze() throws IOException {
+        JDepend jdepend = new JDepend();
+        jdepend.addDirectory(directory.getPath());
+        jdepend.setThreads(threads);
+        jdepend.analyze();
+        return jdepend.containsCycles();
+    }
+}
@@ -0,0 +1,80 @@
+package jdepend.framework;
+
+import java.io.File;
+import java.io.Serializable;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+
+/**
+ * An annotation-heavy class parsed by the <code>ClassFileParser</code>
+ * benchmark. Its annotations reference classes, enum constants, nested
+ * annotations and arrays of many packages.
+ */
+
+@AnnotatedFixture.Describe(types = {Serializable.class, Map.class}, target = ElementType.TYPE, text = "fixture")
+@Deprecated
+class AnnotatedFixture {
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Describe {
+        Class<?>[] types() default {};
+
+        ElementType target() default ElementType.FIELD;
+
+        TimeUnit unit() default TimeUnit.SECONDS;
+
+        String text() default "";
+
+        Retention retention() default @Retention(RetentionPolicy.RUNTIME);
+    }
+
+    @Describe(types = {File.class, URI.class})
+    private File file;
+
+    @Describe(types = BigDecimal.class, unit = TimeUnit.MILLISECONDS)
+    private BigDecimal amount;
+
+    @Describe(types = {ByteBuffer.class, Charset.class}, text = "buffer")
+    private ByteBuffer buffer;
+
+    @Describe(types = Pattern.class, retention = @Retention(RetentionPolicy.CLASS))
+    private Pattern pattern;
+
+    @Describe(types = {ZipEntry.class, Level.class}, target = ElementType.FIELD)
+    @Deprecated
+    private List<ZipEntry> entries;
+
+    @Describe(types = Callable.class, target = ElementType.METHOD, unit = TimeUnit.NANOSECONDS)
+    Callable<Level> level() {
+        return null;
+    }
+
+    @Describe(types = {URI.class, Charset.class}, target = ElementType.METHOD)
+    @Deprecated
+    URI resolve(@Describe(types = String.class) String path) {
+        return null;
+    }
+
+    @Describe(types = {Map.class, List.class, Pattern.class}, target = ElementType.METHOD,
+            retention = @Retention(RetentionPolicy.SOURCE))
+    Map<String, Pattern> patterns() {
+        return null;
+    }
+
+    @Describe(types = {TimeUnit.class, BigDecimal.class}, target = ElementType.METHOD, text = "rate")
+    BigDecimal rate(@Describe(types = TimeUnit.class) TimeUnit unit) {
+        return null;
+    }
+}
@@ -0,0 +1,176 @@
+package jdepend.framework;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * The <code>BenchmarkData</code> class prepares the class files the
+ * benchmarks run on.
+ * <p>
+ * An empty input path stands for the jdepend classes themselves, taken
+ * from the class path of the benchmarks. Any other path names a class
+ * directory or a jar, war or zip file.
+ * </p>
+ */
+
+final class BenchmarkData {
+
+    private static final String OWN_CLASSES = "jdepend/";
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Returns the class file of the specified class.
+     */
+    static byte[] classBytes(Class<?> type) throws IOException {
+        InputStream in = type.getResourceAsStream("/" + type.getName().replace('.', '/') + ".class");
+        if (in == null) {
+            throw new IOException("Class file not found: " + type.getName());
+        }
+        try {
+            return readFully(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Copies the class files of the specified input into a new temporary
+     * directory.
+     */
+    static File classDirectory(String path) throws IOException {
+        File source = path.length() == 0 ? codeSource() : new File(path);
+        String prefix = path.length() == 0 ? OWN_CLASSES : "";
+        File dir = File.createTempFile("jdepend-benchmark", "");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Cannot create directory: " + dir);
+        }
+
+        if (source.isDirectory()) {
+            copyTree(source, "", prefix, dir);
+        } else {
+            ZipFile zip = new ZipFile(source);
+            try {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (isClassFile(entry.getName(), prefix) && !entry.isDirectory()) {
+                        InputStream in = zip.getInputStream(entry);
+                        try {
+                            write(in, new File(dir, entry.getName()));
+                        } finally {
+                            in.close();
+                        }
+                    }
+                }
+            } finally {
+                zip.close();
+            }
+        }
+        return dir;
+    }
+
+    /**
+     * Packs the class files of the specified directory into a new
+     * temporary jar file.
+     */
+    static File classJar(File directory) throws IOException {
+        File jar = File.createTempFile("jdepend-benchmark", ".jar");
+        ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(jar)));
+        try {
+            addTree(directory, "", out);
+        } finally {
+            out.close();
+        }
+        return jar;
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static File codeSource() throws IOException {
+        try {
+            return new File(JDepend.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    private static boolean isClassFile(String name, String prefix) {
+        return name.startsWith(prefix) && name.endsWith(".class");
+    }
+
+    private static void copyTree(File source, String name, String prefix, File target) throws IOException {
+        File[] children = source.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            String childName = name + child.getName();
+            if (child.isDirectory()) {
+                copyTree(child, childName + "/", prefix, target);
+            } else if (isClassFile(childName, prefix)) {
+                InputStream in = new FileInputStream(child);
+                try {
+                    write(in, new File(target, childName));
+                } finally {
+                    in.close();
+                }
+            }
+        }
+    }
+
+    private static void addTree(File source, String name, ZipOutputStream out) throws IOException {
+        File[] children = source.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            String childName = name + child.getName();
+            if (child.isDirectory()) {
+                addTree(child, childName + "/", out);
+            } else {
+                out.putNextEntry(new ZipEntry(childName));
+                InputStream in = new FileInputStream(child);
+                try {
+                    out.write(readFully(in));
+                } finally {
+                    in.close();
+                }
+                out.closeEntry();
+            }
+        }
+    }
+
+    private static void write(InputStream in, File file) throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(readFully(in));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,47 @@
+package jdepend.framework;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Parses a single class file with the stream and the byte buffer parser.
+ * The parser is reused, as it is by a <code>JavaClassBuilder</code>.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassFileParserBenchmark {
+
+    @Param({"small", "large", "annotated"})
+    public String classFile;
+
+    @Param({"stream", "buffer"})
+    public String parser;
+
+    private byte[] bytes;
+    private AbstractParser classParser;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (classFile.equals("small")) {
+            bytes = BenchmarkData.classBytes(JavaClass.class);
+        } else if (classFile.equals("large")) {
+            bytes = BenchmarkData.classBytes(ClassFileParser.class);
+        } else {
+            bytes = BenchmarkData.classBytes(AnnotatedFixture.class);
+        }
+        classParser = parser.equals("stream") ? new ClassFileParser() : new ByteBufferClassFileParser();
+    }
+
+    @Benchmark
+    public JavaClass parse() throws IOException {
+        return classParser.parse(ByteBuffer.wrap(bytes));
+    }
+}
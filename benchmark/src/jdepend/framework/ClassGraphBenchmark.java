@@ -0,0 +1,68 @@
+package jdepend.framework;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Builds and queries synthetic class graphs with a fixed number of
+ * random dependencies per class. The largest graph has 500,000 classes
+ * and 10,000,000 dependencies.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx1g")
+public class ClassGraphBenchmark {
+
+    private static final int DEPENDENCIES = 20;
+
+    @Param({"10000", "100000", "500000"})
+    public int classes;
+
+    private ClassTable table;
+    private int[][] rows;
+    private ClassGraph graph;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        table = new ClassTable();
+        rows = new int[classes][];
+        for (int i = 0; i < classes; i++) {
+            table.idOf("p" + (i % 1000) + ".C" + i);
+            rows[i] = new int[DEPENDENCIES];
+            for (int n = 0; n < DEPENDENCIES; n++) {
+                rows[i][n] = random.nextInt(classes);
+            }
+        }
+        graph = build();
+    }
+
+    @Benchmark
+    public ClassGraph build() {
+        ClassGraph.Builder builder = new ClassGraph.Builder(table);
+        for (int i = 0; i < classes; i++) {
+            builder.add(i, rows[i]);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public int reachable() {
+        return graph.getReachable(0).length;
+    }
+
+    @Benchmark
+    public int dependents() {
+        int count = 0;
+        for (int i = 0; i < classes; i++) {
+            count += graph.dependentCount(i);
+        }
+        return count;
+    }
+}
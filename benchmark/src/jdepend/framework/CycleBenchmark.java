@@ -0,0 +1,90 @@
+package jdepend.framework;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Detects the cycles of synthetic package graphs. Every invocation
+ * invalidates the cached cycle information first, so that the strongly
+ * connected components are computed again.
+ * <p>
+ * In a <code>layered</code> graph the packages only depend on packages
+ * with a higher number, except for a few dependencies back to the
+ * previous package, which create small cycles. In a <code>random</code>
+ * graph most packages are part of one large cycle.
+ * </p>
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CycleBenchmark {
+
+    private static final int EFFERENTS = 4;
+
+    @Param({"100", "1000", "10000"})
+    public int packages;
+
+    @Param({"layered", "random"})
+    public String shape;
+
+    private List<JavaPackage> graph;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        graph = new ArrayList<JavaPackage>();
+        for (int i = 0; i < packages; i++) {
+            graph.add(new JavaPackage("p" + i));
+        }
+        for (int i = 0; i < packages; i++) {
+            JavaPackage jPackage = graph.get(i);
+            for (int n = 0; n < EFFERENTS; n++) {
+                int target;
+                if (shape.equals("random")) {
+                    target = random.nextInt(packages);
+                } else if (i + 1 < packages) {
+                    target = i + 1 + random.nextInt(packages - i - 1);
+                } else {
+                    continue;
+                }
+                jPackage.dependsUpon(graph.get(target));
+            }
+            if (shape.equals("layered") && i > 0 && i % 10 == 0) {
+                jPackage.dependsUpon(graph.get(i - 1));
+            }
+        }
+    }
+
+    @Benchmark
+    public int containsCycle() {
+        CycleDetector.graphChanged();
+        int count = 0;
+        for (JavaPackage jPackage : graph) {
+            if (jPackage.containsCycle()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int collectCycle() {
+        CycleDetector.graphChanged();
+        int length = 0;
+        for (JavaPackage jPackage : graph) {
+            List<JavaPackage> cycle = new ArrayList<JavaPackage>();
+            if (jPackage.collectCycle(cycle)) {
+                length += cycle.size();
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,64 @@
+package jdepend.framework;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Builds the classes of a directory tree and of the same classes packed
+ * into a jar file.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JavaClassBuilderBenchmark {
+
+    /**
+     * Class directory or archive to build, or empty for the jdepend
+     * classes.
+     */
+    @Param({""})
+    public String input;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private File directory;
+    private File jar;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkData.classDirectory(input);
+        jar = BenchmarkData.classJar(directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkData.delete(directory);
+        BenchmarkData.delete(jar);
+    }
+
+    @Benchmark
+    public int buildDirectory() throws IOException {
+        return build(directory);
+    }
+
+    @Benchmark
+    public int buildJar() throws IOException {
+        return build(jar);
+    }
+
+    private int build(File file) throws IOException {
+        FileManager fileManager = new FileManager();
+        fileManager.addDirectory(file.getPath());
+        JavaClassBuilder builder = new JavaClassBuilder(fileManager);
+        builder.setThreads(threads);
+        return builder.build().size();
+    }
+}
@@ -0,0 +1,52 @@
+package jdepend.framework;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Parses generic signatures with nested type arguments, bounds and
+ * wildcards.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignatureParserBenchmark {
+
+    private static final String CLASS_SIGNATURE =
+            "<K:Ljava/lang/Object;V::Ljava/lang/Comparable<-TV;>;:Ljava/io/Serializable;>"
+                    + "Ljava/util/AbstractMap<TK;TV;>;"
+                    + "Ljava/util/concurrent/ConcurrentMap<TK;TV;>;"
+                    + "Ljava/util/NavigableMap<TK;Ljava/util/List<TV;>;>;";
+
+    private static final String FIELD_SIGNATURE =
+            "Ljava/util/Map<Ljava/lang/Class<*>;"
+                    + "Ljava/util/List<Ljava/lang/ref/WeakReference<Ljava/util/Map$Entry<Ljava/lang/String;"
+                    + "[Ljava/math/BigDecimal;>;>;>;>;";
+
+    private static final String METHOD_SIGNATURE =
+            "<T:Ljava/lang/Object;E:Ljava/lang/Exception;>"
+                    + "(Ljava/util/Map<Ljava/lang/String;Ljava/util/List<+Ljava/util/Set<TT;>;>;>;"
+                    + "[Ljava/util/concurrent/Future<*>;ILjava/util/function/Function<-TT;+Ljava/net/URI;>;)"
+                    + "Ljava/util/Collection<Ljava/util/Map$Entry<TT;Ljava/nio/file/Path;>;>;"
+                    + "^TE;^Ljava/io/IOException;";
+
+    @Benchmark
+    public SignatureParser classSignature() {
+        return SignatureParser.parseClassSignature(CLASS_SIGNATURE);
+    }
+
+    @Benchmark
+    public SignatureParser fieldSignature() {
+        return SignatureParser.parseFieldSignature(FIELD_SIGNATURE);
+    }
+
+    @Benchmark
+    public SignatureParser methodSignature() {
+        return SignatureParser.parseMethodSignature(METHOD_SIGNATURE);
+    }
+}
@@ -1,8 +1,14 @@
 package jdepend.framework;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -18,6 +24,11 @@ public abstract class AbstractParser {
 
     private List<ParserListener> parseListeners;
     private PackageFilter filter;
+    private PackageTable packageTable;
+    private boolean scanCode;
+    private ClassTable classTable;
+    private int[] classReferences;
+    private int classReferenceCount;
     public static boolean DEBUG = false;
 
 
@@ -40,6 +51,87 @@ public abstract class AbstractParser {
      */
     public abstract JavaClass parse(InputStream is) throws IOException;
 
+    /**
+     * Parses the specified class file.
+     * Registered parser listeners are informed that the resulting
+     * <code>JavaClass</code> was parsed.
+     */
+    public JavaClass parse(File classFile) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(classFile));
+        try {
+            return parse(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Parses the class file contained in the remaining bytes of the
+     * specified buffer. The position of the buffer is not changed.
+     * Registered parser listeners are informed that the resulting
+     * <code>JavaClass</code> was parsed.
+     * <p>
+     * This implementation reads the buffer as a stream. Parsers which
+     * can read the buffer directly, like
+     * <code>ByteBufferClassFileParser</code>, override it, so that the
+     * memory-mapped entries of archives are not copied.
+     * </p>
+     */
+    public JavaClass parse(ByteBuffer buffer) throws IOException {
+        if (buffer.hasArray()) {
+            return parse(new ByteArrayInputStream(buffer.array(),
+                    buffer.arrayOffset() + buffer.position(), buffer.remaining()));
+        }
+
+        final ByteBuffer in = buffer.duplicate();
+        return parse(new InputStream() {
+            @Override
+            public int read() {
+                return in.hasRemaining() ? in.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (!in.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(len, in.remaining());
+                in.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public long skip(long n) {
+                int skipped = (int) Math.max(0, Math.min(n, in.remaining()));
+                in.position(in.position() + skipped);
+                return skipped;
+            }
+        });
+    }
+
+    /**
+     * Creates a new parser with the same filter and package table, but
+     * without any registered listeners, to be used by a single worker thread
+     * of a parallel build.
+     *
+     * @return New parser, or <code>null</code> if this parser
+     * cannot be used concurrently.
+     */
+    protected AbstractParser newWorker() {
+        return null;
+    }
+
+    /**
+     * Indicates whether {@link #newWorker()} creates worker parsers,
+     * without creating one. Parsers overriding <code>newWorker()</code>
+     * override this method as well.
+     *
+     * @return <code>true</code> if this parser supports worker parsers.
+     */
+    protected boolean supportsWorkers() {
+        return false;
+    }
+
     /**
      * Informs registered parser listeners that the specified
      * <code>JavaClass</code> was parsed.
@@ -63,6 +155,149 @@ public abstract class AbstractParser {
         this.filter = filter;
     }
 
+    /**
+     * Returns the table interning the names of the packages of the
+     * parsed classes and their imports.
+     *
+     * @return Package table.
+     */
+    public PackageTable getPackageTable() {
+        if (packageTable == null) {
+            setPackageTable(new PackageTable());
+        }
+        return packageTable;
+    }
+
+    /**
+     * Sets the table interning the names of the packages of the parsed
+     * classes and their imports. The table can be shared with other
+     * parsers.
+     *
+     * @param packageTable Package table.
+     */
+    public void setPackageTable(PackageTable packageTable) {
+        this.packageTable = packageTable;
+    }
+
+    /**
+     * Determines whether the instructions of the methods are scanned,
+     * so that the dependencies of the parsed classes are labeled with
+     * their <code>DependencyKind</code> and counted.
+     * <p>
+     * Scanning also adds the dependencies of annotations which are not
+     * visible at runtime, and thus the packages of their types and
+     * values to the imported packages.
+     * </p>
+     *
+     * @param b <code>true</code> to scan the code;
+     *          <code>false</code> otherwise.
+     */
+    public void scanCode(boolean b) {
+        scanCode = b;
+    }
+
+    public boolean isScanningCode() {
+        return scanCode;
+    }
+
+    /**
+     * Returns the table interning the names of the classes referenced by
+     * the parsed classes, or <code>null</code> if the references are not
+     * collected.
+     */
+    ClassTable getClassTable() {
+        return classTable;
+    }
+
+    /**
+     * Determines whether the parsed classes collect the ids of the
+     * classes they reference, interned in the specified table.
+     *
+     * @param classTable Class table, or <code>null</code> to collect
+     *                   no class references.
+     */
+    void setClassTable(ClassTable classTable) {
+        this.classTable = classTable;
+        if (classTable != null && classReferences == null) {
+            classReferences = new int[64];
+        }
+    }
+
+    /**
+     * Adds a reference of the class being parsed to the class named in
+     * s[start, end): an internal (<code>java/lang/String</code>) or binary
+     * class name, the name of an array class, or a field descriptor of a
+     * class or array type.
+     */
+    void addClassReference(String s, int start, int end) {
+        if (start < end && s.charAt(end - 1) == ';') {
+            while (start < end && s.charAt(start) == '[') {
+                start++;
+            }
+            if (start < end && s.charAt(start) == 'L') {
+                start++;
+            }
+            end--;
+        } else if (start < end && s.charAt(start) == '[') {
+            return; // primitives
+        }
+        if (start < end) {
+            addClassReference(s.substring(start, end).replace('/', '.'));
+        }
+    }
+
+    /**
+     * Adds a reference of the class being parsed to the class of the
+     * specified binary name.
+     */
+    void addClassReference(String className) {
+        if (classReferenceCount == classReferences.length) {
+            classReferences = Arrays.copyOf(classReferences, 2 * classReferenceCount);
+        }
+        classReferences[classReferenceCount++] = classTable.idOf(className);
+    }
+
+    /**
+     * Adds references to the classes of the specified parsed signature
+     * whose packages are accepted by the filter.
+     */
+    void addClassReferences(SignatureParser signatureParser) {
+        for (String className : signatureParser.getClasses()) {
+            int dot = className.lastIndexOf('.');
+            String packageName = dot < 0 ? ClassFileParser.DEFAULT_PACKAGE : className.substring(0, dot);
+            if (getFilter().accept(packageName)) {
+                addClassReference(className);
+            }
+        }
+    }
+
+    /**
+     * Passes the class references collected since the last call to the
+     * specified parsed class, sorted and without duplicates or a
+     * reference to the class itself.
+     */
+    void setClassReferences(JavaClass jClass) {
+        int self = classTable.idOf(jClass.getName());
+        Arrays.sort(classReferences, 0, classReferenceCount);
+        int count = 0;
+        for (int i = 0; i < classReferenceCount; i++) {
+            int id = classReferences[i];
+            if (id != self && (count == 0 || classReferences[count - 1] != id)) {
+                classReferences[count++] = id;
+            }
+        }
+        jClass.setClassReferences(Arrays.copyOf(classReferences, count));
+        classReferenceCount = 0;
+    }
+
+    /**
+     * Drops the class references collected before the parsing of a
+     * class starts.
+     */
+    void clearClassReferences() {
+        classReferenceCount = 0;
+    }
+
     protected void debug(String message) {
         if (DEBUG) {
             System.err.println(message);
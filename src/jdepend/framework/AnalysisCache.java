@@ -0,0 +1,458 @@
+package jdepend.framework;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The <code>AnalysisCache</code> class stores summaries of parsed
+ * <code>JavaClass</code> instances in a file, so that a
+ * <code>JavaClassBuilder</code> only needs to parse the class files
+ * which changed since its last build.
+ * <p>
+ * A class file is identified by its absolute path, its size and its
+ * modification time or, if content hashes are used, a checksum of its
+ * contents. A jar, war, or zip entry is identified by the path of the
+ * archive, the entry name, its size and the CRC of the entry.
+ * </p>
+ * <p>
+ * The cache is discarded as a whole if it was written with another
+ * format <code>VERSION</code>, by another parser, with another
+ * package filter, with code scanning switched on or off, or with or
+ * without collecting the class graph. The reference counts of scanned
+ * classes and the referenced classes are cached along with the
+ * imports. Entries of files which were not part of the last build are
+ * dropped when the cache is saved.
+ * </p>
+ * <p>
+ * Example API use:
+ * </p>
+ * <blockquote>
+ * <pre>
+ * JDepend jdepend = new JDepend();
+ * jdepend.setCache(new AnalysisCache(new File(&quot;target/jdepend.cache&quot;)));
+ * jdepend.addDirectory(&quot;/path/to/classes&quot;);
+ * Collection packages = jdepend.analyze();
+ * </pre>
+ * </blockquote>
+ */
+
+public class AnalysisCache {
+
+    /**
+     * The version of the cache format. It must be incremented whenever the
+     * format or the information extracted by the parsers changes.
+     */
+    public static final int VERSION = 3;
+
+    private static final int MAGIC = 0x4A444341;
+
+    private final File file;
+    private boolean useContentHash;
+    private ConcurrentMap<String, Entry> entries;
+    private ConcurrentMap<String, Entry> used;
+    private volatile boolean changed;
+    private String parserName;
+    private boolean scanCode;
+    private ClassTable classTable;
+    private Collection<PackageFilter.Filter> filters;
+    private final AtomicInteger hits;
+    private final AtomicInteger misses;
+
+
+    public AnalysisCache(File file) {
+        this.file = file;
+        this.entries = new ConcurrentHashMap<String, Entry>();
+        this.used = new ConcurrentHashMap<String, Entry>();
+        this.hits = new AtomicInteger();
+        this.misses = new AtomicInteger();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Determines whether class files are identified by a checksum of
+     * their contents instead of their modification time. Content hashes
+     * survive fresh checkouts and copies, but each class file has to be
+     * read to check whether it changed.
+     *
+     * @param b <code>true</code> to use content hashes;
+     *          <code>false</code> otherwise.
+     */
+    public void useContentHash(boolean b) {
+        useContentHash = b;
+    }
+
+    public boolean isUsingContentHash() {
+        return useContentHash;
+    }
+
+    /**
+     * Returns the number of classes taken from the cache since it was
+     * last loaded.
+     *
+     * @return Number of cache hits.
+     */
+    public int countHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of classes which had to be parsed since the
+     * cache was last loaded.
+     *
+     * @return Number of cache misses.
+     */
+    public int countMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Loads the cache file for a build with the specified parser. A missing,
+     * outdated or unreadable cache file results in an empty cache.
+     *
+     * @param parser Parser of the build.
+     */
+    void load(AbstractParser parser) {
+        entries = new ConcurrentHashMap<String, Entry>();
+        used = new ConcurrentHashMap<String, Entry>();
+        changed = false;
+        parserName = parser.getClass().getName();
+        scanCode = parser.isScanningCode();
+        classTable = parser.getClassTable();
+        filters = parser.getFilter().getFilters();
+        hits.set(0);
+        misses.set(0);
+
+        if (!file.isFile()) {
+            return;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (readHeader(in)) {
+                readEntries(in);
+            }
+        } catch (IOException e) {
+            entries.clear();
+        } catch (IndexOutOfBoundsException e) {
+            entries.clear();
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the entries used since the last <code>load()</code> to the
+     * cache file, if they differ from the loaded ones.
+     */
+    void save() throws IOException {
+        if (!changed && used.size() == entries.size()) {
+            return;
+        }
+
+        File dir = file.getAbsoluteFile().getParentFile();
+        File temp = new File(dir, file.getName() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            writeHeader(out);
+            writeEntries(out);
+        } finally {
+            out.close();
+        }
+
+        if (!temp.renameTo(file)) {
+            file.delete();
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                throw new IOException("Cannot write analysis cache: " + file.getPath());
+            }
+        }
+        entries = new ConcurrentHashMap<String, Entry>(used);
+        changed = false;
+    }
+
+    /**
+     * Returns the cached class of the specified key, or <code>null</code>
+     * if it is not cached or the size or stamp changed.
+     *
+     * @param key   Path of the class file or archive entry.
+     * @param size  Size of the class file.
+     * @param stamp Modification time, content hash or CRC of the class file.
+     * @param table Table interning the package names of the class.
+     * @return New <code>JavaClass</code> instance, or <code>null</code>.
+     */
+    JavaClass get(String key, long size, long stamp, PackageTable table) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.size != size || entry.stamp != stamp) {
+            misses.incrementAndGet();
+            return null;
+        }
+        used.put(key, entry);
+        hits.incrementAndGet();
+        return entry.toJavaClass(table, classTable);
+    }
+
+    /**
+     * Stores the specified parsed class.
+     *
+     * @param key   Path of the class file or archive entry.
+     * @param size  Size of the class file.
+     * @param stamp Modification time, content hash or CRC of the class file.
+     * @param jc    Parsed class.
+     */
+    void put(String key, long size, long stamp, JavaClass jc) {
+        used.put(key, new Entry(size, stamp, jc, classTable));
+        changed = true;
+    }
+
+    private void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(parserName);
+        out.writeBoolean(useContentHash);
+        out.writeBoolean(scanCode);
+        out.writeBoolean(classTable != null);
+        out.writeInt(filters.size());
+        for (PackageFilter.Filter filter : filters) {
+            out.writeUTF(filter.name);
+            out.writeBoolean(filter.include);
+        }
+    }
+
+    private boolean readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION
+                || !in.readUTF().equals(parserName) || in.readBoolean() != useContentHash
+                || in.readBoolean() != scanCode || in.readBoolean() != (classTable != null)) {
+            return false;
+        }
+        int count = in.readInt();
+        if (count != filters.size()) {
+            return false;
+        }
+        for (PackageFilter.Filter filter : filters) {
+            if (!in.readUTF().equals(filter.name) || in.readBoolean() != filter.include) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Package names and source file names are written once to a table of
+     * strings and referenced by index from the entries, as are the
+     * names of referenced classes. With code scanning, each import is
+     * followed by its count of each kind.
+     */
+    private void writeEntries(DataOutputStream out) throws IOException {
+        Map<String, Integer> index = new HashMap<String, Integer>();
+        List<String> strings = new ArrayList<String>();
+        for (Entry entry : used.values()) {
+            intern(entry.packageName, index, strings);
+            intern(entry.sourceFile, index, strings);
+            for (String imported : entry.imports) {
+                intern(imported, index, strings);
+            }
+            if (classTable != null) {
+                for (String referenced : entry.classReferences) {
+                    intern(referenced, index, strings);
+                }
+            }
+        }
+
+        out.writeInt(strings.size());
+        for (String s : strings) {
+            out.writeUTF(s);
+        }
+
+        out.writeInt(used.size());
+        for (Map.Entry<String, Entry> e : used.entrySet()) {
+            Entry entry = e.getValue();
+            out.writeUTF(e.getKey());
+            out.writeLong(entry.size);
+            out.writeLong(entry.stamp);
+            out.writeUTF(entry.className);
+            out.writeBoolean(entry.isAbstract);
+            out.writeInt(index.get(entry.packageName));
+            out.writeInt(index.get(entry.sourceFile));
+            out.writeInt(entry.imports.length);
+            for (int n = 0; n < entry.imports.length; n++) {
+                out.writeInt(index.get(entry.imports[n]));
+                if (scanCode) {
+                    writeCounts(out, entry.counts[n]);
+                }
+            }
+            if (classTable != null) {
+                out.writeInt(entry.classReferences.length);
+                for (String referenced : entry.classReferences) {
+                    out.writeInt(index.get(referenced));
+                }
+            }
+        }
+    }
+
+    private void readEntries(DataInputStream in) throws IOException {
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String key = in.readUTF();
+            long size = in.readLong();
+            long stamp = in.readLong();
+            String className = in.readUTF();
+            boolean isAbstract = in.readBoolean();
+            String packageName = strings[in.readInt()];
+            String sourceFile = strings[in.readInt()];
+            String[] imports = new String[in.readInt()];
+            int[][] counts = scanCode ? new int[imports.length][] : null;
+            for (int n = 0; n < imports.length; n++) {
+                imports[n] = strings[in.readInt()];
+                if (scanCode) {
+                    counts[n] = readCounts(in);
+                }
+            }
+            String[] classReferences = null;
+            if (classTable != null) {
+                classReferences = new String[in.readInt()];
+                for (int n = 0; n < classReferences.length; n++) {
+                    classReferences[n] = strings[in.readInt()];
+                }
+            }
+            entries.put(key, new Entry(size, stamp, className, packageName, isAbstract, sourceFile,
+                    imports, counts, classReferences));
+        }
+    }
+
+    /*
+     * Imports which were not counted, like those of classes taken from
+     * the cache before, have all counts 0.
+     */
+    private static void writeCounts(DataOutputStream out, int[] counts) throws IOException {
+        for (DependencyKind kind : DependencyKind.values()) {
+            out.writeInt(counts == null ? 0 : counts[kind.ordinal()]);
+        }
+    }
+
+    private static int[] readCounts(DataInputStream in) throws IOException {
+        int[] counts = new int[DependencyKind.values().length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = in.readInt();
+        }
+        return counts;
+    }
+
+    private static void intern(String s, Map<String, Integer> index, List<String> strings) {
+        if (!index.containsKey(s)) {
+            index.put(s, strings.size());
+            strings.add(s);
+        }
+    }
+
+    /**
+     * The summary of a parsed class.
+     */
+    private static class Entry {
+        private final long size;
+        private final long stamp;
+        private final String className;
+        private final String packageName;
+        private final boolean isAbstract;
+        private final String sourceFile;
+        private final String[] imports;
+        private final int[][] counts;
+        private final String[] classReferences;
+
+        Entry(long size, long stamp, String className, String packageName,
+              boolean isAbstract, String sourceFile, String[] imports, int[][] counts,
+              String[] classReferences) {
+            this.size = size;
+            this.stamp = stamp;
+            this.className = className;
+            this.packageName = packageName;
+            this.isAbstract = isAbstract;
+            this.sourceFile = sourceFile;
+            this.imports = imports;
+            this.counts = counts;
+            this.classReferences = classReferences;
+        }
+
+        Entry(long size, long stamp, JavaClass jc, ClassTable classTable) {
+            this(size, stamp, jc, new ArrayList<JavaPackage>(jc.getImportedPackages()), classTable);
+        }
+
+        private Entry(long size, long stamp, JavaClass jc, List<JavaPackage> imports, ClassTable classTable) {
+            this(size, stamp, jc.getName(), jc.getPackageName(), jc.isAbstract(), jc.getSourceFile(),
+                    importNames(imports), importCounts(jc, imports), classNames(jc, classTable));
+        }
+
+        private static String[] classNames(JavaClass jc, ClassTable classTable) {
+            int[] ids = jc.getClassReferences();
+            if (classTable == null || ids == null) {
+                return new String[0];
+            }
+            String[] names = new String[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                names[i] = classTable.nameOf(ids[i]);
+            }
+            return names;
+        }
+
+        private static String[] importNames(List<JavaPackage> imports) {
+            String[] names = new String[imports.size()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = imports.get(i).getName();
+            }
+            return names;
+        }
+
+        private static int[][] importCounts(JavaClass jc, List<JavaPackage> imports) {
+            int[][] counts = new int[imports.size()][];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = jc.getDependencyCounts(imports.get(i));
+            }
+            return counts;
+        }
+
+        JavaClass toJavaClass(PackageTable table, ClassTable classTable) {
+            JavaClass jc = new JavaClass(className);
+            jc.setPackageName(table.intern(packageName).getName());
+            jc.isAbstract(isAbstract);
+            jc.setSourceFile(sourceFile);
+            for (int i = 0; i < imports.length; i++) {
+                JavaPackage imported = table.intern(imports[i]);
+                if (counts != null && counts[i] != null) {
+                    jc.addDependencies(imported, counts[i]);
+                } else {
+                    jc.addImportedPackage(imported);
+                }
+            }
+            if (classTable != null && classReferences != null) {
+                int[] ids = new int[classReferences.length];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = classTable.idOf(classReferences[i]);
+                }
+                Arrays.sort(ids);
+                jc.setClassReferences(ids);
+            }
+            return jc;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package jdepend.framework;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>AnalysisExport</code> class writes analyzed packages to a
+ * compact binary file and reads them back as a
+ * <code>PackageGraph</code>, so that tools which process the analysis
+ * of each build do not need to parse its XML report or the class files.
+ * <p>
+ * The file consists of columns of big-endian <code>int</code> and
+ * <code>float</code> values, preceded by a header of seven
+ * <code>int</code> values: the magic number, the format
+ * <code>VERSION</code>, the number of packages <i>P</i>, of classes
+ * <i>C</i>, and of dependencies <i>E</i>, the number of reference
+ * counts per dependency <i>K</i> (0 if they were not counted), and
+ * the length <i>S</i> of the string table.
+ * </p>
+ * <ol>
+ * <li><code>int[P + C + 1]</code> offsets of the names of the packages
+ * and classes in the string table, and its end</li>
+ * <li><code>byte[S]</code> string table of UTF-8 names, padded to a
+ * multiple of 4 bytes</li>
+ * <li><code>int[P + 1]</code> index of the first class of each package,
+ * and <i>C</i>; the classes are numbered by package</li>
+ * <li><code>int[(C + 31) / 32]</code> bit set of the abstract classes</li>
+ * <li><code>int[P]</code> volatility of each package</li>
+ * <li><code>int[P]</code> Ca, <code>int[P]</code> Ce,
+ * <code>float[P]</code> A, <code>float[P]</code> I,
+ * <code>float[P]</code> D, and <code>int[P]</code> 1 if the package
+ * is in a cycle, 0 otherwise</li>
+ * <li><code>int[P + 1]</code> index of the first dependency of each
+ * package, and <i>E</i>; the dependencies are numbered by depending
+ * package, in the order of its efferents</li>
+ * <li><code>int[E]</code> package depended upon by each dependency</li>
+ * <li><code>int[E]</code> weight of each dependency</li>
+ * <li><code>int[E * K]</code> reference counts of each dependency, by
+ * <code>DependencyKind</code></li>
+ * </ol>
+ * <p>
+ * The metrics are stored for other readers; <code>read()</code>
+ * computes them from the graph. The file is mapped into memory when it
+ * is read, and the class names are decoded from the mapping when the
+ * classes of a package are iterated.
+ * </p>
+ * <blockquote>
+ * <pre>
+ * AnalysisExport.write(jdepend.analyze(), new File(&quot;jdepend.bin&quot;));
+ * ...
+ * PackageGraph graph = AnalysisExport.read(new File(&quot;jdepend.bin&quot;));
+ * JavaPackage jPackage = graph.getPackage(&quot;com.xyz.billing&quot;);
+ * </pre>
+ * </blockquote>
+ */
+
+public class AnalysisExport {
+
+    /**
+     * The version of the file format. It must be incremented whenever the
+     * format changes.
+     */
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x4A44504D;
+    private static final int HEADER = 7 * 4;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int KINDS = DependencyKind.values().length;
+
+    private AnalysisExport() {
+    }
+
+    /**
+     * Writes the specified packages, and the packages they depend upon
+     * or are used by, to the specified file.
+     *
+     * @param packages Analyzed packages.
+     * @param file     Export file.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Collection<JavaPackage> packages, File file) throws IOException {
+        List<JavaPackage> list = new ArrayList<JavaPackage>(packages);
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        for (JavaPackage jPackage : list) {
+            ids.put(jPackage.getName(), ids.size());
+        }
+        for (int p = 0; p < list.size(); p++) {
+            addPackages(list.get(p).getEfferents(), list, ids);
+            addPackages(list.get(p).getAfferents(), list, ids);
+        }
+
+        int packageCount = list.size();
+        List<List<JavaClass>> classes = new ArrayList<List<JavaClass>>(packageCount);
+        int classCount = 0;
+        int edgeCount = 0;
+        boolean counted = false;
+        for (JavaPackage jPackage : list) {
+            List<JavaClass> members = new ArrayList<JavaClass>(jPackage.getClasses());
+            classes.add(members);
+            classCount += members.size();
+            edgeCount += jPackage.getEfferents().size();
+            for (JavaPackage efferent : jPackage.getEfferents()) {
+                counted = counted || !jPackage.getDependencyKinds(efferent).isEmpty();
+            }
+        }
+
+        byte[][] names = new byte[packageCount + classCount][];
+        int n = 0;
+        for (JavaPackage jPackage : list) {
+            names[n++] = jPackage.getName().getBytes(UTF8);
+        }
+        for (List<JavaClass> members : classes) {
+            for (JavaClass clazz : members) {
+                names[n++] = clazz.getName().getBytes(UTF8);
+            }
+        }
+        int stringBytes = 0;
+        for (byte[] name : names) {
+            stringBytes += name.length;
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(packageCount);
+            out.writeInt(classCount);
+            out.writeInt(edgeCount);
+            out.writeInt(counted ? KINDS : 0);
+            out.writeInt(stringBytes);
+
+            int offset = 0;
+            for (byte[] name : names) {
+                out.writeInt(offset);
+                offset += name.length;
+            }
+            out.writeInt(offset);
+            for (byte[] name : names) {
+                out.write(name);
+            }
+            for (int i = stringBytes; i % 4 != 0; i++) {
+                out.write(0);
+            }
+
+            int first = 0;
+            for (List<JavaClass> members : classes) {
+                out.writeInt(first);
+                first += members.size();
+            }
+            out.writeInt(first);
+            int bits = 0;
+            int c = 0;
+            for (List<JavaClass> members : classes) {
+                for (JavaClass clazz : members) {
+                    if (clazz.isAbstract()) {
+                        bits |= 1 << c;
+                    }
+                    if (++c == 32) {
+                        out.writeInt(bits);
+                        bits = 0;
+                        c = 0;
+                    }
+                }
+            }
+            if (c > 0) {
+                out.writeInt(bits);
+            }
+
+            for (JavaPackage jPackage : list) {
+                out.writeInt(jPackage.getVolatility());
+            }
+            for (JavaPackage jPackage : list) {
+                out.writeInt(jPackage.afferentCoupling());
+            }
+            for (JavaPackage jPackage : list) {
+                out.writeInt(jPackage.efferentCoupling());
+            }
+            for (JavaPackage jPackage : list) {
+                out.writeFloat(jPackage.abstractness());
+            }
+            for (JavaPackage jPackage : list) {
+                out.writeFloat(jPackage.instability());
+            }
+            for (JavaPackage jPackage : list) {
+                out.writeFloat(jPackage.distance());
+            }
+            for (JavaPackage jPackage : list) {
+                out.writeInt(jPackage.containsCycle() ? 1 : 0);
+            }
+
+            first = 0;
+            for (JavaPackage jPackage : list) {
+                out.writeInt(first);
+                first += jPackage.getEfferents().size();
+            }
+            out.writeInt(first);
+            for (JavaPackage jPackage : list) {
+                for (JavaPackage efferent : jPackage.getEfferents()) {
+                    out.writeInt(ids.get(efferent.getName()));
+                }
+            }
+            for (JavaPackage jPackage : list) {
+                for (JavaPackage efferent : jPackage.getEfferents()) {
+                    out.writeInt(jPackage.getDependencyWeight(efferent));
+                }
+            }
+            if (counted) {
+                for (JavaPackage jPackage : list) {
+                    for (JavaPackage efferent : jPackage.getEfferents()) {
+                        for (DependencyKind kind : DependencyKind.values()) {
+                            out.writeInt(jPackage.getDependencyCount(efferent, kind));
+                        }
+                    }
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads the packages of the specified export file.
+     *
+     * @param file Export file.
+     * @return Read-only package graph.
+     * @throws IOException If the file cannot be read, or is not an export
+     *                     file of this <code>VERSION</code>.
+     */
+    public static PackageGraph read(File file) throws IOException {
+        ByteBuffer buffer;
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = in.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            in.close();
+        }
+
+        if (buffer.limit() < HEADER || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a JDepend export file: " + file.getPath());
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported JDepend export version " + buffer.getInt(4) + ": " + file.getPath());
+        }
+        int packageCount = buffer.getInt(8);
+        int classCount = buffer.getInt(12);
+        int edgeCount = buffer.getInt(16);
+        int kinds = buffer.getInt(20);
+        int stringBytes = buffer.getInt(24);
+        if (kinds != 0 && kinds != KINDS) {
+            throw new IOException("Unsupported number of dependency kinds " + kinds + ": " + file.getPath());
+        }
+
+        try {
+            buffer.position(HEADER);
+            int[] offsets = ints(buffer, packageCount + classCount + 1);
+            ByteBuffer strings = buffer.slice();
+            strings.limit(stringBytes);
+            buffer.position(buffer.position() + (stringBytes + 3) / 4 * 4);
+
+            List<String> packageNames = new ArrayList<String>(packageCount);
+            for (int p = 0; p < packageCount; p++) {
+                byte[] name = new byte[offsets[p + 1] - offsets[p]];
+                strings.position(offsets[p]);
+                strings.get(name);
+                packageNames.add(new String(name, UTF8));
+            }
+            strings.position(0);
+
+            int[] classOffsets = ints(buffer, packageCount + 1);
+            int[] classPackages = new int[classCount];
+            for (int p = 0; p < packageCount; p++) {
+                Arrays.fill(classPackages, classOffsets[p], classOffsets[p + 1], p);
+            }
+            int[] abstractBits = ints(buffer, (classCount + 31) / 32);
+            long[] abstractClasses = new long[Math.max(1, (classCount + 63) / 64)];
+            for (int i = 0; i < abstractBits.length; i++) {
+                abstractClasses[i / 2] |= (abstractBits[i] & 0xFFFFFFFFL) << (32 * (i % 2));
+            }
+            int[] volatility = ints(buffer, packageCount);
+            buffer.position(buffer.position() + 6 * 4 * packageCount);
+
+            int[] edgeOffsets = ints(buffer, packageCount + 1);
+            int[] edgeSources = new int[edgeCount];
+            for (int p = 0; p < packageCount; p++) {
+                Arrays.fill(edgeSources, edgeOffsets[p], edgeOffsets[p + 1], p);
+            }
+            int[] edgeTargets = ints(buffer, edgeCount);
+            int[] weights = ints(buffer, edgeCount);
+            int[] counts = kinds == 0 ? null : ints(buffer, edgeCount * kinds);
+
+            PackageGraph graph = new PackageGraph(packageNames, strings,
+                    Arrays.copyOfRange(offsets, packageCount, packageCount + classCount + 1), abstractClasses,
+                    classPackages, classCount, null, edgeSources, edgeTargets, weights, counts);
+            int p = 0;
+            for (JavaPackage jPackage : graph.getPackages()) {
+                jPackage.setVolatility(volatility[p++]);
+            }
+            return graph;
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt JDepend export file: " + file.getPath(), e);
+        }
+    }
+
+    private static void addPackages(Collection<JavaPackage> packages, List<JavaPackage> list,
+                                    Map<String, Integer> ids) {
+        for (JavaPackage jPackage : packages) {
+            if (!ids.containsKey(jPackage.getName())) {
+                ids.put(jPackage.getName(), ids.size());
+                list.add(jPackage);
+            }
+        }
+    }
+
+    private static int[] ints(ByteBuffer buffer, int length) {
+        int[] values = new int[length];
+        IntBuffer view = buffer.asIntBuffer();
+        view.get(values);
+        buffer.position(buffer.position() + 4 * length);
+        return values;
+    }
+}
@@ -0,0 +1,268 @@
+package jdepend.framework;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>BatchAnalyzer</code> class analyzes several projects, each
+ * with its own directories and archives, and parses every file only
+ * once, however many projects contain it.
+ * <p>
+ * Files are identified by their canonical path and, if another file of
+ * the same size exists, by the SHA-1 hash of their content, so that the
+ * copies of a library in the output directories of several projects
+ * are parsed once. Each project gets its own <code>JDepend</code>
+ * analysis, with its own packages and package dependencies, which
+ * references the shared parsed classes.
+ * </p>
+ * <blockquote>
+ * <pre>
+ * BatchAnalyzer batch = new BatchAnalyzer();
+ * batch.addProject(&quot;billing&quot;, &quot;/billing/classes&quot;, &quot;/billing/lib&quot;);
+ * batch.addProject(&quot;shipping&quot;, &quot;/shipping/classes&quot;, &quot;/shipping/lib&quot;);
+ * Map&lt;String, Collection&lt;JavaPackage&gt;&gt; packages = batch.analyze();
+ * </pre>
+ * </blockquote>
+ */
+
+public class BatchAnalyzer {
+
+    private final PackageFilter filter;
+    private final AbstractParser parser;
+    private final FileManager fileManager;
+    private final JavaClassBuilder builder;
+    private final Map<String, FileManager> projects;
+    private final Map<String, JDepend> analyses;
+    private String components;
+    private boolean innerClasses;
+    private int parsedFiles;
+
+
+    public BatchAnalyzer() {
+        this(PackageFilter.all().excludingProperties());
+    }
+
+    public BatchAnalyzer(PackageFilter filter) {
+        this.filter = filter;
+        this.parser = new ByteBufferClassFileParser(filter);
+        this.parser.setPackageTable(new PackageTable());
+        this.fileManager = new FileManager();
+        this.builder = new JavaClassBuilder(parser, fileManager);
+        this.projects = new LinkedHashMap<String, FileManager>();
+        this.analyses = new LinkedHashMap<String, JDepend>();
+
+        analyzeInnerClasses(new PropertyConfigurator().getAnalyzeInnerClasses());
+    }
+
+    /**
+     * Adds a project with the specified directories and archives.
+     *
+     * @param name        Project name.
+     * @param directories Directory and archive names.
+     * @throws IOException If a directory or archive is invalid.
+     */
+    public void addProject(String name, String... directories) throws IOException {
+        FileManager project = new FileManager();
+        project.acceptInnerClasses(innerClasses);
+        for (String directory : directories) {
+            project.addDirectory(directory);
+        }
+        projects.put(name, project);
+    }
+
+    /**
+     * Determines whether inner classes are analyzed.
+     *
+     * @param b <code>true</code> to analyze inner classes;
+     *          <code>false</code> otherwise.
+     */
+    public void analyzeInnerClasses(boolean b) {
+        innerClasses = b;
+        fileManager.acceptInnerClasses(b);
+        for (FileManager project : projects.values()) {
+            project.acceptInnerClasses(b);
+        }
+    }
+
+    /**
+     * Sets the list of components of all projects.
+     *
+     * @param components Comma-separated list of components.
+     */
+    public void setComponents(String components) {
+        this.components = components;
+    }
+
+    /**
+     * Determines whether the instructions of the classes are scanned.
+     *
+     * @param b <code>true</code> to scan the code;
+     *          <code>false</code> otherwise.
+     * @see JDepend#scanCode(boolean)
+     */
+    public void scanCode(boolean b) {
+        parser.scanCode(b);
+    }
+
+    /**
+     * Analyzes the projects and returns the analyzed packages of each
+     * of them, in the order in which the projects were added.
+     *
+     * @return Collection of analyzed packages by project name.
+     */
+    public Map<String, Collection<JavaPackage>> analyze() {
+        Map<String, Collection<File>> files = new LinkedHashMap<String, Collection<File>>();
+        for (Map.Entry<String, FileManager> project : projects.entrySet()) {
+            files.put(project.getKey(), project.getValue().extractFiles());
+        }
+        Map<File, File> identities = identify(files.values());
+        Map<File, List<JavaClass>> parsed = new HashMap<File, List<JavaClass>>();
+        parsedFiles = 0;
+
+        Map<String, Collection<JavaPackage>> result = new LinkedHashMap<String, Collection<JavaPackage>>();
+        for (Map.Entry<String, Collection<File>> project : files.entrySet()) {
+            JDepend jdepend = new JDepend(filter);
+            if (components != null) {
+                jdepend.setComponents(components);
+            }
+            for (File file : project.getValue()) {
+                File identity = identities.get(file);
+                List<JavaClass> classes = parsed.get(identity);
+                if (classes == null) {
+                    classes = parse(identity);
+                    parsed.put(identity, classes);
+                }
+                jdepend.analyzeClasses(file, classes);
+            }
+            analyses.put(project.getKey(), jdepend);
+            result.put(project.getKey(), jdepend.getPackages());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the analysis of the specified project.
+     *
+     * @param name Project name.
+     * @return Analysis, or <code>null</code> if the project was not analyzed.
+     */
+    public JDepend getAnalysis(String name) {
+        return analyses.get(name);
+    }
+
+    /**
+     * Returns the number of files parsed by the last analysis.
+     *
+     * @return Number of parsed class, jar, war, and zip files.
+     */
+    public int countParsedFiles() {
+        return parsedFiles;
+    }
+
+    /*
+     * Maps each file of the projects to the file it is parsed as: the
+     * first file with the same canonical path or the same content.
+     * Only files whose size collides with another file are hashed.
+     */
+    private Map<File, File> identify(Collection<Collection<File>> projectFiles) {
+        Map<File, File> identities = new HashMap<File, File>();
+        Map<String, File> byPath = new HashMap<String, File>();
+        Map<Long, List<File>> bySize = new HashMap<Long, List<File>>();
+
+        for (Collection<File> files : projectFiles) {
+            for (File file : files) {
+                String path;
+                try {
+                    path = file.getCanonicalPath();
+                } catch (IOException e) {
+                    path = file.getAbsolutePath();
+                }
+                File identity = byPath.get(path);
+                if (identity == null) {
+                    identity = file;
+                    byPath.put(path, file);
+                    Long size = file.length();
+                    List<File> sameSize = bySize.get(size);
+                    if (sameSize == null) {
+                        sameSize = new ArrayList<File>(1);
+                        bySize.put(size, sameSize);
+                    }
+                    sameSize.add(file);
+                }
+                identities.put(file, identity);
+            }
+        }
+
+        Map<File, File> copies = new HashMap<File, File>();
+        for (List<File> sameSize : bySize.values()) {
+            if (sameSize.size() > 1) {
+                Map<String, File> byContent = new HashMap<String, File>();
+                for (File file : sameSize) {
+                    String hash = hash(file);
+                    File first = hash == null ? null : byContent.get(hash);
+                    if (first == null) {
+                        if (hash != null) {
+                            byContent.put(hash, file);
+                        }
+                    } else {
+                        copies.put(file, first);
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<File, File> entry : identities.entrySet()) {
+            File copy = copies.get(entry.getValue());
+            if (copy != null) {
+                entry.setValue(copy);
+            }
+        }
+        return identities;
+    }
+
+    private List<JavaClass> parse(File file) {
+        parsedFiles++;
+        try {
+            return new ArrayList<JavaClass>(builder.buildClasses(file));
+        } catch (IOException ioe) {
+            System.err.println("\n" + ioe.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /*
+     * Returns the SHA-1 hash of the file, or null if it cannot be read.
+     */
+    private static String hash(File file) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            InputStream in = new FileInputStream(file);
+            try {
+                byte[] buffer = new byte[65536];
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, n);
+                }
+            } finally {
+                in.close();
+            }
+            return new BigInteger(1, digest.digest()).toString(16);
+        } catch (IOException e) {
+            return null;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
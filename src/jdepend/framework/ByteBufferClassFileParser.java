@@ -0,0 +1,789 @@
+package jdepend.framework;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static jdepend.framework.ClassFileParser.*;
+
+/**
+ * The <code>ByteBufferClassFileParser</code> class is responsible for
+ * parsing a Java class file held in a <code>ByteBuffer</code> (heap,
+ * direct, or memory-mapped) to create a <code>JavaClass</code> instance.
+ * <p>
+ * It finds the same imports as <code>ClassFileParser</code>, but works
+ * directly on the buffer: only the offsets of the constant pool entries
+ * are kept, UTF8 entries are decoded when they are needed, and
+ * attributes are never copied. Package names are cached across the
+ * parsed classes and interned in the <code>PackageTable</code> of the
+ * parser, so that a parse allocates little more than the resulting
+ * <code>JavaClass</code>.
+ * </p>
+ * <p>
+ * It is the parser of <code>JDepend</code>, <code>BatchAnalyzer</code>,
+ * and the default <code>JavaClassBuilder</code>. Class files are read
+ * into a reusable array, and memory-mapped archive entries are parsed
+ * where they are.
+ * </p>
+ * <p>
+ * When scanning code, the instructions of the methods are scanned in
+ * the buffer as well.
+ * </p>
+ * <p>
+ * A parser is not thread safe. A parallel build uses one parser per
+ * thread (see <code>JavaClassBuilder.setThreads()</code>).
+ * </p>
+ */
+
+public class ByteBufferClassFileParser extends AbstractParser {
+
+    private static final byte[] ATTR_ANNOTATIONS_BYTES = ascii(ATTR_ANNOTATIONS);
+    private static final byte[] ATTR_SIGNATURE_BYTES = ascii(ATTR_SIGNATURE);
+    private static final byte[] ATTR_SOURCE_BYTES = ascii(ATTR_SOURCE);
+    private static final byte[] ATTR_INVISIBLE_ANNOTATIONS_BYTES = ascii(ATTR_INVISIBLE_ANNOTATIONS);
+    private static final byte[] ATTR_CODE_BYTES = ascii(ATTR_CODE);
+
+    private ByteBuffer in;
+    private String fileName;
+    private JavaClass jClass;
+    private DependencyKind referenceKind = DependencyKind.REFERENCE;
+    private final CodeScanner.Visitor codeReferences = new CodeReferences();
+
+    /*
+     * Offsets of the constant pool entries of the current class,
+     * 0 for the unused second slot of 8-byte constants.
+     */
+    private int[] constantPool = new int[256];
+    private int constantPoolSize;
+    private String[] utf8Values = new String[256];
+
+    private byte[] bytes = new byte[8192];
+    private char[] chars = new char[256];
+
+    /*
+     * Package names seen by this parser, as an open addressing table
+     * keyed by the bytes of the name in the class file.
+     */
+    private byte[][] packageKeys = new byte[256][];
+    private JavaPackage[] packages = new JavaPackage[256];
+    private byte[] packageAccepted = new byte[256];
+    private int packageCount;
+    private Object filterVersion;
+
+
+    public ByteBufferClassFileParser() {
+        this(PackageFilter.all().excludingProperties());
+    }
+
+    public ByteBufferClassFileParser(PackageFilter filter) {
+        super(filter);
+    }
+
+    @Override
+    protected void setFilter(PackageFilter filter) {
+        super.setFilter(filter);
+        if (packageAccepted != null) {
+            Arrays.fill(packageAccepted, (byte) 0);
+        }
+    }
+
+    @Override
+    public void setPackageTable(PackageTable packageTable) {
+        super.setPackageTable(packageTable);
+        if (packageKeys != null) {
+            Arrays.fill(packageKeys, null);
+            Arrays.fill(packages, null);
+            Arrays.fill(packageAccepted, (byte) 0);
+            packageCount = 0;
+        }
+    }
+
+    @Override
+    protected AbstractParser newWorker() {
+        ByteBufferClassFileParser worker = new ByteBufferClassFileParser(getFilter());
+        worker.setPackageTable(getPackageTable());
+        worker.scanCode(isScanningCode());
+        worker.setClassTable(getClassTable());
+        return worker;
+    }
+
+    @Override
+    protected boolean supportsWorkers() {
+        return true;
+    }
+
+    @Override
+    public JavaClass parse(File classFile) throws IOException {
+        fileName = classFile.getPath();
+        InputStream is = new FileInputStream(classFile);
+        try {
+            return parse(is);
+        } finally {
+            fileName = null;
+            is.close();
+        }
+    }
+
+    /**
+     * Reads the stream into a reusable buffer and parses it.
+     */
+    @Override
+    public JavaClass parse(InputStream is) throws IOException {
+        int length = 0;
+        while (true) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, 2 * length);
+            }
+            int n = is.read(bytes, length, bytes.length - length);
+            if (n < 0) {
+                break;
+            }
+            length += n;
+        }
+
+        return parse(ByteBuffer.wrap(bytes, 0, length));
+    }
+
+    @Override
+    public JavaClass parse(ByteBuffer buffer) throws IOException {
+        Object version = getFilter().getVersion();
+        if (version != filterVersion) {
+            Arrays.fill(packageAccepted, (byte) 0);
+            filterVersion = version;
+        }
+        in = buffer.slice();
+        if (getClassTable() != null) {
+            clearClassReferences();
+        }
+        try {
+            parseClass();
+            if (getClassTable() != null) {
+                setClassReferences(jClass);
+            }
+        } catch (BufferUnderflowException e) {
+            throw invalidClassFile(e);
+        } catch (IndexOutOfBoundsException e) {
+            throw invalidClassFile(e);
+        } catch (IllegalArgumentException e) {
+            throw invalidClassFile(e);
+        } finally {
+            in = null;
+        }
+
+        JavaClass parsedClass = jClass;
+        jClass = null;
+        onParsedJavaClass(parsedClass);
+        return parsedClass;
+    }
+
+    private IOException invalidClassFile(RuntimeException cause) {
+        IOException e = new EOFException("Invalid class file: " + fileName);
+        e.initCause(cause);
+        return e;
+    }
+
+    private void parseClass() throws IOException {
+        jClass = new JavaClass("Unknown");
+
+        if (in.getInt() != JAVA_MAGIC) {
+            throw new IOException("Invalid class file: " + fileName);
+        }
+
+        // minor and major version
+        skip(4);
+
+        parseConstantPool();
+
+        int accessFlags = u2();
+        jClass.isAbstract((accessFlags & (ACC_ABSTRACT | ACC_INTERFACE)) != 0);
+
+        int classIndex = u2();
+        int classEntry = entry(classIndex);
+        if (classEntry == 0) {
+            jClass.setName("");
+            jClass.setPackageName(DEFAULT_PACKAGE);
+        } else {
+            int name = utf8(nameIndex(classEntry));
+            jClass.setName(string(name + 2, name + 2 + u2(name), true));
+            jClass.setPackageName(packageName(name + 2, name + 2 + u2(name)));
+        }
+
+        // super class
+        addClassImport(u2());
+
+        int interfacesCount = u2();
+        for (int i = 0; i < interfacesCount; i++) {
+            addClassImport(u2());
+        }
+
+        parseFieldsOrMethods(false);
+        parseFieldsOrMethods(true);
+
+        parseAttributes();
+
+        addClassConstantReferences();
+    }
+
+    private void parseConstantPool() throws IOException {
+        int size = u2();
+        if (constantPool.length < size) {
+            constantPool = new int[size];
+            utf8Values = new String[size];
+        } else {
+            Arrays.fill(utf8Values, 0, size, null);
+        }
+        constantPoolSize = size;
+
+        for (int i = 1; i < size; i++) {
+            constantPool[i] = in.position();
+            byte tag = in.get();
+            switch (tag) {
+                case CONSTANT_CLASS:
+                case CONSTANT_STRING:
+                case CONSTANT_METHOD_TYPE:
+                    skip(2);
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    skip(3);
+                    break;
+                case CONSTANT_FIELD:
+                case CONSTANT_METHOD:
+                case CONSTANT_INTERFACEMETHOD:
+                case CONSTANT_NAMEANDTYPE:
+                case CONSTANT_INVOKEDYNAMIC:
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                    skip(4);
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    skip(8);
+                    //
+                    // 8-byte constants use two constant pool entries
+                    //
+                    if (++i < size) {
+                        constantPool[i] = 0;
+                    }
+                    break;
+                case CONSTANT_UTF8:
+                    skip(u2());
+                    break;
+                default:
+                    throw new IOException("Unknown constant: " + tag);
+            }
+        }
+    }
+
+    private void parseFieldsOrMethods(boolean methods) throws IOException {
+        int count = u2();
+        for (int i = 0; i < count; i++) {
+            // access flags and name
+            skip(4);
+            int descriptorIndex = u2();
+
+            int signature = 0;
+            int annotations = 0;
+            int invisibleAnnotations = 0;
+            int attributesCount = u2();
+            for (int a = 0; a < attributesCount; a++) {
+                int name = utf8(u2());
+                int length = in.getInt();
+                int value = in.position();
+                if (is(name, ATTR_ANNOTATIONS_BYTES)) {
+                    annotations = value;
+                } else if (is(name, ATTR_SIGNATURE_BYTES)) {
+                    signature = value;
+                } else if (isScanningCode()) {
+                    if (is(name, ATTR_INVISIBLE_ANNOTATIONS_BYTES)) {
+                        invisibleAnnotations = value;
+                    } else if (methods && is(name, ATTR_CODE_BYTES)) {
+                        scanCode(value, length);
+                    }
+                }
+                in.position(value + length);
+            }
+
+            addDescriptorImports(utf8(descriptorIndex), methods);
+
+            if (signature != 0) {
+                String value = utf8Value(u2(signature));
+                SignatureParser signatureParser = methods
+                        ? SignatureParser.parseMethodSignature(value)
+                        : SignatureParser.parseFieldSignature(value);
+                addImports(signatureParser);
+            }
+
+            // like ClassFileParser, the first field and method are not searched for annotations
+            if (annotations != 0 && i > 0) {
+                addAnnotationReferences(annotations);
+            }
+            if (invisibleAnnotations != 0) {
+                addAnnotationReferences(invisibleAnnotations);
+            }
+        }
+    }
+
+    private void scanCode(int offset, int length) throws IOException {
+        // max_stack and max_locals precede the code length
+        int codeLength = in.getInt(offset + 4);
+        if (codeLength < 0 || codeLength > length - 8) {
+            throw new IOException("Invalid code length: " + codeLength);
+        }
+        CodeScanner.scan(in, offset + 8, offset + 8 + codeLength, codeReferences);
+    }
+
+    private void parseAttributes() throws IOException {
+        int attributesCount = u2();
+        for (int i = 0; i < attributesCount; i++) {
+            int name = utf8(u2());
+            int length = in.getInt();
+            int value = in.position();
+
+            // Section 4.7.7 of VM Spec - Class File Format
+            if (is(name, ATTR_SOURCE_BYTES)) {
+                jClass.setSourceFile(utf8Value(u2(value)));
+            } else if (is(name, ATTR_SIGNATURE_BYTES)) {
+                addImports(SignatureParser.parseClassSignature(utf8Value(u2(value))));
+            } else if (is(name, ATTR_ANNOTATIONS_BYTES) && i > 0) {
+                // like ClassFileParser, the first attribute is not searched for annotations
+                addAnnotationReferences(value);
+            } else if (isScanningCode() && is(name, ATTR_INVISIBLE_ANNOTATIONS_BYTES)) {
+                addAnnotationReferences(value);
+            }
+
+            in.position(value + length);
+        }
+    }
+
+    private void addClassConstantReferences() throws IOException {
+        for (int i = 1; i < constantPoolSize; i++) {
+            int entry = constantPool[i];
+            if (entry != 0 && in.get(entry) == CONSTANT_CLASS) {
+                int name = utf8(u2(entry + 1));
+                addImport(name + 2, name + 2 + u2(name));
+            }
+        }
+    }
+
+    private void addAnnotationReferences(int offset) throws IOException {
+        // JVM Spec 4.8.15
+        referenceKind = DependencyKind.ANNOTATION;
+        try {
+            addAnnotationReferences(offset + 2, u2(offset));
+        } finally {
+            referenceKind = DependencyKind.REFERENCE;
+        }
+    }
+
+    private int addAnnotationReferences(int index, int numAnnotations) throws IOException {
+        for (int a = 0; a < numAnnotations; a++) {
+            int typeIndex = u2(index);
+            int numElementValuePairs = u2(index + 2);
+            addTypeImport(typeIndex);
+            index += 4;
+            for (int p = 0; p < numElementValuePairs; p++) {
+                index = addAnnotationElementValueReferences(index + 2);
+            }
+        }
+        return index;
+    }
+
+    private int addAnnotationElementValueReferences(int index) throws IOException {
+        byte tag = in.get(index);
+        index += 1;
+        switch (tag) {
+            case 'B':
+            case 'C':
+            case 'D':
+            case 'F':
+            case 'I':
+            case 'J':
+            case 'S':
+            case 'Z':
+            case 's':
+                index += 2;
+                break;
+
+            case 'e':
+                addTypeImport(u2(index));
+                index += 4;
+                break;
+
+            case 'c':
+                addTypeImport(u2(index));
+                index += 2;
+                break;
+
+            case '@':
+                index = addAnnotationReferences(index, 1);
+                break;
+
+            case '[':
+                int numValues = u2(index);
+                index += 2;
+                for (int i = 0; i < numValues; i++) {
+                    index = addAnnotationElementValueReferences(index);
+                }
+                break;
+        }
+        return index;
+    }
+
+    /*
+     * Adds the package of a type descriptor, skipping its first character,
+     * the same way ClassFileParser does.
+     */
+    private void addTypeImport(int descriptorIndex) throws IOException {
+        int name = utf8(descriptorIndex);
+        int length = u2(name);
+        if (length == 0) {
+            throw new IOException("Empty type descriptor: " + descriptorIndex);
+        }
+        JavaPackage jPackage = acceptedPackage(name + 3, name + 2 + length);
+        if (jPackage != null) {
+            addDependency(jPackage);
+            if (getClassTable() != null && in.get(name + 1 + length) == ';') {
+                String type = utf8Value(descriptorIndex);
+                addClassReference(type, 0, type.length());
+            }
+        }
+    }
+
+    private void addClassImport(int classIndex) throws IOException {
+        int entry = entry(classIndex);
+        if (entry == 0) {
+            addImport(DEFAULT_PACKAGE);
+        } else {
+            int name = utf8(nameIndex(entry));
+            addImport(name + 2, name + 2 + u2(name));
+        }
+    }
+
+    private void addDescriptorImports(int descriptor, boolean methods) throws IOException {
+        int end = descriptor + 2 + u2(descriptor);
+        int index = descriptor + 2;
+        while (index < end) {
+            int start = indexOf(CLASS_DESCRIPTOR, index, end);
+            if (start < 0) {
+                break;
+            }
+            index = indexOf(';', start + 1, end);
+            if (index < 0) {
+                throw new IOException("Invalid descriptor: " + utf8Value(descriptor));
+            }
+            if (!methods || index > start + 1) {
+                addImport(start + 1, index);
+            }
+            index++;
+        }
+    }
+
+    private void addImports(SignatureParser signatureParser) {
+        for (String pack : signatureParser.getPackages()) {
+            addImport(pack);
+        }
+        if (getClassTable() != null) {
+            addClassReferences(signatureParser);
+        }
+    }
+
+    private void addImport(String importPackage) {
+        if (getFilter().accept(importPackage)) {
+            addDependency(getPackageTable().intern(importPackage));
+        }
+    }
+
+    /*
+     * Adds the package of the class or array type whose name
+     * is stored in the specified bytes, and references the class if
+     * class references are collected.
+     */
+    private void addImport(int start, int end) throws IOException {
+        JavaPackage jPackage = acceptedPackage(start, end);
+        if (jPackage != null) {
+            addDependency(jPackage);
+            if (getClassTable() != null) {
+                String className = string(start, end, false);
+                addClassReference(className, 0, className.length());
+            }
+        }
+    }
+
+    /*
+     * Imports the package, counting a reference of the current kind
+     * when scanning code.
+     */
+    private void addDependency(JavaPackage jPackage) {
+        if (isScanningCode()) {
+            jClass.addDependency(jPackage, referenceKind);
+        } else {
+            jClass.addImportedPackage(jPackage);
+        }
+    }
+
+    /*
+     * Returns the package of the class or array type whose name is
+     * stored in the specified bytes, or null for arrays of primitives
+     * and packages rejected by the filter.
+     */
+    private JavaPackage acceptedPackage(int start, int end) throws IOException {
+        if (end > start && in.get(start) == '[') {
+            if (indexOf(';', start, end) < 0) {
+                return null; // primitives
+            }
+            int type = indexOf(CLASS_DESCRIPTOR, start, end);
+            int typeEnd = type < 0 ? -1 : indexOf(';', type + 1, end);
+            if (typeEnd < 0) {
+                throw new IOException("Invalid array type: " + string(start, end, false));
+            }
+            start = type + 1;
+            end = typeEnd;
+        }
+
+        int separator = lastSeparator(start, end);
+        if (separator <= start) {
+            return getFilter().accept(DEFAULT_PACKAGE) ? getPackageTable().intern(DEFAULT_PACKAGE) : null;
+        }
+
+        int slot = packageSlot(start, separator);
+        if (packageAccepted[slot] == 0) {
+            packageAccepted[slot] = getFilter().accept(packages[slot].getName()) ? (byte) 1 : (byte) 2;
+        }
+        return packageAccepted[slot] == 1 ? packages[slot] : null;
+    }
+
+    /**
+     * Counts the class references of the scanned instructions.
+     */
+    private class CodeReferences implements CodeScanner.Visitor {
+
+        public void visit(int constantIndex, DependencyKind kind) throws IOException {
+            int entry = entry(constantIndex);
+            byte tag = entry == 0 ? 0 : in.get(entry);
+            if (tag == CONSTANT_FIELD || tag == CONSTANT_METHOD || tag == CONSTANT_INTERFACEMETHOD) {
+                entry = entry(u2(entry + 1));
+                tag = entry == 0 ? 0 : in.get(entry);
+            }
+            if (tag == CONSTANT_CLASS) {
+                int name = utf8(u2(entry + 1));
+                JavaPackage jPackage = acceptedPackage(name + 2, name + 2 + u2(name));
+                if (jPackage != null) {
+                    jClass.addDependency(jPackage, kind);
+                }
+            }
+        }
+    }
+
+    private String packageName(int start, int end) {
+        int separator = lastSeparator(start, end);
+        if (separator <= start) {
+            return DEFAULT_PACKAGE;
+        }
+        return packages[packageSlot(start, separator)].getName();
+    }
+
+    private int lastSeparator(int start, int end) {
+        for (int i = end - 1; i >= start; i--) {
+            byte b = in.get(i);
+            if (b == '/' || b == '.') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int packageSlot(int start, int end) {
+        int mask = packageKeys.length - 1;
+        for (int slot = hash(start, end) & mask; ; slot = (slot + 1) & mask) {
+            byte[] key = packageKeys[slot];
+            if (key == null) {
+                key = new byte[end - start];
+                for (int i = 0; i < key.length; i++) {
+                    key[i] = in.get(start + i);
+                }
+                packageKeys[slot] = key;
+                packages[slot] = getPackageTable().intern(string(start, end, true));
+                packageAccepted[slot] = 0;
+                if (++packageCount * 2 > packageKeys.length) {
+                    growPackages();
+                    return packageSlot(start, end);
+                }
+                return slot;
+            }
+            if (matches(key, start, end)) {
+                return slot;
+            }
+        }
+    }
+
+    private void growPackages() {
+        byte[][] oldKeys = packageKeys;
+        JavaPackage[] oldPackages = packages;
+        byte[] oldAccepted = packageAccepted;
+
+        packageKeys = new byte[2 * oldKeys.length][];
+        packages = new JavaPackage[packageKeys.length];
+        packageAccepted = new byte[packageKeys.length];
+
+        int mask = packageKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            byte[] key = oldKeys[i];
+            if (key != null) {
+                int slot = hash(key) & mask;
+                while (packageKeys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                packageKeys[slot] = key;
+                packages[slot] = oldPackages[i];
+                packageAccepted[slot] = oldAccepted[i];
+            }
+        }
+    }
+
+    private int hash(int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + in.get(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static int hash(byte[] key) {
+        int h = 0;
+        for (byte b : key) {
+            h = 31 * h + b;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private boolean matches(byte[] key, int start, int end) {
+        if (key.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != in.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (in.get(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean is(int utf8, byte[] name) {
+        if (u2(utf8) != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (in.get(utf8 + 2 + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int entry(int index) throws IOException {
+        if (index < 0 || index >= constantPoolSize) {
+            throw new IOException("Illegal constant pool index : " + index);
+        }
+        return constantPool[index];
+    }
+
+    /*
+     * Returns the name index of the constant pool entry at the specified
+     * offset, as the Constant objects of ClassFileParser would.
+     */
+    private int nameIndex(int entry) {
+        switch (in.get(entry)) {
+            case CONSTANT_CLASS:
+            case CONSTANT_STRING:
+            case CONSTANT_METHOD_TYPE:
+            case CONSTANT_FIELD:
+            case CONSTANT_METHOD:
+            case CONSTANT_INTERFACEMETHOD:
+            case CONSTANT_NAMEANDTYPE:
+            case CONSTANT_INVOKEDYNAMIC:
+                return u2(entry + 1);
+            case CONSTANT_METHOD_HANDLE:
+                return in.get(entry + 1);
+            default:
+                return -1;
+        }
+    }
+
+    /*
+     * Returns the offset of the length of the UTF8 entry at the specified index.
+     */
+    private int utf8(int index) throws IOException {
+        int entry = entry(index);
+        if (entry == 0 || in.get(entry) != CONSTANT_UTF8) {
+            throw new IOException("Constant pool entry is not a UTF8 type: " + index);
+        }
+        return entry + 1;
+    }
+
+    private String utf8Value(int index) throws IOException {
+        String value = utf8Values[index];
+        if (value == null) {
+            int utf8 = utf8(index);
+            value = string(utf8 + 2, utf8 + 2 + u2(utf8), false);
+            utf8Values[index] = value;
+        }
+        return value;
+    }
+
+    /*
+     * Decodes the modified UTF-8 bytes between start and end.
+     */
+    private String string(int start, int end, boolean slashesToDots) {
+        if (chars.length < end - start) {
+            chars = new char[end - start];
+        }
+        int length = 0;
+        for (int i = start; i < end; ) {
+            int b = in.get(i++) & 0xFF;
+            char c;
+            if (b < 0x80) {
+                c = (char) b;
+            } else if ((b & 0xE0) == 0xC0) {
+                c = (char) (((b & 0x1F) << 6) | (in.get(i++) & 0x3F));
+            } else {
+                c = (char) (((b & 0x0F) << 12) | ((in.get(i++) & 0x3F) << 6) | (in.get(i++) & 0x3F));
+            }
+            chars[length++] = (slashesToDots && c == '/') ? '.' : c;
+        }
+        return new String(chars, 0, length);
+    }
+
+    private int u2() {
+        return in.getShort() & 0xFFFF;
+    }
+
+    private int u2(int offset) {
+        return in.getShort(offset) & 0xFFFF;
+    }
+
+    private void skip(int n) {
+        in.position(in.position() + n);
+    }
+
+    private static byte[] ascii(String s) {
+        byte[] b = new byte[s.length()];
+        for (int i = 0; i < b.length; i++) {
+            b[i] = (byte) s.charAt(i);
+        }
+        return b;
+    }
+}
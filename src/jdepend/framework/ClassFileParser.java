@@ -1,6 +1,7 @@
 package jdepend.framework;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 
 /**
  * The <code>ClassFileParser</code> class is responsible for
@@ -13,31 +14,34 @@ import java.io.*;
 
 public class ClassFileParser extends AbstractParser {
 
-    private static final int JAVA_MAGIC = 0xCAFEBABE;
-    private static final int CONSTANT_UTF8 = 1;
-    private static final int CONSTANT_UNICODE = 2;
-    private static final int CONSTANT_INTEGER = 3;
-    private static final int CONSTANT_FLOAT = 4;
-    private static final int CONSTANT_LONG = 5;
-    private static final int CONSTANT_DOUBLE = 6;
-    private static final int CONSTANT_CLASS = 7;
-    private static final int CONSTANT_STRING = 8;
-    private static final int CONSTANT_FIELD = 9;
-    private static final int CONSTANT_METHOD = 10;
-    private static final int CONSTANT_INTERFACEMETHOD = 11;
-    private static final int CONSTANT_NAMEANDTYPE = 12;
-
-    private static final int CONSTANT_METHOD_HANDLE = 15;
-    private static final int CONSTANT_METHOD_TYPE = 16;
-    private static final int CONSTANT_INVOKEDYNAMIC = 18;
-
-    private static final char CLASS_DESCRIPTOR = 'L';
-    private static final int ACC_INTERFACE = 0x200;
-    private static final int ACC_ABSTRACT = 0x400;
-
-    private static final String ATTR_ANNOTATIONS = "RuntimeVisibleAnnotations";
-    private static final String ATTR_SIGNATURE = "Signature";
-    private static final String ATTR_SOURCE = "SourceFile";
+    static final int JAVA_MAGIC = 0xCAFEBABE;
+    static final int CONSTANT_UTF8 = 1;
+    static final int CONSTANT_UNICODE = 2;
+    static final int CONSTANT_INTEGER = 3;
+    static final int CONSTANT_FLOAT = 4;
+    static final int CONSTANT_LONG = 5;
+    static final int CONSTANT_DOUBLE = 6;
+    static final int CONSTANT_CLASS = 7;
+    static final int CONSTANT_STRING = 8;
+    static final int CONSTANT_FIELD = 9;
+    static final int CONSTANT_METHOD = 10;
+    static final int CONSTANT_INTERFACEMETHOD = 11;
+    static final int CONSTANT_NAMEANDTYPE = 12;
+
+    static final int CONSTANT_METHOD_HANDLE = 15;
+    static final int CONSTANT_METHOD_TYPE = 16;
+    static final int CONSTANT_INVOKEDYNAMIC = 18;
+
+    static final char CLASS_DESCRIPTOR = 'L';
+    static final String DEFAULT_PACKAGE = "Default";
+    static final int ACC_INTERFACE = 0x200;
+    static final int ACC_ABSTRACT = 0x400;
+
+    static final String ATTR_ANNOTATIONS = "RuntimeVisibleAnnotations";
+    static final String ATTR_INVISIBLE_ANNOTATIONS = "RuntimeInvisibleAnnotations";
+    static final String ATTR_CODE = "Code";
+    static final String ATTR_SIGNATURE = "Signature";
+    static final String ATTR_SOURCE = "SourceFile";
 
     private String fileName;
     private String className;
@@ -50,6 +54,11 @@ public class ClassFileParser extends AbstractParser {
     private FieldOrMethodInfo[] methods;
     private AttributeInfo[] attributes;
     private DataInputStream in;
+    private PackageLookup packages;
+    private DependencyKind referenceKind;
+    private byte[] code;
+    private ByteBuffer codeBuffer;
+    private final CodeScanner.Visitor codeReferences = new CodeReferences();
 
 
     public ClassFileParser() {
@@ -58,6 +67,9 @@ public class ClassFileParser extends AbstractParser {
 
     public ClassFileParser(PackageFilter filter) {
         super(filter);
+        referenceKind = DependencyKind.REFERENCE;
+        code = new byte[1024];
+        codeBuffer = ByteBuffer.wrap(code);
         reset();
     }
 
@@ -78,11 +90,14 @@ public class ClassFileParser extends AbstractParser {
      * Registered parser listeners are informed that the resulting
      * <code>JavaClass</code> was parsed.
      */
+    @Override
     public JavaClass parse(File classFile) throws IOException {
 
         this.fileName = classFile.getCanonicalPath();
 
-        debug("\nParsing " + fileName + "...");
+        if (DEBUG) {
+            debug("\nParsing " + fileName + "...");
+        }
 
         InputStream in = null;
 
@@ -107,8 +122,12 @@ public class ClassFileParser extends AbstractParser {
     public JavaClass parse(InputStream is) throws IOException {
 
         reset();
+        lookup().checkFilter();
 
         jClass = new JavaClass("Unknown");
+        if (getClassTable() != null) {
+            clearClassReferences();
+        }
 
         in = new DataInputStream(is);
 
@@ -139,11 +158,41 @@ public class ClassFileParser extends AbstractParser {
 
         addAnnotationsReferences();
 
+        if (getClassTable() != null) {
+            setClassReferences(jClass);
+        }
+
         onParsedJavaClass(jClass);
 
         return jClass;
     }
 
+    @Override
+    protected AbstractParser newWorker() {
+        ClassFileParser worker = new ClassFileParser(getFilter());
+        worker.setPackageTable(getPackageTable());
+        worker.scanCode(isScanningCode());
+        worker.setClassTable(getClassTable());
+        return worker;
+    }
+
+    @Override
+    protected boolean supportsWorkers() {
+        return true;
+    }
+
+    @Override
+    protected void setFilter(PackageFilter filter) {
+        super.setFilter(filter);
+        packages = null;
+    }
+
+    @Override
+    public void setPackageTable(PackageTable packageTable) {
+        super.setPackageTable(packageTable);
+        packages = null;
+    }
+
     private int parseMagic() throws IOException {
         int magic = in.readInt();
         if (magic != JAVA_MAGIC) {
@@ -192,17 +241,22 @@ public class ClassFileParser extends AbstractParser {
         this.isAbstract = isAbstract || isInterface;
         jClass.isAbstract(this.isAbstract);
 
-        debug("Parser: abstract = " + this.isAbstract);
+        if (DEBUG) {
+            debug("Parser: abstract = " + this.isAbstract);
+        }
     }
 
     private String parseClassName() throws IOException {
         int entryIndex = in.readUnsignedShort();
         String className = getClassConstantName(entryIndex);
         jClass.setName(className);
-        jClass.setPackageName(getPackageName(className));
+        JavaPackage jPackage = getPackage(className, 0, className.length(), false);
+        jClass.setPackageName(jPackage == null ? null : jPackage.getName());
 
-        debug("Parser: class name = " + className);
-        debug("Parser: package name = " + getPackageName(className));
+        if (DEBUG) {
+            debug("Parser: class name = " + className);
+            debug("Parser: package name = " + jClass.getPackageName());
+        }
 
         return className;
     }
@@ -210,9 +264,11 @@ public class ClassFileParser extends AbstractParser {
     private String parseSuperClassName() throws IOException {
         int entryIndex = in.readUnsignedShort();
         String superClassName = getClassConstantName(entryIndex);
-        addImport(getPackageName(superClassName));
+        addImport(superClassName, 0, superClassName.length());
 
-        debug("Parser: super class name = " + superClassName);
+        if (DEBUG) {
+            debug("Parser: super class name = " + superClassName);
+        }
 
         return superClassName;
     }
@@ -223,9 +279,11 @@ public class ClassFileParser extends AbstractParser {
         for (int i = 0; i < interfacesCount; i++) {
             int entryIndex = in.readUnsignedShort();
             interfaceNames[i] = getClassConstantName(entryIndex);
-            addImport(getPackageName(interfaceNames[i]));
+            addImport(interfaceNames[i], 0, interfaceNames[i].length());
 
-            debug("Parser: interface = " + interfaceNames[i]);
+            if (DEBUG) {
+                debug("Parser: interface = " + interfaceNames[i]);
+            }
         }
 
         return interfaceNames;
@@ -237,12 +295,10 @@ public class ClassFileParser extends AbstractParser {
         for (int i = 0; i < fieldsCount; i++) {
             fields[i] = parseFieldOrMethodInfo();
             String descriptor = toUTF8(fields[i].getDescriptorIndex());
-            debug("Parser: field descriptor = " + descriptor);
-            String[] types = descriptorToTypes(descriptor);
-            for (String type : types) {
-                addImport(getPackageName(type));
-                debug("Parser: field type = " + type);
+            if (DEBUG) {
+                debug("Parser: field descriptor = " + descriptor);
             }
+            addDescriptorImports(descriptor, false);
         }
 
         return fields;
@@ -254,14 +310,10 @@ public class ClassFileParser extends AbstractParser {
         for (int i = 0; i < methodsCount; i++) {
             methods[i] = parseFieldOrMethodInfo();
             String descriptor = toUTF8(methods[i].getDescriptorIndex());
-            debug("Parser: method descriptor = " + descriptor);
-            String[] types = descriptorToTypes(descriptor);
-            for (String type : types) {
-                if (type.length() > 0) {
-                    addImport(getPackageName(type));
-                    debug("Parser: method type = " + type);
-                }
+            if (DEBUG) {
+                debug("Parser: method descriptor = " + descriptor);
             }
+            addDescriptorImports(descriptor, true);
         }
 
         return methods;
@@ -323,6 +375,9 @@ public class ClassFileParser extends AbstractParser {
             if (ATTR_ANNOTATIONS.equals(attribute.name)) {
                 result._runtimeVisibleAnnotations = attribute;
             }
+            if (ATTR_INVISIBLE_ANNOTATIONS.equals(attribute.name)) {
+                result._runtimeInvisibleAnnotations = attribute;
+            }
             if (ATTR_SIGNATURE.equals(attribute.name)) {
                 result._signature = attribute;
             }
@@ -353,6 +408,12 @@ public class ClassFileParser extends AbstractParser {
         }
     }
 
+    /*
+     * Only the attributes read by the dependency analysis are copied;
+     * the bodies of all others, like Code, LineNumberTable and
+     * StackMapTable, are skipped and keep a null value. When scanning
+     * code, the instructions of Code attributes are scanned in place.
+     */
     private AttributeInfo parseAttribute() throws IOException {
         AttributeInfo result = new AttributeInfo();
 
@@ -362,15 +423,53 @@ public class ClassFileParser extends AbstractParser {
         }
 
         int attributeLength = in.readInt();
-        byte[] value = new byte[attributeLength];
-        for (int b = 0; b < attributeLength; b++) {
-            value[b] = in.readByte();
+        if (isAnalyzed(result.getName())) {
+            byte[] value = new byte[attributeLength];
+            in.readFully(value);
+            result.setValue(value);
+        } else if (isScanningCode() && ATTR_CODE.equals(result.getName())) {
+            scanCode(attributeLength);
+        } else {
+            skip(attributeLength, result.getName());
         }
 
-        result.setValue(value);
         return result;
     }
 
+    private boolean isAnalyzed(String attributeName) {
+        return ATTR_SIGNATURE.equals(attributeName)
+                || ATTR_SOURCE.equals(attributeName)
+                || ATTR_ANNOTATIONS.equals(attributeName)
+                || (isScanningCode() && ATTR_INVISIBLE_ANNOTATIONS.equals(attributeName));
+    }
+
+    /*
+     * Reads the instructions of a Code attribute into the reused code
+     * buffer and scans them; the exception table and the attributes of
+     * the code are skipped.
+     */
+    private void scanCode(int attributeLength) throws IOException {
+        // max_stack and max_locals
+        skip(4, ATTR_CODE);
+        int codeLength = in.readInt();
+        if (codeLength < 0 || codeLength > attributeLength - 8) {
+            throw new IOException("Invalid code length: " + codeLength);
+        }
+        if (code.length < codeLength) {
+            code = new byte[Math.max(codeLength, 2 * code.length)];
+            codeBuffer = ByteBuffer.wrap(code);
+        }
+        in.readFully(code, 0, codeLength);
+        CodeScanner.scan(codeBuffer, 0, codeLength, codeReferences);
+        skip(attributeLength - 8 - codeLength, ATTR_CODE);
+    }
+
+    private void skip(int length, String attributeName) throws IOException {
+        if (in.skipBytes(length) != length) {
+            throw new EOFException("Truncated attribute: " + attributeName);
+        }
+    }
+
     private Constant getConstantPoolEntry(int entryIndex) throws IOException {
         if (entryIndex < 0 || entryIndex >= constantPool.length) {
             throw new IOException("Illegal constant pool index : " + entryIndex);
@@ -383,25 +482,19 @@ public class ClassFileParser extends AbstractParser {
         for (AttributeInfo attr : attributes) {
             if (attr.getName().equals(ATTR_SIGNATURE)) {
                 String name = toUTF8(u2(attr.getValue(), 0));
-                for (final String pack : SignatureParser.parseClassSignature(name).getPackages()) {
-                    addImport(pack);
-                }
+                addImports(SignatureParser.parseClassSignature(name));
             }
         }
         for (FieldOrMethodInfo info : fields) {
             if (info._signature != null) {
                 String name = toUTF8(u2(info._signature.getValue(), 0));
-                for (final String pack : SignatureParser.parseFieldSignature(name).getPackages()) {
-                    addImport(pack);
-                }
+                addImports(SignatureParser.parseFieldSignature(name));
             }
         }
         for (FieldOrMethodInfo info : methods) {
             if (info._signature != null) {
                 String name = toUTF8(u2(info._signature.getValue(), 0));
-                for (final String pack : SignatureParser.parseMethodSignature(name).getPackages()) {
-                    addImport(pack);
-                }
+                addImports(SignatureParser.parseMethodSignature(name));
             }
         }
     }
@@ -410,9 +503,11 @@ public class ClassFileParser extends AbstractParser {
         for (int j = 1; j < constantPool.length; j++) {
             if (constantPool[j].getTag() == CONSTANT_CLASS) {
                 String name = toUTF8(constantPool[j].getNameIndex());
-                addImport(getPackageName(name));
+                addImport(name, 0, name.length());
 
-                debug("Parser: class type = " + slashesToDots(name));
+                if (DEBUG) {
+                    debug("Parser: class type = " + slashesToDots(name));
+                }
             }
 
             if (constantPool[j].getTag() == CONSTANT_DOUBLE || constantPool[j].getTag() == CONSTANT_LONG) {
@@ -422,19 +517,45 @@ public class ClassFileParser extends AbstractParser {
     }
 
     private void addAnnotationsReferences() throws IOException {
-        for (int j = 1; j < attributes.length; j++) {
-            if (ATTR_ANNOTATIONS.equals(attributes[j].name)) {
-                addAnnotationReferences(attributes[j]);
+        referenceKind = DependencyKind.ANNOTATION;
+        try {
+            for (int j = 1; j < attributes.length; j++) {
+                if (ATTR_ANNOTATIONS.equals(attributes[j].name)) {
+                    addAnnotationReferences(attributes[j]);
+                }
+            }
+            for (int j = 1; j < fields.length; j++) {
+                if (fields[j]._runtimeVisibleAnnotations != null) {
+                    addAnnotationReferences(fields[j]._runtimeVisibleAnnotations);
+                }
+            }
+            for (int j = 1; j < methods.length; j++) {
+                if (methods[j]._runtimeVisibleAnnotations != null) {
+                    addAnnotationReferences(methods[j]._runtimeVisibleAnnotations);
+                }
+            }
+            if (isScanningCode()) {
+                addInvisibleAnnotationsReferences();
+            }
+        } finally {
+            referenceKind = DependencyKind.REFERENCE;
+        }
+    }
+
+    private void addInvisibleAnnotationsReferences() throws IOException {
+        for (AttributeInfo attribute : attributes) {
+            if (ATTR_INVISIBLE_ANNOTATIONS.equals(attribute.name)) {
+                addAnnotationReferences(attribute);
             }
         }
-        for (int j = 1; j < fields.length; j++) {
-            if (fields[j]._runtimeVisibleAnnotations != null) {
-                addAnnotationReferences(fields[j]._runtimeVisibleAnnotations);
+        for (FieldOrMethodInfo field : fields) {
+            if (field._runtimeInvisibleAnnotations != null) {
+                addAnnotationReferences(field._runtimeInvisibleAnnotations);
             }
         }
-        for (int j = 1; j < methods.length; j++) {
-            if (methods[j]._runtimeVisibleAnnotations != null) {
-                addAnnotationReferences(methods[j]._runtimeVisibleAnnotations);
+        for (FieldOrMethodInfo method : methods) {
+            if (method._runtimeInvisibleAnnotations != null) {
+                addAnnotationReferences(method._runtimeInvisibleAnnotations);
             }
         }
     }
@@ -452,7 +573,8 @@ public class ClassFileParser extends AbstractParser {
         while (visitedAnnotations < numAnnotations) {
             int typeIndex = u2(data, index);
             int numElementValuePairs = u2(data, index = index + 2);
-            addImport(getPackageName(toUTF8(typeIndex).substring(1)));
+            String type = toUTF8(typeIndex);
+            addTypeImport(type);
             int visitedElementValuePairs = 0;
             index += 2;
             while (visitedElementValuePairs < numElementValuePairs) {
@@ -482,13 +604,15 @@ public class ClassFileParser extends AbstractParser {
 
             case 'e':
                 int enumTypeIndex = u2(data, index);
-                addImport(getPackageName(toUTF8(enumTypeIndex).substring(1)));
+                String enumType = toUTF8(enumTypeIndex);
+                addTypeImport(enumType);
                 index += 4;
                 break;
 
             case 'c':
                 int classInfoIndex = u2(data, index);
-                addImport(getPackageName(toUTF8(classInfoIndex).substring(1)));
+                String classInfo = toUTF8(classInfoIndex);
+                addTypeImport(classInfo);
                 index += 2;
                 break;
 
@@ -529,9 +653,84 @@ public class ClassFileParser extends AbstractParser {
         throw new IOException("Constant pool entry is not a UTF8 type: " + entryIndex);
     }
 
+    private void addImports(SignatureParser signatureParser) {
+        for (String pack : signatureParser.getPackages()) {
+            addImport(pack);
+        }
+        if (getClassTable() != null) {
+            addClassReferences(signatureParser);
+        }
+    }
+
     private void addImport(String importPackage) {
-        if ((importPackage != null) && (getFilter().accept(importPackage))) {
-            jClass.addImportedPackage(new JavaPackage(importPackage));
+        if (importPackage != null) {
+            JavaPackage jPackage = lookup().getAcceptedPackage(importPackage, 0, importPackage.length());
+            if (jPackage != null) {
+                addDependency(jPackage);
+            }
+        }
+    }
+
+    /*
+     * Imports the package of the class name or array descriptor
+     * in s[start, end), and references the class if class references
+     * are collected.
+     */
+    private void addImport(String s, int start, int end) {
+        JavaPackage jPackage = getPackage(s, start, end, true);
+        if (jPackage != null) {
+            addDependency(jPackage);
+            if (getClassTable() != null) {
+                addClassReference(s, start, end);
+            }
+        }
+    }
+
+    /*
+     * Imports the package of an annotation's type descriptor, skipping
+     * its first character, and references the class if class references
+     * are collected.
+     */
+    private void addTypeImport(String type) {
+        JavaPackage jPackage = getPackage(type, 1, type.length(), true);
+        if (jPackage != null) {
+            addDependency(jPackage);
+            if (getClassTable() != null && type.endsWith(";")) {
+                addClassReference(type, 0, type.length());
+            }
+        }
+    }
+
+    /*
+     * Imports the package, counting a reference of the current kind
+     * when scanning code.
+     */
+    private void addDependency(JavaPackage jPackage) {
+        if (isScanningCode()) {
+            jClass.addDependency(jPackage, referenceKind);
+        } else {
+            jClass.addImportedPackage(jPackage);
+        }
+    }
+
+    /*
+     * Imports the packages of the class types of a field or method
+     * descriptor.
+     */
+    private void addDescriptorImports(String descriptor, boolean skipEmptyTypes) {
+        int index = 0;
+        while ((index = descriptor.indexOf(CLASS_DESCRIPTOR, index)) >= 0) {
+            int end = descriptor.indexOf(';', index + 1);
+            if (end < 0) {
+                break;
+            }
+            if (!skipEmptyTypes || end > index + 1) {
+                addImport(descriptor, index + 1, end);
+                if (DEBUG) {
+                    debug("Parser: type = " + descriptor.substring(index + 1, end));
+                }
+            }
+            index = end + 1;
         }
     }
 
@@ -539,23 +738,38 @@ public class ClassFileParser extends AbstractParser {
         return s.replace('/', '.');
     }
 
-    private String getPackageName(String s) {
-        if ((s.length() > 0) && (s.charAt(0) == '[')) {
-            String types[] = descriptorToTypes(s);
-            if (types.length == 0) {
+    /*
+     * Returns the canonical package of the class name or array descriptor
+     * in s[start, end), or null for arrays of primitives. With accepted,
+     * null is also returned for packages rejected by the filter.
+     */
+    private JavaPackage getPackage(String s, int start, int end, boolean accepted) {
+        if (start < end && s.charAt(start) == '[') {
+            if (s.indexOf(';', start) < 0) {
                 return null; // primitives
             }
+            start = s.indexOf(CLASS_DESCRIPTOR, start) + 1;
+            end = s.indexOf(';', start);
+        }
 
-            s = types[0];
+        int index = end - 1;
+        while (index > start && s.charAt(index) != '.' && s.charAt(index) != '/') {
+            index--;
         }
 
-        s = slashesToDots(s);
-        int index = s.lastIndexOf(".");
-        if (index > 0) {
-            return s.substring(0, index);
+        if (index <= start) {
+            s = DEFAULT_PACKAGE;
+            start = 0;
+            index = s.length();
         }
+        return accepted ? lookup().getAcceptedPackage(s, start, index) : lookup().getPackage(s, start, index);
+    }
 
-        return "Default";
+    private PackageLookup lookup() {
+        if (packages == null) {
+            packages = new PackageLookup(getPackageTable(), getFilter());
+        }
+        return packages;
     }
 
     private String[] descriptorToTypes(String descriptor) {
@@ -658,6 +872,7 @@ public class ClassFileParser extends AbstractParser {
         private final int _descriptorIndex;
 
         private AttributeInfo _runtimeVisibleAnnotations;
+        private AttributeInfo _runtimeInvisibleAnnotations;
         private AttributeInfo _signature;
 
         FieldOrMethodInfo(int accessFlags, int nameIndex, int descriptorIndex) {
@@ -700,6 +915,28 @@ public class ClassFileParser extends AbstractParser {
         }
     }
 
+    /**
+     * Counts the class references of the scanned instructions.
+     */
+    private class CodeReferences implements CodeScanner.Visitor {
+
+        public void visit(int constantIndex, DependencyKind kind) throws IOException {
+            Constant constant = getConstantPoolEntry(constantIndex);
+            if (constant != null && (constant.getTag() == CONSTANT_FIELD
+                    || constant.getTag() == CONSTANT_METHOD
+                    || constant.getTag() == CONSTANT_INTERFACEMETHOD)) {
+                constant = getConstantPoolEntry(constant.getNameIndex());
+            }
+            if (constant != null && constant.getTag() == CONSTANT_CLASS) {
+                String name = toUTF8(constant.getNameIndex());
+                JavaPackage jPackage = getPackage(name, 0, name.length(), true);
+                if (jPackage != null) {
+                    jClass.addDependency(jPackage, kind);
+                }
+            }
+        }
+    }
+
     class AttributeInfo {
 
         private String name;
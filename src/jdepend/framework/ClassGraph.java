@@ -0,0 +1,431 @@
+package jdepend.framework;
+
+import java.util.Arrays;
+
+/**
+ * The <code>ClassGraph</code> class is the dependency graph of the
+ * analyzed classes, stored in compressed sparse row form: the
+ * dependencies of the class with the id <code>i</code> are the entries
+ * <code>offsets[i]</code> to <code>offsets[i + 1]</code> of one
+ * <code>int</code> array of class ids, and the dependents are stored
+ * the same way. A graph with <code>n</code> classes and <code>m</code>
+ * dependencies takes about <code>8 * (n + m)</code> bytes, plus the
+ * class names.
+ * <p>
+ * The graph contains every analyzed class and every class it references
+ * in a package accepted by the filter. Classes are identified by their
+ * fully qualified name with <code>$</code> separating inner classes,
+ * and dependencies of array types point to their element class. Ids are
+ * dense, starting with 0; the dependencies and dependents of a class are
+ * sorted by id.
+ * </p>
+ * <p>
+ * The graph is immutable and thread safe. It is collected with
+ * <code>JDepend.collectClassGraph()</code>:
+ * </p>
+ * <blockquote>
+ * <pre>
+ * JDepend jdepend = new JDepend();
+ * jdepend.addDirectory(&quot;/path/to/classes&quot;);
+ * jdepend.collectClassGraph(true);
+ * jdepend.analyze();
+ * ClassGraph graph = jdepend.getClassGraph();
+ * for (int id : graph.getDependents(graph.idOf(&quot;com.xyz.Foo&quot;))) {
+ *     System.out.println(graph.nameOf(id));
+ * }
+ * </pre>
+ * </blockquote>
+ */
+
+public final class ClassGraph {
+
+    private final String[] names;
+    private final ClassTable table;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] reverseOffsets;
+    private final int[] sources;
+    private int[] components;
+    private int[] componentSizes;
+
+
+    private ClassGraph(ClassTable table, String[] names, int[] offsets, int[] targets) {
+        this.table = table;
+        this.names = names;
+        this.offsets = offsets;
+        this.targets = targets;
+
+        int n = names.length;
+        reverseOffsets = new int[n + 1];
+        for (int target : targets) {
+            reverseOffsets[target + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            reverseOffsets[i + 1] += reverseOffsets[i];
+        }
+        sources = new int[targets.length];
+        int[] next = Arrays.copyOf(reverseOffsets, n);
+        for (int source = 0; source < n; source++) {
+            for (int e = offsets[source]; e < offsets[source + 1]; e++) {
+                sources[next[targets[e]]++] = source;
+            }
+        }
+    }
+
+    /**
+     * @return The number of classes.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @return The number of dependencies between the classes.
+     */
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * Returns the id of the class of the specified name.
+     *
+     * @param className Fully qualified class name.
+     * @return Class id, or -1 if the class is not part of the graph.
+     */
+    public int idOf(String className) {
+        int id = table.find(className);
+        return id < names.length ? id : -1;
+    }
+
+    /**
+     * Returns the name of the class of the specified id.
+     *
+     * @param id Class id.
+     * @return Fully qualified class name.
+     * @throws IndexOutOfBoundsException If no class has the id.
+     */
+    public String nameOf(int id) {
+        return names[id];
+    }
+
+    /**
+     * Returns the ids of the classes the specified class depends upon.
+     *
+     * @param id Class id.
+     * @return Sorted class ids.
+     */
+    public int[] getDependencies(int id) {
+        return Arrays.copyOfRange(targets, offsets[id], offsets[id + 1]);
+    }
+
+    /**
+     * Returns the number of classes the specified class depends upon,
+     * without copying them.
+     *
+     * @param id Class id.
+     * @return Number of dependencies.
+     */
+    public int dependencyCount(int id) {
+        return offsets[id + 1] - offsets[id];
+    }
+
+    /**
+     * Returns the ids of the classes which depend upon the specified
+     * class.
+     *
+     * @param id Class id.
+     * @return Sorted class ids.
+     */
+    public int[] getDependents(int id) {
+        return Arrays.copyOfRange(sources, reverseOffsets[id], reverseOffsets[id + 1]);
+    }
+
+    /**
+     * Returns the number of classes which depend upon the specified
+     * class, without copying them.
+     *
+     * @param id Class id.
+     * @return Number of dependents.
+     */
+    public int dependentCount(int id) {
+        return reverseOffsets[id + 1] - reverseOffsets[id];
+    }
+
+    /**
+     * Indicates whether the first class depends on the second one,
+     * directly or transitively.
+     *
+     * @param from Id of the depending class.
+     * @param to   Id of the class depended upon.
+     * @return <code>true</code> if a path of dependencies leads from
+     * <code>from</code> to <code>to</code>.
+     */
+    public boolean reaches(int from, int to) {
+        int[] queue = new int[names.length];
+        boolean[] visited = new boolean[names.length];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = from;
+        visited[from] = true;
+        while (head < tail) {
+            int current = queue[head++];
+            for (int e = offsets[current]; e < offsets[current + 1]; e++) {
+                int target = targets[e];
+                if (target == to) {
+                    return true;
+                }
+                if (!visited[target]) {
+                    visited[target] = true;
+                    queue[tail++] = target;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the ids of the classes the specified class depends upon,
+     * directly or transitively.
+     *
+     * @param id Class id.
+     * @return Sorted class ids, including <code>id</code> only if the
+     * class is part of a cycle.
+     */
+    public int[] getReachable(int id) {
+        int[] queue = new int[names.length];
+        boolean[] visited = new boolean[names.length];
+        int head = 0;
+        int tail = 0;
+        for (int e = offsets[id]; e < offsets[id + 1]; e++) {
+            visited[targets[e]] = true;
+            queue[tail++] = targets[e];
+        }
+        while (head < tail) {
+            int current = queue[head++];
+            for (int e = offsets[current]; e < offsets[current + 1]; e++) {
+                int target = targets[e];
+                if (!visited[target]) {
+                    visited[target] = true;
+                    queue[tail++] = target;
+                }
+            }
+        }
+        int[] reachable = Arrays.copyOf(queue, tail);
+        Arrays.sort(reachable);
+        return reachable;
+    }
+
+    /**
+     * Indicates whether the specified class is part of a dependency
+     * cycle.
+     *
+     * @param id Class id.
+     * @return <code>true</code> if the class depends on itself,
+     * directly or transitively.
+     */
+    public boolean isInCycle(int id) {
+        int[] sizes = componentSizes();
+        return sizes[components[id]] > 1 || Arrays.binarySearch(targets, offsets[id], offsets[id + 1], id) >= 0;
+    }
+
+    /**
+     * Returns the ids of the classes of the strongly connected component
+     * of the specified class: the classes which depend on it and which
+     * it depends upon, transitively.
+     *
+     * @param id Class id.
+     * @return Sorted class ids, at least <code>id</code>.
+     */
+    public int[] getComponent(int id) {
+        int[] sizes = componentSizes();
+        int component = components[id];
+        int[] members = new int[sizes[component]];
+        int count = 0;
+        for (int i = 0; i < components.length && count < members.length; i++) {
+            if (components[i] == component) {
+                members[count++] = i;
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Returns the strongly connected component of every class, numbered
+     * in reverse topological order: a component only depends on
+     * components with a lower number.
+     *
+     * @return Component numbers, indexed by class id.
+     */
+    public int[] getComponents() {
+        componentSizes();
+        return components.clone();
+    }
+
+    private synchronized int[] componentSizes() {
+        if (componentSizes == null) {
+            computeComponents();
+        }
+        return componentSizes;
+    }
+
+    /*
+     * Iterative Tarjan, with the explicit call stack held in int arrays.
+     */
+    private void computeComponents() {
+        int n = names.length;
+        int[] index = new int[n];
+        int[] lowlink = new int[n];
+        int[] stack = new int[n];
+        int[] callStack = new int[n];
+        int[] edge = new int[n];
+        boolean[] onStack = new boolean[n];
+        Arrays.fill(index, -1);
+        int[] result = new int[n];
+        int[] sizes = new int[n];
+        int nextIndex = 0;
+        int stackSize = 0;
+        int componentCount = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            callStack[depth++] = root;
+            index[root] = lowlink[root] = nextIndex++;
+            edge[root] = offsets[root];
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth > 0) {
+                int v = callStack[depth - 1];
+                if (edge[v] < offsets[v + 1]) {
+                    int w = targets[edge[v]++];
+                    if (index[w] < 0) {
+                        index[w] = lowlink[w] = nextIndex++;
+                        edge[w] = offsets[w];
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        callStack[depth++] = w;
+                    } else if (onStack[w]) {
+                        lowlink[v] = Math.min(lowlink[v], index[w]);
+                    }
+                } else {
+                    depth--;
+                    if (depth > 0) {
+                        int parent = callStack[depth - 1];
+                        lowlink[parent] = Math.min(lowlink[parent], lowlink[v]);
+                    }
+                    if (lowlink[v] == index[v]) {
+                        int w;
+                        do {
+                            w = stack[--stackSize];
+                            onStack[w] = false;
+                            result[w] = componentCount;
+                            sizes[componentCount]++;
+                        } while (w != v);
+                        componentCount++;
+                    }
+                }
+            }
+        }
+        components = result;
+        componentSizes = Arrays.copyOf(sizes, componentCount);
+    }
+
+    /**
+     * The <code>Builder</code> collects the dependencies of the analyzed
+     * classes in growing <code>int</code> arrays, one row of class ids
+     * per class, and turns them into a <code>ClassGraph</code>.
+     * <p>
+     * A builder is not thread safe.
+     * </p>
+     */
+    static final class Builder {
+
+        private final ClassTable table;
+        private int[] rowSources = new int[1024];
+        private int[] rowEnds = new int[1024];
+        private int rows;
+        private int[] edges = new int[8192];
+        private int edgeCount;
+
+        Builder(ClassTable table) {
+            this.table = table;
+        }
+
+        ClassTable getTable() {
+            return table;
+        }
+
+        /**
+         * Adds the dependencies of the specified class. A class added
+         * more than once depends on the union of its dependencies.
+         *
+         * @param source     Id of the class.
+         * @param references Ids of the classes it depends upon.
+         */
+        void add(int source, int[] references) {
+            if (rows == rowSources.length) {
+                rowSources = Arrays.copyOf(rowSources, 2 * rows);
+                rowEnds = Arrays.copyOf(rowEnds, 2 * rows);
+            }
+            if (edgeCount + references.length > edges.length) {
+                edges = Arrays.copyOf(edges, Math.max(2 * edges.length, edgeCount + references.length));
+            }
+            System.arraycopy(references, 0, edges, edgeCount, references.length);
+            edgeCount += references.length;
+            rowSources[rows] = source;
+            rowEnds[rows] = edgeCount;
+            rows++;
+        }
+
+        /**
+         * Builds the graph of the classes interned so far.
+         */
+        ClassGraph build() {
+            String[] names = table.getNames();
+            int n = names.length;
+
+            int[] offsets = new int[n + 1];
+            int start = 0;
+            for (int r = 0; r < rows; r++) {
+                offsets[rowSources[r] + 1] += rowEnds[r] - start;
+                start = rowEnds[r];
+            }
+            for (int i = 0; i < n; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+
+            int[] targets = new int[offsets[n]];
+            int[] next = Arrays.copyOf(offsets, n);
+            start = 0;
+            for (int r = 0; r < rows; r++) {
+                int source = rowSources[r];
+                int length = rowEnds[r] - start;
+                System.arraycopy(edges, start, targets, next[source], length);
+                next[source] += length;
+                start = rowEnds[r];
+            }
+
+            // sort each row and drop duplicates, compacting in place
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                int from = offsets[i];
+                int to = offsets[i + 1];
+                Arrays.sort(targets, from, to);
+                offsets[i] = count;
+                for (int e = from; e < to; e++) {
+                    if (e == from || targets[e] != targets[e - 1]) {
+                        targets[count++] = targets[e];
+                    }
+                }
+            }
+            offsets[n] = count;
+            if (count < targets.length) {
+                targets = Arrays.copyOf(targets, count);
+            }
+            return new ClassGraph(table, names, offsets, targets);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package jdepend.framework;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The <code>ClassTable</code> class interns class names and gives each
+ * of them a dense <code>int</code> id, in interning order starting with
+ * 0, which indexes the arrays of a <code>ClassGraph</code>.
+ * <p>
+ * The table is thread safe; the parsers of a parallel build share the
+ * table of the parser they were created from.
+ * </p>
+ */
+
+final class ClassTable {
+
+    private final ConcurrentMap<String, Integer> ids;
+    private volatile String[] names;
+    private int size;
+
+
+    ClassTable() {
+        ids = new ConcurrentHashMap<String, Integer>();
+        names = new String[1024];
+    }
+
+    /**
+     * Returns the id of the class of the specified name, interning the
+     * name if necessary.
+     */
+    int idOf(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : add(name);
+    }
+
+    /**
+     * Returns the id of the class of the specified name, or -1 if the
+     * name was not interned.
+     */
+    int find(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Returns the name of the class of the specified id.
+     */
+    String nameOf(int id) {
+        String[] table = names;
+        String name = id >= 0 && id < table.length ? table[id] : null;
+        if (name == null) {
+            throw new IndexOutOfBoundsException("Unknown class id: " + id);
+        }
+        return name;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns the names of the interned classes, indexed by id.
+     */
+    synchronized String[] getNames() {
+        return Arrays.copyOf(names, size);
+    }
+
+    private synchronized int add(String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            String[] table = names;
+            if (size == table.length) {
+                table = Arrays.copyOf(table, 2 * size);
+            }
+            table[size] = name;
+            names = table;
+            id = size++;
+            ids.put(name, id);
+        }
+        return id;
+    }
+}
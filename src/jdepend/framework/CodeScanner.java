@@ -0,0 +1,184 @@
+package jdepend.framework;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The <code>CodeScanner</code> class finds the class references of the
+ * instructions in the <code>Code</code> attribute of a method. It walks
+ * the instruction stream once, by absolute positions in the buffer, and
+ * allocates nothing.
+ * <p>
+ * The scanner only reports the constant pool index an instruction
+ * refers to; resolving the index to a class is left to the parser.
+ * </p>
+ */
+
+final class CodeScanner {
+
+    /**
+     * Receives the constant pool indexes of the class references found
+     * by a scan. For field and method accesses, the index is that of the
+     * field or method reference; for <code>ldc</code> instructions, it
+     * may be a constant of any type.
+     */
+    interface Visitor {
+        void visit(int constantIndex, DependencyKind kind) throws IOException;
+    }
+
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int IINC = 0x84;
+    private static final int TABLESWITCH = 0xaa;
+    private static final int LOOKUPSWITCH = 0xab;
+    private static final int GETSTATIC = 0xb2;
+    private static final int PUTSTATIC = 0xb3;
+    private static final int GETFIELD = 0xb4;
+    private static final int PUTFIELD = 0xb5;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int INVOKEINTERFACE = 0xb9;
+    private static final int NEW = 0xbb;
+    private static final int ANEWARRAY = 0xbd;
+    private static final int CHECKCAST = 0xc0;
+    private static final int INSTANCEOF = 0xc1;
+    private static final int WIDE = 0xc4;
+    private static final int MULTIANEWARRAY = 0xc5;
+
+    /*
+     * Lengths of the instructions with a fixed length, including the
+     * opcode; 0 for variable length instructions and invalid opcodes.
+     */
+    private static final byte[] LENGTHS = new byte[256];
+
+    static {
+        setLength(0x00, 0xc9, 1);
+        setLength(0x10, 0x10, 2); // bipush
+        setLength(0x11, 0x11, 3); // sipush
+        setLength(LDC, LDC, 2);
+        setLength(LDC_W, 0x14, 3); // ldc_w, ldc2_w
+        setLength(0x15, 0x19, 2); // loads
+        setLength(0x36, 0x3a, 2); // stores
+        setLength(IINC, IINC, 3);
+        setLength(0x99, 0xa8, 3); // branches, goto, jsr
+        setLength(0xa9, 0xa9, 2); // ret
+        setLength(TABLESWITCH, LOOKUPSWITCH, 0);
+        setLength(GETSTATIC, INVOKESTATIC, 3);
+        setLength(INVOKEINTERFACE, 0xba, 5); // invokeinterface, invokedynamic
+        setLength(NEW, NEW, 3);
+        setLength(0xbc, 0xbc, 2); // newarray
+        setLength(ANEWARRAY, ANEWARRAY, 3);
+        setLength(CHECKCAST, INSTANCEOF, 3);
+        setLength(WIDE, WIDE, 0);
+        setLength(MULTIANEWARRAY, MULTIANEWARRAY, 4);
+        setLength(0xc6, 0xc7, 3); // ifnull, ifnonnull
+        setLength(0xc8, 0xc9, 5); // goto_w, jsr_w
+    }
+
+    private CodeScanner() {
+    }
+
+    private static void setLength(int from, int to, int length) {
+        for (int opcode = from; opcode <= to; opcode++) {
+            LENGTHS[opcode] = (byte) length;
+        }
+    }
+
+    /**
+     * Scans the instructions between the specified positions of the
+     * buffer.
+     *
+     * @param code    Buffer containing the code.
+     * @param start   Position of the first instruction.
+     * @param end     Position after the last instruction.
+     * @param visitor Visitor receiving the class references.
+     * @throws IOException If the code contains an invalid instruction or
+     *                     the visitor cannot resolve a reference.
+     */
+    static void scan(ByteBuffer code, int start, int end, Visitor visitor) throws IOException {
+        int pc = start;
+        while (pc < end) {
+            int opcode = code.get(pc) & 0xFF;
+            switch (opcode) {
+                case NEW:
+                case ANEWARRAY:
+                case MULTIANEWARRAY:
+                    visitor.visit(u2(code, pc + 1), DependencyKind.NEW);
+                    break;
+                case GETSTATIC:
+                case PUTSTATIC:
+                case GETFIELD:
+                case PUTFIELD:
+                    visitor.visit(u2(code, pc + 1), DependencyKind.FIELD_ACCESS);
+                    break;
+                case INVOKEVIRTUAL:
+                case INVOKESPECIAL:
+                case INVOKESTATIC:
+                case INVOKEINTERFACE:
+                    visitor.visit(u2(code, pc + 1), DependencyKind.INVOKE);
+                    break;
+                case CHECKCAST:
+                case INSTANCEOF:
+                    visitor.visit(u2(code, pc + 1), DependencyKind.TYPE_CHECK);
+                    break;
+                case LDC:
+                    visitor.visit(code.get(pc + 1) & 0xFF, DependencyKind.CLASS_LITERAL);
+                    break;
+                case LDC_W:
+                    visitor.visit(u2(code, pc + 1), DependencyKind.CLASS_LITERAL);
+                    break;
+            }
+            pc += length(code, start, end, pc, opcode);
+        }
+        if (pc != end) {
+            throw new IOException("Truncated code");
+        }
+    }
+
+    private static int length(ByteBuffer code, int start, int end, int pc, int opcode) throws IOException {
+        int fixedLength = LENGTHS[opcode];
+        if (fixedLength > 0) {
+            return fixedLength;
+        }
+
+        // the operands of switches are aligned to 4 bytes from the start of the code
+        int operands = start + ((pc - start + 4) & ~3);
+        long length;
+        switch (opcode) {
+            case TABLESWITCH:
+                if (operands + 12 > end) {
+                    throw new IOException("Truncated code");
+                }
+                long low = s4(code, operands + 4);
+                long high = s4(code, operands + 8);
+                length = operands - pc + 12 + 4 * (high - low + 1);
+                break;
+            case LOOKUPSWITCH:
+                if (operands + 8 > end) {
+                    throw new IOException("Truncated code");
+                }
+                length = operands - pc + 8 + 8L * s4(code, operands + 4);
+                break;
+            case WIDE:
+                length = pc + 1 < end && (code.get(pc + 1) & 0xFF) == IINC ? 6 : 4;
+                break;
+            default:
+                throw new IOException("Invalid opcode " + opcode + " at " + (pc - start));
+        }
+
+        if (length <= 0 || pc + length > end) {
+            throw new IOException("Invalid instruction " + opcode + " at " + (pc - start));
+        }
+        return (int) length;
+    }
+
+    private static int u2(ByteBuffer code, int index) {
+        return (code.get(index) & 0xFF) << 8 | (code.get(index + 1) & 0xFF);
+    }
+
+    private static int s4(ByteBuffer code, int index) {
+        return (code.get(index) & 0xFF) << 24 | (code.get(index + 1) & 0xFF) << 16
+                | (code.get(index + 2) & 0xFF) << 8 | (code.get(index + 3) & 0xFF);
+    }
+}
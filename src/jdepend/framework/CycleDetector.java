@@ -0,0 +1,506 @@
+package jdepend.framework;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The <code>CycleDetector</code> class finds the strongly connected
+ * components of the package dependency graph with Tarjan's algorithm and
+ * caches for each package whether it reaches a dependency cycle.
+ * <p>
+ * The components are computed lazily for the packages reachable from a
+ * queried package, in time linear to their number of dependencies, and
+ * remain valid until an efferent of a package of the same graph
+ * changes. Dependencies must therefore be changed with the methods of
+ * <code>JavaPackage</code> and not through the collections it returns.
+ * </p>
+ * <p>
+ * A graph is a set of packages connected by dependencies, such as the
+ * packages of one <code>JDepend</code> analysis; the sets are merged as
+ * dependencies are added. Each graph has its own version and lock, so
+ * that a change in one graph does not invalidate the components of
+ * another, and the components of different graphs are computed
+ * concurrently.
+ * </p>
+ * <p>
+ * The dependencies which <code>JDepend</code> adds or withdraws while
+ * it updates an analysis only invalidate the packages which reach the
+ * changed package, found through the afferents; the components of all
+ * other packages are kept.
+ * </p>
+ * <p>
+ * With the cached information, the cycle paths of
+ * <code>JavaPackage.collectCycle()</code> and
+ * <code>JavaPackage.collectAllCycles()</code> are rebuilt without
+ * exploring the dependencies which cannot lead into a cycle. The
+ * collected lists are the same as those of an exhaustive search.
+ * </p>
+ * <p>
+ * The cycle paths of many packages are collected by
+ * <code>collectCycles()</code>, which computes the components of all
+ * packages once and then derives the paths, which only read the cached
+ * information, in parallel.
+ * </p>
+ * <p>
+ * All traversals are iterative, so that the depth of the dependency
+ * graph is not limited by the size of the call stack.
+ * </p>
+ */
+
+final class CycleDetector {
+
+    private CycleDetector() {
+    }
+
+    /**
+     * Merges the graphs of two packages, as a dependency between them
+     * is added. The packages of the smaller graph lose their cached
+     * components.
+     */
+    static void connect(JavaPackage from, JavaPackage to) {
+        Graph a = from.cycleGraph.root();
+        Graph b = to.cycleGraph.root();
+        if (a == b) {
+            return;
+        }
+        if (a.size < b.size) {
+            Graph t = a;
+            a = b;
+            b = t;
+        }
+        synchronized (a) {
+            a.size += b.size;
+            b.parent = a;
+        }
+    }
+
+    /**
+     * Invalidates the cached components of all packages of the graph of
+     * the specified package.
+     */
+    static void graphChanged(JavaPackage jPackage) {
+        Graph graph = jPackage.cycleGraph.root();
+        synchronized (graph) {
+            graph.version++;
+        }
+    }
+
+    /**
+     * Invalidates the cached components of the specified package, whose
+     * efferents changed, and of the packages which reach it through
+     * their afferents; no other package can reach the changed
+     * dependency. The walk stops at packages without current
+     * information, as the packages reaching them cannot have current
+     * information either.
+     */
+    static void dependencyChanged(JavaPackage jPackage) {
+        Graph graph = jPackage.cycleGraph.root();
+        synchronized (graph) {
+            int version = graph.version;
+            if (!isCurrent(jPackage, graph, version)) {
+                return;
+            }
+            jPackage.cycleInfo = null;
+            LinkedList<JavaPackage> queue = new LinkedList<JavaPackage>();
+            queue.add(jPackage);
+            while (!queue.isEmpty()) {
+                for (JavaPackage afferent : queue.removeFirst().getAfferents()) {
+                    if (isCurrent(afferent, graph, version)) {
+                        afferent.cycleInfo = null;
+                        queue.add(afferent);
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isCurrent(JavaPackage jPackage, Graph graph, int version) {
+        Info info = jPackage.cycleInfo;
+        return info != null && info.graph == graph && info.version == version;
+    }
+
+    /**
+     * Indicates whether a dependency cycle can be reached from the
+     * specified package, including a cycle the package is part of.
+     */
+    static boolean reachesCycle(JavaPackage jPackage) {
+        return info(jPackage).reachesCycle;
+    }
+
+    /**
+     * Returns the packages of the strongly connected component of the
+     * specified package in discovery order, or an empty list if the
+     * package is not part of a cycle.
+     */
+    static List<JavaPackage> getComponent(JavaPackage jPackage) {
+        return info(jPackage).component;
+    }
+
+    static boolean collectCycle(JavaPackage jPackage, List<JavaPackage> list) {
+        Qualifier qualifier = new Qualifier(jPackage, list);
+        Set<JavaPackage> onPath = new HashSet<JavaPackage>(list);
+
+        JavaPackage current = jPackage;
+        while (!onPath.contains(current)) {
+            list.add(current);
+            onPath.add(current);
+
+            JavaPackage next = null;
+            for (JavaPackage efferent : current.getEfferents()) {
+                if (onPath.contains(efferent) || qualifier.leadsToCycle(efferent)) {
+                    next = efferent;
+                    break;
+                }
+            }
+
+            if (next == null) {
+                list.remove(list.size() - 1);
+                return false;
+            }
+            current = next;
+        }
+
+        list.add(current);
+        return true;
+    }
+
+    /**
+     * Collects the first cycle path of each of the specified packages,
+     * as <code>collectCycle()</code> does, with the specified number of
+     * threads. The dependencies must not change meanwhile.
+     *
+     * @return The cycle path of each package in the order of the
+     * packages, an empty list for a package which reaches no cycle.
+     */
+    static List<List<JavaPackage>> collectCycles(List<JavaPackage> packages, int threads) {
+        for (JavaPackage jPackage : packages) {
+            reachesCycle(jPackage);
+        }
+
+        List<List<JavaPackage>> cycles = new ArrayList<List<JavaPackage>>(
+                Collections.<List<JavaPackage>>nCopies(packages.size(), null));
+        if (threads > 1 && packages.size() > CycleTask.THRESHOLD) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                pool.invoke(new CycleTask(packages, cycles, 0, packages.size()));
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            collectCycles(packages, cycles, 0, packages.size());
+        }
+        return cycles;
+    }
+
+    private static void collectCycles(List<JavaPackage> packages, List<List<JavaPackage>> cycles, int from, int to) {
+        for (int i = from; i < to; i++) {
+            JavaPackage jPackage = packages.get(i);
+            if (reachesCycle(jPackage)) {
+                List<JavaPackage> cycle = new ArrayList<JavaPackage>();
+                collectCycle(jPackage, cycle);
+                cycles.set(i, cycle);
+            } else {
+                cycles.set(i, Collections.<JavaPackage>emptyList());
+            }
+        }
+    }
+
+    static boolean collectAllCycles(JavaPackage jPackage, List<JavaPackage> list) {
+        Qualifier qualifier = new Qualifier(jPackage, list);
+        Set<JavaPackage> inList = new HashSet<JavaPackage>(list);
+
+        if (inList.contains(jPackage)) {
+            list.add(jPackage);
+            return true;
+        }
+
+        list.add(jPackage);
+        inList.add(jPackage);
+
+        LinkedList<Frame> frames = new LinkedList<Frame>();
+        Frame root = new Frame(jPackage);
+        frames.addFirst(root);
+        while (!frames.isEmpty()) {
+            Frame frame = frames.getFirst();
+            if (frame.efferents.hasNext()) {
+                JavaPackage efferent = frame.efferents.next();
+                if (inList.contains(efferent)) {
+                    list.add(efferent);
+                    frame.found = true;
+                } else if (qualifier.leadsToCycle(efferent)) {
+                    list.add(efferent);
+                    inList.add(efferent);
+                    frames.addFirst(new Frame(efferent));
+                }
+            } else {
+                frames.removeFirst();
+                if (!frame.found) {
+                    list.remove(list.size() - 1);
+                    inList.remove(frame.jPackage);
+                } else if (!frames.isEmpty()) {
+                    frames.getFirst().found = true;
+                }
+            }
+        }
+
+        return root.found;
+    }
+
+    private static Info info(JavaPackage jPackage) {
+        Graph graph = jPackage.cycleGraph.root();
+        Info info = jPackage.cycleInfo;
+        if (info != null && info.graph == graph && info.version == graph.version) {
+            return info;
+        }
+
+        synchronized (graph) {
+            int version = graph.version;
+            if (!isCurrent(jPackage, graph, version)) {
+                new Tarjan(graph, version).visit(jPackage);
+            }
+            info = jPackage.cycleInfo;
+        }
+        return info;
+    }
+
+    /**
+     * A set of packages connected by dependencies, merged by size. The
+     * root of a set holds its version and is the lock of its Tarjan
+     * runs; the parents are not compressed, so that finding the root
+     * only reads.
+     */
+    static final class Graph {
+        private volatile Graph parent;
+        private volatile int version;
+        private int size = 1;
+
+        Graph root() {
+            Graph root = this;
+            for (Graph next = parent; next != null; next = next.parent) {
+                root = next;
+            }
+            return root;
+        }
+    }
+
+    /**
+     * The cached cycle information of a package.
+     */
+    static class Info {
+        final Graph graph;
+        final int version;
+        final boolean reachesCycle;
+        final List<JavaPackage> component;
+
+        Info(Graph graph, int version, boolean reachesCycle, List<JavaPackage> component) {
+            this.graph = graph;
+            this.version = version;
+            this.reachesCycle = reachesCycle;
+            this.component = component;
+        }
+    }
+
+    /**
+     * An iterative implementation of Tarjan's strongly connected
+     * components algorithm. Packages with information of the current
+     * version are not visited again, as all packages they reach already
+     * have information of the current version.
+     */
+    private static class Tarjan {
+        private final Graph graph;
+        private final int version;
+        private final Map<JavaPackage, Integer> indexes = new IdentityHashMap<JavaPackage, Integer>();
+        private final List<Integer> lowlinks = new ArrayList<Integer>();
+        private final List<JavaPackage> stack = new ArrayList<JavaPackage>();
+        private final Set<JavaPackage> onStack = Collections.newSetFromMap(new IdentityHashMap<JavaPackage, Boolean>());
+
+        Tarjan(Graph graph, int version) {
+            this.graph = graph;
+            this.version = version;
+        }
+
+        void visit(JavaPackage root) {
+            LinkedList<Frame> frames = new LinkedList<Frame>();
+            frames.addFirst(push(root));
+
+            while (!frames.isEmpty()) {
+                Frame frame = frames.getFirst();
+                int index = indexes.get(frame.jPackage);
+                if (frame.efferents.hasNext()) {
+                    JavaPackage efferent = frame.efferents.next();
+                    if (isCurrent(efferent)) {
+                        continue;
+                    }
+                    Integer efferentIndex = indexes.get(efferent);
+                    if (efferentIndex == null) {
+                        frames.addFirst(push(efferent));
+                    } else if (onStack.contains(efferent)) {
+                        lowlinks.set(index, Math.min(lowlinks.get(index), efferentIndex));
+                    }
+                } else {
+                    frames.removeFirst();
+                    int lowlink = lowlinks.get(index);
+                    if (!frames.isEmpty()) {
+                        int parent = indexes.get(frames.getFirst().jPackage);
+                        lowlinks.set(parent, Math.min(lowlinks.get(parent), lowlink));
+                    }
+                    if (lowlink == index) {
+                        popComponent(frame.jPackage);
+                    }
+                }
+            }
+        }
+
+        private Frame push(JavaPackage jPackage) {
+            int index = lowlinks.size();
+            indexes.put(jPackage, index);
+            lowlinks.add(index);
+            stack.add(jPackage);
+            onStack.add(jPackage);
+            return new Frame(jPackage);
+        }
+
+        /*
+         * The packages reached by the members of a component are either
+         * members themselves or belong to components found earlier.
+         */
+        private void popComponent(JavaPackage root) {
+            int start = stack.lastIndexOf(root);
+            List<JavaPackage> members = new ArrayList<JavaPackage>(stack.subList(start, stack.size()));
+            stack.subList(start, stack.size()).clear();
+            for (JavaPackage member : members) {
+                onStack.remove(member);
+            }
+
+            boolean cycle = members.size() > 1 || root.getEfferents().contains(root);
+            boolean reachesCycle = cycle;
+            for (int i = 0; i < members.size() && !reachesCycle; i++) {
+                for (JavaPackage efferent : members.get(i).getEfferents()) {
+                    if (efferent != members.get(i) && efferent.cycleInfo.reachesCycle) {
+                        reachesCycle = true;
+                        break;
+                    }
+                }
+            }
+
+            List<JavaPackage> component = cycle
+                    ? Collections.unmodifiableList(members)
+                    : Collections.<JavaPackage>emptyList();
+            for (JavaPackage member : members) {
+                member.cycleInfo = new Info(graph, version, reachesCycle, component);
+            }
+        }
+
+        private boolean isCurrent(JavaPackage jPackage) {
+            return CycleDetector.isCurrent(jPackage, graph, version);
+        }
+    }
+
+    /**
+     * Decides whether the search for a cycle can continue with a package:
+     * that is, whether the package reaches a cycle or one of the packages
+     * the collecting list was initially populated with.
+     */
+    private static class Qualifier {
+        private final Set<JavaPackage> reachingInitial;
+
+        Qualifier(JavaPackage start, List<JavaPackage> initial) {
+            reachingInitial = initial.isEmpty()
+                    ? Collections.<JavaPackage>emptySet()
+                    : reaching(start, new HashSet<JavaPackage>(initial));
+        }
+
+        boolean leadsToCycle(JavaPackage jPackage) {
+            return reachesCycle(jPackage) || reachingInitial.contains(jPackage);
+        }
+
+        /*
+         * Packages within cycles may be missed, but those reach a cycle.
+         */
+        private static Set<JavaPackage> reaching(JavaPackage start, Set<JavaPackage> targets) {
+            Set<JavaPackage> result = Collections.newSetFromMap(new IdentityHashMap<JavaPackage, Boolean>());
+            Set<JavaPackage> visited = Collections.newSetFromMap(new IdentityHashMap<JavaPackage, Boolean>());
+
+            LinkedList<Frame> frames = new LinkedList<Frame>();
+            frames.addFirst(new Frame(start));
+            visited.add(start);
+            while (!frames.isEmpty()) {
+                Frame frame = frames.getFirst();
+                if (frame.efferents.hasNext()) {
+                    JavaPackage efferent = frame.efferents.next();
+                    if (targets.contains(efferent) || result.contains(efferent)) {
+                        frame.found = true;
+                    }
+                    if (visited.add(efferent)) {
+                        frames.addFirst(new Frame(efferent));
+                    }
+                } else {
+                    frames.removeFirst();
+                    if (frame.found || targets.contains(frame.jPackage)) {
+                        result.add(frame.jPackage);
+                        if (!frames.isEmpty()) {
+                            frames.getFirst().found = true;
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Collects the cycle paths of a range of packages, splitting it
+     * among the threads of the pool.
+     */
+    private static class CycleTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        static final int THRESHOLD = 64;
+
+        private final List<JavaPackage> packages;
+        private final List<List<JavaPackage>> cycles;
+        private final int from;
+        private final int to;
+
+        CycleTask(List<JavaPackage> packages, List<List<JavaPackage>> cycles, int from, int to) {
+            this.packages = packages;
+            this.cycles = cycles;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                collectCycles(packages, cycles, from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new CycleTask(packages, cycles, from, middle),
+                        new CycleTask(packages, cycles, middle, to));
+            }
+        }
+    }
+
+    /**
+     * A package being visited by an iterative depth-first search.
+     */
+    private static class Frame {
+        final JavaPackage jPackage;
+        final Iterator<JavaPackage> efferents;
+        boolean found;
+
+        Frame(JavaPackage jPackage) {
+            this.jPackage = jPackage;
+            this.efferents = jPackage.getEfferents().iterator();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package jdepend.framework;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The <code>DependencyKind</code> enumeration labels the references
+ * through which a class depends on a package.
+ * <p>
+ * The kinds of instructions are only found if the parser scans the
+ * <code>Code</code> attributes of the methods (see
+ * <code>AbstractParser.scanCode()</code>). A dependency without any of
+ * them is a weak dependency: the classes of the package are only named
+ * in declarations or annotations, but never used by the code.
+ * </p>
+ */
+
+public enum DependencyKind {
+
+    /**
+     * A reference by the constant pool, a field or method descriptor,
+     * or a generic signature.
+     */
+    REFERENCE(false),
+
+    /**
+     * An annotation type, or an enum or class value of an annotation.
+     */
+    ANNOTATION(false),
+
+    /**
+     * A <code>new</code>, <code>anewarray</code> or
+     * <code>multianewarray</code> instruction.
+     */
+    NEW(true),
+
+    /**
+     * A method invocation on a class of the package.
+     */
+    INVOKE(true),
+
+    /**
+     * A read or write of a field of a class of the package.
+     */
+    FIELD_ACCESS(true),
+
+    /**
+     * A <code>checkcast</code> or <code>instanceof</code> instruction.
+     */
+    TYPE_CHECK(true),
+
+    /**
+     * A class literal loaded by an <code>ldc</code> instruction.
+     */
+    CLASS_LITERAL(true);
+
+    private final boolean code;
+
+    DependencyKind(boolean code) {
+        this.code = code;
+    }
+
+    /**
+     * Indicates whether this kind of dependency is made by an
+     * instruction, that is, whether it is a hard dependency.
+     *
+     * @return <code>true</code> for instruction kinds.
+     */
+    public boolean isCodeDependency() {
+        return code;
+    }
+
+    /**
+     * Returns the kinds with a positive count in the specified counts,
+     * indexed by ordinal.
+     */
+    static Set<DependencyKind> kinds(int[] counts) {
+        Set<DependencyKind> kinds = EnumSet.noneOf(DependencyKind.class);
+        if (counts != null) {
+            for (DependencyKind kind : values()) {
+                if (counts[kind.ordinal()] > 0) {
+                    kinds.add(kind);
+                }
+            }
+        }
+        return kinds;
+    }
+}
@@ -51,10 +51,10 @@ public class DependencyMatchers {
                     description.appendText("Non matching packages:");
                     for (JavaPackage[] packs : result.getNonMatchingPackages()) {
                         description.appendText("\n" + packs[0].getName() + "\n");
-                        final List<JavaPackage> exAff = (List<JavaPackage>) packs[0].getAfferents();
-                        final List<JavaPackage> effAff = (List<JavaPackage>) packs[1].getAfferents();
-                        final List<JavaPackage> exEff = (List<JavaPackage>) packs[0].getEfferents();
-                        final List<JavaPackage> effEff = (List<JavaPackage>) packs[1].getEfferents();
+                        final List<JavaPackage> exAff = new ArrayList<JavaPackage>(packs[0].getAfferents());
+                        final List<JavaPackage> effAff = new ArrayList<JavaPackage>(packs[1].getAfferents());
+                        final List<JavaPackage> exEff = new ArrayList<JavaPackage>(packs[0].getEfferents());
+                        final List<JavaPackage> effEff = new ArrayList<JavaPackage>(packs[1].getEfferents());
                         if (!exAff.equals(effAff)) {
                             description.appendText("Expected afferents: " + toString(exAff) + "\n");
                             description.appendText("Found    afferents: " + toString(effAff) + "\n");
@@ -0,0 +1,175 @@
+package jdepend.framework;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * The <code>DirectoryWatcher</code> class watches the directories and
+ * archives analyzed by <code>JDepend</code> with a
+ * <code>WatchService</code> and reports the files which changed, so
+ * that they can be passed to <code>JDepend.reanalyze()</code>.
+ * <p>
+ * Directories are watched with all their subdirectories, including
+ * those created later. An archive registered instead of a directory is
+ * watched through its parent directory. The events of a compiler run
+ * arrive in bursts; they are collected until no event arrived for the
+ * delay set with <code>setDelay()</code>, and reported as one change.
+ * </p>
+ * <blockquote>
+ * <pre>
+ * DirectoryWatcher watcher = new DirectoryWatcher(jdepend.getDirectories());
+ * jdepend.analyze();
+ * while (true) {
+ *     Collection packages = jdepend.reanalyze(watcher.awaitChanges());
+ *     ...
+ * }
+ * </pre>
+ * </blockquote>
+ */
+
+public class DirectoryWatcher implements Closeable {
+
+    private final WatchService service;
+    private final Map<WatchKey, Path> keys;
+    private final Set<Path> trees;
+    private final Set<Path> archives;
+    private final Collection<File> roots;
+    private long delay;
+
+
+    /**
+     * Constructs a <code>DirectoryWatcher</code> and starts watching the
+     * specified directories and archives.
+     *
+     * @param directories Directories and archives.
+     * @throws IOException If a directory cannot be watched.
+     */
+    public DirectoryWatcher(Collection<File> directories) throws IOException {
+        service = FileSystems.getDefault().newWatchService();
+        keys = new HashMap<WatchKey, Path>();
+        trees = new HashSet<Path>();
+        archives = new HashSet<Path>();
+        roots = new TreeSet<File>();
+        delay = 200;
+
+        for (File directory : directories) {
+            File root = directory.getAbsoluteFile();
+            roots.add(root);
+            if (root.isDirectory()) {
+                registerTree(root.toPath());
+            } else {
+                archives.add(root.toPath());
+                register(root.toPath().getParent());
+            }
+        }
+    }
+
+    /**
+     * Sets the time without events after which a burst of events is
+     * reported.
+     *
+     * @param millis Delay in milliseconds.
+     */
+    public void setDelay(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Delay must not be negative: " + millis);
+        }
+        delay = millis;
+    }
+
+    public long getDelay() {
+        return delay;
+    }
+
+    /**
+     * Waits for changes and returns the changed, created, and deleted
+     * files once no further event arrived for the delay. A created
+     * directory is reported instead of its files, a deleted directory
+     * as the path it had. If the events overflowed, the watched
+     * directories and archives are reported.
+     *
+     * @return Sorted, non-empty collection of changed files and directories.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public Collection<File> awaitChanges() throws InterruptedException {
+        Set<File> changes = new TreeSet<File>();
+        while (changes.isEmpty()) {
+            WatchKey key = service.take();
+            while (key != null) {
+                collect(key, changes);
+                key = service.poll(delay, TimeUnit.MILLISECONDS);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Stops watching.
+     */
+    public void close() throws IOException {
+        service.close();
+    }
+
+    private void collect(WatchKey key, Set<File> changes) {
+        Path directory = keys.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                changes.addAll(roots);
+                continue;
+            }
+            Path child = directory.resolve((Path) event.context());
+            if (trees.contains(directory)) {
+                if (event.kind() == ENTRY_CREATE && Files.isDirectory(child)) {
+                    try {
+                        registerTree(child);
+                    } catch (IOException e) {
+                        System.err.println("\n" + e.getMessage());
+                    }
+                }
+                changes.add(child.toFile());
+            } else if (archives.contains(child)) {
+                changes.add(child.toFile());
+            }
+        }
+        if (!key.reset()) {
+            keys.remove(key);
+            trees.remove(directory);
+        }
+    }
+
+    private void registerTree(Path root) throws IOException {
+        Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                        if (!trees.add(dir)) {
+                            return FileVisitResult.SKIP_SUBTREE;
+                        }
+                        register(dir);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+    }
+
+    private void register(Path directory) throws IOException {
+        keys.put(directory.register(service, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), directory);
+    }
+}
@@ -2,10 +2,15 @@ package jdepend.framework;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * The <code>FileManager</code> class is responsible for extracting
@@ -20,11 +25,14 @@ public class FileManager {
 
     private List<File> directories;
     private boolean acceptInnerClasses;
+    private int modifications;
+    private int threads;
 
 
     public FileManager() {
         directories = new ArrayList<File>();
         acceptInnerClasses = true;
+        threads = 1;
     }
 
     /**
@@ -34,7 +42,10 @@ public class FileManager {
      *          <code>false</code> otherwise.
      */
     public void acceptInnerClasses(boolean b) {
-        acceptInnerClasses = b;
+        if (acceptInnerClasses != b) {
+            acceptInnerClasses = b;
+            modifications++;
+        }
     }
 
     public void addDirectory(String name) throws IOException {
@@ -43,11 +54,19 @@ public class FileManager {
 
         if (directory.isDirectory() || acceptJarFile(directory)) {
             directories.add(directory);
+            modifications++;
         } else {
             throw new IOException("Invalid directory or JAR file: " + name);
         }
     }
 
+    /**
+     * @return The registered directories and archives.
+     */
+    public Collection<File> getDirectories() {
+        return Collections.unmodifiableList(directories);
+    }
+
     public boolean acceptFile(File file) {
         return acceptClassFile(file) || acceptJarFile(file);
     }
@@ -70,38 +89,222 @@ public class FileManager {
         return isJar(file) || isZip(file) || isWar(file);
     }
 
+    /**
+     * Returns a number which changes whenever a directory is added or
+     * the inner class setting changes, that is, whenever the files or
+     * class names accepted by this file manager may change.
+     */
+    int getModifications() {
+        return modifications;
+    }
+
+    /**
+     * Sets the number of threads used to traverse the directories.
+     *
+     * @param threads Number of threads, 1 for a sequential traversal.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Returns the accepted class, jar, war, and zip files of the
+     * registered directories, sorted by path.
+     * <p>
+     * The directories are traversed with the attributes the file
+     * system returns for each entry, so that every entry is examined
+     * only once. Symbolic links are followed, except those leading
+     * back to a directory being traversed.
+     * </p>
+     *
+     * @return Sorted collection of files.
+     */
     public Collection<File> extractFiles() {
-        Collection<File> files = new TreeSet<File>();
+        List<File> files = new ArrayList<File>();
 
-        for (File directory : directories) {
-            collectFiles(directory, files);
+        if (threads > 1) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                for (File directory : directories) {
+                    if (directory.isFile()) {
+                        files.add(directory);
+                    } else {
+                        Path path = directory.toPath();
+                        files.addAll(pool.invoke(new DirectoryWalk(path, fileKey(path), null)));
+                    }
+                }
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            for (File directory : directories) {
+                if (directory.isFile()) {
+                    files.add(directory);
+                } else {
+                    walk(directory.toPath(), files);
+                }
+            }
         }
 
+        Collections.sort(files);
+        List<File> sorted = new ArrayList<File>(files.size());
+        for (File file : files) {
+            if (sorted.isEmpty() || !sorted.get(sorted.size() - 1).equals(file)) {
+                sorted.add(file);
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * Returns the accepted class, jar, war, and zip files below the
+     * specified directory, in the order of a sequential traversal.
+     */
+    Collection<File> extractFiles(File directory) {
+        List<File> files = new ArrayList<File>();
+        walk(directory.toPath(), files);
         return files;
     }
 
-    private void collectFiles(File directory, Collection<File> files) {
-        if (directory.isFile()) {
-            addFile(directory, files);
-        } else {
+    private void walk(Path directory, final List<File> files) {
+        try {
+            Files.walkFileTree(directory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                    new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                            collectFile(file, attrs, files);
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+        } catch (IOException ignored) {
+            // the visitor does not throw
+        }
+    }
 
-            String[] directoryFiles = directory.list();
+    private void collectFile(Path file, BasicFileAttributes attrs, List<File> files) {
+        if (attrs.isRegularFile()) {
+            String name = file.getFileName().toString();
+            if (acceptClassFileName(name) || hasJarExtension(name)) {
+                files.add(file.toFile());
+            }
+        }
+    }
 
-            for (String directoryFile : directoryFiles) {
+    private static boolean hasJarExtension(String name) {
+        String lowerCase = name.toLowerCase();
+        return lowerCase.endsWith(".jar") || lowerCase.endsWith(".zip") || lowerCase.endsWith(".war");
+    }
+
+    private static Object fileKey(Path directory) {
+        try {
+            return Files.readAttributes(directory, BasicFileAttributes.class).fileKey();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Traverses a directory on a fork-join pool, with one task for each
+     * subdirectory.
+     * <p>
+     * Entries named like class files are taken as such, without reading
+     * their attributes; every other entry is read once, and a subdirectory is
+     * passed the file key read by its parent.
+     * </p>
+     */
+    private class DirectoryWalk extends RecursiveTask<List<File>> {
+        private static final long serialVersionUID = 1L;
 
-                File file = new File(directory, directoryFile);
-                if (acceptFile(file)) {
-                    addFile(file, files);
-                } else if (file.isDirectory()) {
-                    collectFiles(file, files);
+        private final Path directory;
+        private final Object fileKey;
+        private final Ancestor ancestors;
+
+        DirectoryWalk(Path directory, Object fileKey, Ancestor ancestors) {
+            this.directory = directory;
+            this.fileKey = fileKey;
+            this.ancestors = ancestors;
+        }
+
+        @Override
+        protected List<File> compute() {
+            List<File> files = new ArrayList<File>();
+            List<DirectoryWalk> subdirectories = new ArrayList<DirectoryWalk>();
+            Ancestor path = new Ancestor(fileKey, ancestors);
+            try {
+                DirectoryStream<Path> entries = Files.newDirectoryStream(directory);
+                try {
+                    for (Path entry : entries) {
+                        String name = entry.getFileName().toString();
+                        if (name.toLowerCase().endsWith(".class")) {
+                            if (acceptClassFileName(name)) {
+                                files.add(entry.toFile());
+                            }
+                            continue;
+                        }
+                        BasicFileAttributes attrs;
+                        try {
+                            attrs = Files.readAttributes(entry, BasicFileAttributes.class);
+                        } catch (IOException e) {
+                            continue;
+                        }
+                        if (attrs.isDirectory()) {
+                            if (!path.contains(attrs.fileKey())) {
+                                DirectoryWalk walk = new DirectoryWalk(entry, attrs.fileKey(), path);
+                                walk.fork();
+                                subdirectories.add(walk);
+                            }
+                        } else {
+                            collectFile(entry, attrs, files);
+                        }
+                    }
+                } finally {
+                    entries.close();
                 }
+            } catch (IOException ignored) {
+                // unreadable directories are skipped, as by the sequential walk
             }
+
+            for (DirectoryWalk walk : subdirectories) {
+                files.addAll(walk.join());
+            }
+            return files;
         }
     }
 
-    private void addFile(File f, Collection<File> files) {
-        if (!files.contains(f)) {
-            files.add(f);
+    /**
+     * The file keys of the directories enclosing a directory walk.
+     */
+    private static class Ancestor {
+        private final Object fileKey;
+        private final Ancestor parent;
+
+        Ancestor(Object fileKey, Ancestor parent) {
+            this.fileKey = fileKey;
+            this.parent = parent;
+        }
+
+        boolean contains(Object key) {
+            if (key == null) {
+                return false;
+            }
+            for (Ancestor a = this; a != null; a = a.parent) {
+                if (key.equals(a.fileKey)) {
+                    return true;
+                }
+            }
+            return false;
         }
     }
 
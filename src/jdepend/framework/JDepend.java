@@ -1,5 +1,6 @@
 package jdepend.framework;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
 
@@ -88,6 +89,15 @@ import java.util.*;
  * </pre>
  * </blockquote>
  * <p>
+ * After an analysis, <code>reanalyze()</code> updates the packages for the
+ * class and archive files which changed, without parsing the others:
+ * </p>
+ * <blockquote>
+ * <pre>
+ * jdepend.reanalyze(Arrays.asList(new File(&quot;/path/to/classes/com/xyz/Foo.class&quot;)));
+ * </pre>
+ * </blockquote>
+ * <p>
  * This class is the data model used by the <code>jdepend.textui.JDepend</code>
  * and <code>jdepend.swingui.JDepend</code> views.
  * </p>
@@ -101,9 +111,20 @@ public class JDepend {
     private Map<String, JavaPackage> packages;
     private FileManager fileManager;
     private PackageFilter filter;
-    private ClassFileParser parser;
+    private AbstractParser parser;
+    private PackageTable packageTable;
     private JavaClassBuilder builder;
     private Collection<String> components;
+    private boolean retainClassImports;
+    private ClassGraph.Builder classGraphBuilder;
+    private ClassGraph classGraph;
+    private boolean compact;
+    private PackageGraph.Builder packageGraphBuilder;
+    private PackageGraph packageGraph;
+    private boolean offHeap;
+    private Set<String> addedPackages;
+    private Map<File, List<JavaClass>> analyzedFiles;
+    private Map<String, Integer> duplicateClasses;
 
     public JDepend() {
         this(PackageFilter.all().excludingProperties());
@@ -114,9 +135,16 @@ public class JDepend {
         setFilter(filter);
 
         this.packages = new HashMap<String, JavaPackage>();
+        this.addedPackages = new HashSet<String>();
+        this.analyzedFiles = new HashMap<File, List<JavaClass>>();
+        this.duplicateClasses = new HashMap<String, Integer>();
         this.fileManager = new FileManager();
 
-        this.parser = new ClassFileParser(filter);
+        this.retainClassImports = true;
+
+        this.packageTable = new PackageTable();
+        this.parser = new ByteBufferClassFileParser(filter);
+        this.parser.setPackageTable(packageTable);
         this.builder = new JavaClassBuilder(parser, fileManager);
 
         PropertyConfigurator config = new PropertyConfigurator();
@@ -132,15 +160,178 @@ public class JDepend {
      */
     public Collection<JavaPackage> analyze() {
 
-        Collection<JavaClass> classes = builder.build();
+        if (packageGraph != null) {
+            dropPackageGraph();
+        }
 
-        for (JavaClass aClass : classes) {
-            analyzeClass(aClass);
+        if (compact) {
+            packageGraphBuilder = new PackageGraph.Builder(offHeap);
+            for (String name : packages.keySet()) {
+                packageGraphBuilder.addPackage(name);
+            }
+        }
+
+        builder.build(new ParserListener() {
+            public void onParsedJavaClass(JavaClass parsedClass) {
+                analyzeClass(parsedClass, parsedClass.getOrigin(), retainClassImports);
+            }
+        });
+
+        if (classGraphBuilder != null) {
+            classGraph = classGraphBuilder.build();
+        }
+
+        if (packageGraphBuilder != null) {
+            usePackageGraph(packageGraphBuilder.build());
+            packageGraphBuilder = null;
         }
 
         return getPackages();
     }
 
+    /*
+     * Replaces the packages with the views of the package graph, which
+     * keep the volatility of the packages added before the analysis.
+     */
+    private void usePackageGraph(PackageGraph graph) {
+        for (JavaPackage view : graph.getPackages()) {
+            JavaPackage added = packages.get(view.getName());
+            if (added != null) {
+                view.setVolatility(added.getVolatility());
+            }
+            packages.put(view.getName(), view);
+        }
+        packageGraph = graph;
+    }
+
+    /*
+     * Replaces the read-only views of the package graph of the last
+     * analysis or import with the packages added before, so that a new
+     * analysis starts from them.
+     */
+    private void dropPackageGraph() {
+        for (JavaPackage view : packageGraph.getPackages()) {
+            if (packages.get(view.getName()) != view) {
+                continue;
+            }
+            if (addedPackages.contains(view.getName())) {
+                JavaPackage added = packageTable.intern(view.getName());
+                added.setVolatility(view.getVolatility());
+                packages.put(added.getName(), added);
+            } else {
+                packages.remove(view.getName());
+            }
+        }
+        packageGraph = null;
+    }
+
+    /**
+     * Updates the analysis for the specified class, jar, war, or zip
+     * files, which changed, were deleted, or were added to the analyzed
+     * directories since they were analyzed. The classes previously built
+     * from each file are removed from their packages together with their
+     * dependencies, and the classes the file now contains are analyzed;
+     * no other file is parsed. A directory, or the path of a deleted
+     * directory, stands for all files below it which exist or were
+     * analyzed.
+     * <p>
+     * Packages are left with the same classes, dependencies, and weights
+     * as a new analysis of all files would give them. The metrics are
+     * computed from them when they are asked for, and only the packages
+     * which reach a changed dependency lose their cached cycle
+     * information. Packages which are left without classes and
+     * dependencies are removed, unless they were added explicitly.
+     * </p>
+     * <p>
+     * If a file cannot be read, its error is reported and the update
+     * continues with the next file.
+     * </p>
+     *
+     * @param files Changed, deleted, or added files and directories.
+     * @return Collection of analyzed packages.
+     * @throws IllegalStateException If the imports of the classes are
+     *                               not retained.
+     * @see #retainClassImports(boolean)
+     */
+    public Collection<JavaPackage> reanalyze(Collection<File> files) {
+        if (!retainClassImports || packageGraph != null || compact) {
+            throw new IllegalStateException("Updating an analysis requires retained class imports");
+        }
+
+        Set<File> changed = changedFiles(files);
+        Set<JavaPackage> touched = new HashSet<JavaPackage>();
+        for (File file : changed) {
+            List<JavaClass> classes = analyzedFiles.remove(file.getAbsoluteFile());
+            if (classes != null) {
+                for (JavaClass clazz : classes) {
+                    removeClass(clazz, touched);
+                }
+            }
+        }
+
+        for (File file : changed) {
+            if (file.isFile() && (fileManager.acceptClassFile(file) || fileManager.acceptJarFile(file))) {
+                try {
+                    for (JavaClass clazz : builder.buildClasses(file)) {
+                        analyzeClass(clazz, file, true);
+                    }
+                } catch (IOException ioe) {
+                    System.err.println("\n" + ioe.getMessage());
+                }
+            }
+        }
+
+        for (JavaPackage jPackage : touched) {
+            if (jPackage.getClassCount() == 0 && jPackage.afferentCoupling() == 0
+                    && jPackage.efferentCoupling() == 0 && !addedPackages.contains(jPackage.getName())) {
+                packages.remove(jPackage.getName());
+            }
+        }
+
+        if (classGraphBuilder != null) {
+            classGraphBuilder = new ClassGraph.Builder(classGraphBuilder.getTable());
+            for (List<JavaClass> classes : analyzedFiles.values()) {
+                for (JavaClass clazz : classes) {
+                    addClassReferences(clazz);
+                }
+            }
+            classGraph = classGraphBuilder.build();
+        }
+
+        return getPackages();
+    }
+
+    /*
+     * Replaces the directories, and the paths of deleted directories,
+     * with the files below them.
+     */
+    private Set<File> changedFiles(Collection<File> files) {
+        Set<File> changed = new LinkedHashSet<File>();
+        for (File file : files) {
+            file = file.getAbsoluteFile();
+            if (file.isDirectory()) {
+                changed.addAll(fileManager.extractFiles(file));
+                addAnalyzedFiles(file, changed);
+            } else {
+                if (!file.exists() && !analyzedFiles.containsKey(file)
+                        && !fileManager.acceptClassFileName(file.getName())) {
+                    addAnalyzedFiles(file, changed);
+                }
+                changed.add(file);
+            }
+        }
+        return changed;
+    }
+
+    private void addAnalyzedFiles(File directory, Set<File> files) {
+        String prefix = directory.getPath() + File.separator;
+        for (File file : analyzedFiles.keySet()) {
+            if (file.getPath().startsWith(prefix)) {
+                files.add(file);
+            }
+        }
+    }
+
     /**
      * Adds the specified directory name to the collection of directories to be
      * analyzed.
@@ -152,6 +343,15 @@ public class JDepend {
         fileManager.addDirectory(name);
     }
 
+    /**
+     * Returns the registered directories and archives.
+     *
+     * @return Collection of directories and archives.
+     */
+    public Collection<File> getDirectories() {
+        return fileManager.getDirectories();
+    }
+
     /**
      * Sets the list of components.
      *
@@ -176,6 +376,151 @@ public class JDepend {
         fileManager.acceptInnerClasses(b);
     }
 
+    /**
+     * Determines whether the analyzed classes keep their imported packages.
+     * The classes are analyzed one by one while they are parsed; if their
+     * imported packages are not retained, the memory needed by an analysis
+     * grows with the number of packages rather than with the number of
+     * imports of all classes.
+     *
+     * @param b <code>true</code> to retain the imported packages of
+     *          the classes; <code>false</code> otherwise.
+     */
+    public void retainClassImports(boolean b) {
+        retainClassImports = b;
+    }
+
+    /**
+     * Determines whether the instructions of the classes are scanned, so
+     * that the dependencies between the packages are labeled with their
+     * <code>DependencyKind</code> and counted. Scanning also adds the
+     * dependencies of annotations which are not visible at runtime, so
+     * the efferents, the metrics, and the cycles of the packages may
+     * differ from an analysis without scanning.
+     *
+     * @param b <code>true</code> to scan the code;
+     *          <code>false</code> otherwise.
+     * @see JavaPackage#getDependencyCount(JavaPackage, DependencyKind)
+     */
+    public void scanCode(boolean b) {
+        parser.scanCode(b);
+    }
+
+    /**
+     * Determines whether the dependencies between the analyzed classes
+     * are collected in a <code>ClassGraph</code>.
+     *
+     * @param b <code>true</code> to collect the class graph;
+     *          <code>false</code> otherwise.
+     * @see #getClassGraph()
+     */
+    public void collectClassGraph(boolean b) {
+        if (b && classGraphBuilder == null) {
+            ClassTable classTable = new ClassTable();
+            parser.setClassTable(classTable);
+            classGraphBuilder = new ClassGraph.Builder(classTable);
+        } else if (!b) {
+            parser.setClassTable(null);
+            classGraphBuilder = null;
+            classGraph = null;
+        }
+    }
+
+    /**
+     * Determines whether the analysis is kept in a compact
+     * <code>PackageGraph</code>, for analyses of so many classes that
+     * their <code>JavaClass</code> instances do not fit into the heap.
+     * The analyzed packages are then read-only views of the graph, and
+     * the imports of the classes are not retained.
+     *
+     * @param b <code>true</code> to collect a package graph;
+     *          <code>false</code> otherwise.
+     * @see #getPackageGraph()
+     */
+    public void compactPackages(boolean b) {
+        compact = b;
+        if (b) {
+            retainClassImports = false;
+        }
+    }
+
+    /**
+     * Determines whether a compact package graph keeps the names of the
+     * classes in a direct buffer outside the heap.
+     *
+     * @param b <code>true</code> to keep the class names off the heap;
+     *          <code>false</code> otherwise.
+     * @see #compactPackages(boolean)
+     */
+    public void storeClassNamesOffHeap(boolean b) {
+        offHeap = b;
+    }
+
+    /**
+     * Returns the compact package graph of the last analysis.
+     *
+     * @return Package graph, or <code>null</code> if it was not collected.
+     * @see #compactPackages(boolean)
+     */
+    public PackageGraph getPackageGraph() {
+        return packageGraph;
+    }
+
+    /**
+     * Writes the analyzed packages to a compact binary file.
+     *
+     * @param file Export file.
+     * @throws IOException If the file cannot be written.
+     * @see AnalysisExport
+     */
+    public void exportPackages(File file) throws IOException {
+        AnalysisExport.write(getPackages(), file);
+    }
+
+    /**
+     * Reads the packages of a file written by <code>exportPackages()</code>
+     * instead of analyzing class files. The packages are read-only, as
+     * with <code>compactPackages()</code>.
+     *
+     * @param file Export file.
+     * @return Collection of the imported packages.
+     * @throws IOException If the file cannot be read.
+     */
+    public Collection<JavaPackage> importPackages(File file) throws IOException {
+        usePackageGraph(AnalysisExport.read(file));
+        return getPackages();
+    }
+
+    /**
+     * Returns the dependency graph of the classes of the last analysis.
+     *
+     * @return Class graph, or <code>null</code> if it was not collected.
+     * @see #collectClassGraph(boolean)
+     */
+    public ClassGraph getClassGraph() {
+        return classGraph;
+    }
+
+    /**
+     * Sets the number of threads used to find and parse the class files.
+     *
+     * @param threads Number of threads, 1 for a sequential analysis.
+     */
+    public void setThreads(int threads) {
+        fileManager.setThreads(threads);
+        builder.setThreads(threads);
+    }
+
+    /**
+     * Sets the cache of parsed classes, so that only the class files
+     * which changed since the last analysis are parsed.
+     *
+     * @param cache Analysis cache, or <code>null</code> to parse all files.
+     */
+    public void setCache(AnalysisCache cache) {
+        builder.setCache(cache);
+    }
+
     /**
      * Returns the collection of analyzed packages.
      *
@@ -228,6 +573,22 @@ public class JDepend {
         return false;
     }
 
+    /**
+     * Collects the first dependency cycle path of each of the specified
+     * packages, as <code>JavaPackage.collectCycle()</code> does. The
+     * cycles of all packages are found once, and the paths are then
+     * collected with the number of threads set with
+     * <code>setThreads()</code>.
+     *
+     * @param packages Java packages.
+     * @return The cycle path of each package in the order of the
+     * packages, an empty list for a package from which no cycle can be
+     * reached.
+     */
+    public List<List<JavaPackage>> collectCycles(List<JavaPackage> packages) {
+        return CycleDetector.collectCycles(packages, fileManager.getThreads());
+    }
+
     /**
      * Indicates whether the analyzed packages match the specified
      * dependency constraint.
@@ -260,11 +621,17 @@ public class JDepend {
      * @return Added Java package.
      */
     public JavaPackage addPackage(String name) {
+        JavaPackage pkg = analyzedPackage(name);
+        addedPackages.add(pkg.getName());
+        return pkg;
+    }
+
+    private JavaPackage analyzedPackage(String name) {
         name = toComponent(name);
         JavaPackage pkg = packages.get(name);
         if (pkg == null) {
-            pkg = new JavaPackage(name);
-            addPackage(pkg);
+            pkg = packageTable.intern(name);
+            packages.put(name, pkg);
         }
 
         return pkg;
@@ -300,9 +667,21 @@ public class JDepend {
      * @param pkg Java package.
      */
     public void addPackage(JavaPackage pkg) {
-        if (!packages.containsValue(pkg)) {
+        if (!packages.containsKey(pkg.getName())) {
+            packageTable.intern(pkg);
             packages.put(pkg.getName(), pkg);
         }
+        addedPackages.add(pkg.getName());
+    }
+
+    /**
+     * Returns the table interning the package names of the parsed
+     * classes, their imports and the analyzed packages.
+     *
+     * @return Package table.
+     */
+    public PackageTable getPackageTable() {
+        return packageTable;
     }
 
     public PackageFilter getFilter() {
@@ -320,19 +699,115 @@ public class JDepend {
         this.filter = filter;
     }
 
-    private void analyzeClass(JavaClass clazz) {
+    /**
+     * Analyzes classes which were built from the specified file by
+     * another builder, and which may be shared with other analyses.
+     * Their imports are retained.
+     */
+    void analyzeClasses(File origin, Collection<JavaClass> classes) {
+        for (JavaClass clazz : classes) {
+            analyzeClass(clazz, origin, true);
+        }
+    }
+
+    private void analyzeClass(JavaClass clazz, File origin, boolean retainImports) {
         String packageName = clazz.getPackageName();
 
         if (!getFilter().accept(packageName)) {
             return;
         }
 
-        JavaPackage clazzPackage = addPackage(packageName);
+        if (packageGraphBuilder != null) {
+            addToPackageGraph(clazz);
+            return;
+        }
+
+        JavaPackage clazzPackage = analyzedPackage(packageName);
+        boolean duplicate = clazzPackage.getClasses().contains(clazz);
+        if (duplicate && retainImports) {
+            Integer copies = duplicateClasses.get(clazz.getName());
+            duplicateClasses.put(clazz.getName(), copies == null ? 1 : copies + 1);
+        }
         clazzPackage.addClass(clazz);
 
+        // a class seen again only adds the dependencies its package lacks
+        for (JavaPackage importedPackage : clazz.getImportedPackages()) {
+            JavaPackage imported = analyzedPackage(importedPackage.getName());
+            if (!duplicate || !clazzPackage.getEfferents().contains(imported)) {
+                clazzPackage.addImport(imported, clazz.getDependencyCounts(importedPackage));
+            }
+        }
+
+        addClassReferences(clazz);
+
+        if (retainImports) {
+            if (origin != null) {
+                origin = origin.getAbsoluteFile();
+                List<JavaClass> classes = analyzedFiles.get(origin);
+                if (classes == null) {
+                    classes = new ArrayList<JavaClass>();
+                    analyzedFiles.put(origin, classes);
+                }
+                classes.add(clazz);
+            }
+        } else {
+            clazz.clearImportedPackages();
+        }
+    }
+
+    private void addToPackageGraph(JavaClass clazz) {
+        PackageGraph.Builder graph = packageGraphBuilder;
+        int from = graph.addPackage(toComponent(clazz.getPackageName()));
+        boolean duplicate = !graph.addClass(clazz.getName(), from, clazz.isAbstract());
+        for (JavaPackage importedPackage : clazz.getImportedPackages()) {
+            int to = graph.addPackage(toComponent(importedPackage.getName()));
+            if (!duplicate || !graph.hasDependency(from, to)) {
+                graph.addDependency(from, to, clazz.getDependencyCounts(importedPackage));
+            }
+        }
+
+        addClassReferences(clazz);
+        clazz.clearImportedPackages();
+    }
+
+    private void addClassReferences(JavaClass clazz) {
+        int[] classReferences = clazz.getClassReferences();
+        if (classGraphBuilder != null && classReferences != null) {
+            int id = classGraphBuilder.getTable().idOf(clazz.getName());
+            classGraphBuilder.add(id, classReferences);
+        }
+    }
+
+    /*
+     * Withdraws an analyzed class and its dependencies, collecting the
+     * packages which may be left empty.
+     */
+    private void removeClass(JavaClass clazz, Set<JavaPackage> touched) {
+        JavaPackage clazzPackage = packages.get(toComponent(clazz.getPackageName()));
+        if (clazzPackage == null) {
+            return;
+        }
+        touched.add(clazzPackage);
+
+        Integer copies = duplicateClasses.get(clazz.getName());
+        if (copies == null) {
+            clazzPackage.removeClass(clazz);
+        } else {
+            if (copies == 1) {
+                duplicateClasses.remove(clazz.getName());
+            } else {
+                duplicateClasses.put(clazz.getName(), copies - 1);
+            }
+            // the class stays with its other copies, and so do its dependencies
+            return;
+        }
+
         for (JavaPackage importedPackage : clazz.getImportedPackages()) {
-            importedPackage = addPackage(importedPackage.getName());
-            clazzPackage.dependsUpon(importedPackage);
+            JavaPackage imported = packages.get(toComponent(importedPackage.getName()));
+            if (imported != null) {
+                clazzPackage.removeImport(imported, clazz.getDependencyCounts(importedPackage));
+                touched.add(imported);
+            }
         }
     }
 }
@@ -1,13 +1,20 @@
 package jdepend.framework;
 
+import java.io.File;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * The <code>JavaClass</code> class represents a Java
  * class or interface.
+ * <p>
+ * If the class was parsed with code scanning, each imported package
+ * also has the number of references of each <code>DependencyKind</code>
+ * the class makes to it.
+ * </p>
  *
  * @author <b>Mike Clark</b>
  * @author Clarkware Consulting, Inc.
@@ -19,7 +26,10 @@ public class JavaClass {
     private String packageName;
     private boolean isAbstract;
     private Map<String, JavaPackage> imports;
+    private Map<JavaPackage, int[]> dependencies;
     private String sourceFile;
+    private int[] classReferences;
+    private File origin;
 
 
     public JavaClass(String name) {
@@ -64,6 +74,127 @@ public class JavaClass {
         }
     }
 
+    /**
+     * Imports the specified package and counts a reference of the
+     * specified kind to it.
+     *
+     * @param jPackage Imported package.
+     * @param kind     Kind of the reference.
+     */
+    public void addDependency(JavaPackage jPackage, DependencyKind kind) {
+        if (dependencies == null) {
+            dependencies = new HashMap<JavaPackage, int[]>();
+        }
+        int[] counts = dependencies.get(jPackage);
+        if (counts == null) {
+            if (jPackage.getName().equals(getPackageName())) {
+                return;
+            }
+            imports.put(jPackage.getName(), jPackage);
+            counts = new int[DependencyKind.values().length];
+            dependencies.put(jPackage, counts);
+        }
+        counts[kind.ordinal()]++;
+    }
+
+    /**
+     * Imports the specified package with the specified reference counts,
+     * indexed by the ordinal of their kind.
+     */
+    void addDependencies(JavaPackage jPackage, int[] counts) {
+        addImportedPackage(jPackage);
+        if (jPackage.getName().equals(getPackageName()) || isEmpty(counts)) {
+            return;
+        }
+        if (dependencies == null) {
+            dependencies = new HashMap<JavaPackage, int[]>();
+        }
+        int[] sum = dependencies.get(jPackage);
+        if (sum == null) {
+            sum = new int[DependencyKind.values().length];
+            dependencies.put(jPackage, sum);
+        }
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] += counts[i];
+        }
+    }
+
+    private static boolean isEmpty(int[] counts) {
+        for (int count : counts) {
+            if (count != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of references of the specified kind to the
+     * specified package.
+     *
+     * @param jPackage Imported package.
+     * @param kind     Kind of the references.
+     * @return Number of references, 0 if they were not counted.
+     */
+    public int getDependencyCount(JavaPackage jPackage, DependencyKind kind) {
+        int[] counts = getDependencyCounts(jPackage);
+        return counts == null ? 0 : counts[kind.ordinal()];
+    }
+
+    /**
+     * Returns the kinds of the references to the specified package.
+     *
+     * @param jPackage Imported package.
+     * @return Kinds of the references; empty if they were not counted.
+     */
+    public Set<DependencyKind> getDependencyKinds(JavaPackage jPackage) {
+        return DependencyKind.kinds(getDependencyCounts(jPackage));
+    }
+
+    /**
+     * Returns the reference counts of the specified package, indexed by
+     * the ordinal of their kind, or <code>null</code> if no reference to
+     * the package was counted.
+     */
+    int[] getDependencyCounts(JavaPackage jPackage) {
+        return dependencies == null ? null : dependencies.get(jPackage);
+    }
+
+    /**
+     * Returns the sorted ids of the classes this class references, in
+     * the <code>ClassTable</code> of its parser, or <code>null</code> if
+     * they were not collected.
+     */
+    int[] getClassReferences() {
+        return classReferences;
+    }
+
+    void setClassReferences(int[] classReferences) {
+        this.classReferences = classReferences;
+    }
+
+    /**
+     * Returns the class, jar, war, or zip file the class was built
+     * from by a <code>JavaClassBuilder</code>, or <code>null</code>.
+     */
+    File getOrigin() {
+        return origin;
+    }
+
+    void setOrigin(File origin) {
+        this.origin = origin;
+    }
+
+    /**
+     * Releases the imported packages and classes once they were added
+     * to the dependencies of the class's package.
+     */
+    void clearImportedPackages() {
+        imports = new HashMap<String, JavaPackage>(0);
+        dependencies = null;
+        classReferences = null;
+    }
+
     public boolean isAbstract() {
         return isAbstract;
     }
@@ -1,15 +1,61 @@
 package jdepend.framework;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
 import java.util.jar.JarFile;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
 
 /**
  * The <code>JavaClassBuilder</code> builds <code>JavaClass</code>
  * instances from .class, .jar, .war, or .zip files.
+ * <p>
+ * Unless another parser is given, the classes are parsed by a
+ * <code>ByteBufferClassFileParser</code>, as they are by
+ * <code>JDepend</code>. Archives are memory-mapped and read with
+ * <code>ZipArchive</code>, so that stored entries reach the parser
+ * without being copied. Each archive is unmapped as soon as its
+ * classes are built, just as other archives are closed. Archives
+ * it does not support, like ZIP64 files, are read with
+ * <code>java.util.jar.JarFile</code>.
+ * </p>
+ * <p>
+ * By default all files are parsed sequentially on the calling thread.
+ * If more than one thread is configured with <code>setThreads()</code>,
+ * class files and jar entries are parsed by a pool of worker threads,
+ * each using its own parser, and the results are merged in the same
+ * order as in a sequential build.
+ * </p>
+ * <p>
+ * <code>build(ParserListener)</code> streams the classes to a listener
+ * file by file instead of collecting them, so that the memory needed
+ * by a build grows with the number of classes of the largest archive
+ * rather than of all files.
+ * </p>
+ * <p>
+ * If an <code>AnalysisCache</code> is set, only the class files and
+ * archive entries which changed since the last build are parsed.
+ * </p>
+ * <p>
+ * <code>countClasses()</code> counts the class files by their names,
+ * reading only the central directory of archives. The count is kept
+ * until the file manager changes, and a build without errors replaces
+ * it with the number of built classes.
+ * </p>
  *
  * @author <b>Mike Clark</b>
  * @author Clarkware Consulting, Inc.
@@ -19,32 +65,114 @@ public class JavaClassBuilder {
 
     private AbstractParser parser;
     private FileManager fileManager;
+    private int threads;
+    private AnalysisCache cache;
+    private int classCount;
+    private int countedModifications;
+    private boolean failed;
 
 
     public JavaClassBuilder() {
-        this(new ClassFileParser(), new FileManager());
+        this(new ByteBufferClassFileParser(), new FileManager());
     }
 
     public JavaClassBuilder(FileManager fm) {
-        this(new ClassFileParser(), fm);
+        this(new ByteBufferClassFileParser(), fm);
     }
 
     public JavaClassBuilder(AbstractParser parser, FileManager fm) {
         this.parser = parser;
         this.fileManager = fm;
+        this.threads = 1;
+        this.classCount = -1;
     }
 
-    public int countClasses() {
-        AbstractParser counter = new AbstractParser() {
+    /**
+     * Sets the number of threads used to parse the class files.
+     * Parsers which cannot create worker instances are always
+     * used sequentially.
+     *
+     * @param threads Number of parser threads, 1 for a sequential build.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        }
+        this.threads = threads;
+    }
 
-            public JavaClass parse(InputStream is) {
-                return new JavaClass("");
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the cache of parsed classes. Unchanged class files and
+     * archive entries are taken from the cache instead of being parsed,
+     * and the cache file is updated at the end of each build.
+     *
+     * @param cache Analysis cache, or <code>null</code> to parse all files.
+     */
+    public void setCache(AnalysisCache cache) {
+        this.cache = cache;
+    }
+
+    public AnalysisCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Returns the number of class files to be built, without reading
+     * or parsing them.
+     *
+     * @return Number of classes.
+     */
+    public int countClasses() {
+        int modifications = fileManager.getModifications();
+        if (classCount < 0 || countedModifications != modifications) {
+            int count = 0;
+            for (File nextFile : fileManager.extractFiles()) {
+                try {
+                    count += countClasses(nextFile);
+                } catch (IOException ioe) {
+                    System.err.println("\n" + ioe.getMessage());
+                }
             }
-        };
+            classCount = count;
+            countedModifications = modifications;
+        }
+        return classCount;
+    }
 
-        JavaClassBuilder builder = new JavaClassBuilder(counter, fileManager);
-        Collection<JavaClass> classes = builder.build();
-        return classes.size();
+    private int countClasses(File file) throws IOException {
+        if (fileManager.acceptClassFile(file)) {
+            return 1;
+        } else if (fileManager.acceptJarFile(file)) {
+            int count = 0;
+            ZipArchive archive = openArchive(file);
+            if (archive != null) {
+                for (ZipArchive.Entry e : archive.getEntries()) {
+                    if (fileManager.acceptClassFileName(e.getName())) {
+                        count++;
+                    }
+                }
+                archive.close();
+                return count;
+            }
+            ZipFile zipFile = new ZipFile(file);
+            try {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    if (fileManager.acceptClassFileName(entries.nextElement().getName())) {
+                        count++;
+                    }
+                }
+            } finally {
+                zipFile.close();
+            }
+            return count;
+        } else {
+            throw new IOException("File is not a valid " + ".class, .jar, .war, or .zip file: " + file.getPath());
+        }
     }
 
     /**
@@ -53,17 +181,64 @@ public class JavaClassBuilder {
      * @return Collection of <code>JavaClass</code> instances.
      */
     public Collection<JavaClass> build() {
-        Collection<JavaClass> classes = new ArrayList<JavaClass>();
+        ClassCollector collector = new ClassCollector();
+        build(collector);
+        return collector.classes;
+    }
 
-        for (File nextFile : fileManager.extractFiles()) {
+    /**
+     * Builds the <code>JavaClass</code> instances and passes each of
+     * them to the specified listener instead of collecting them. The
+     * classes of a file are passed once the whole file was parsed; the
+     * builder keeps no reference to them afterwards, so that they can
+     * be dropped as soon as the listener is done with them.
+     * <p>
+     * If a file cannot be read, its error is reported and the build
+     * continues with the next file; none of the classes of the file are
+     * passed to the listener, although the listeners of the parser may
+     * have been informed of some of them.
+     * </p>
+     *
+     * @param listener Listener receiving the classes in build order.
+     * @return Number of built classes.
+     */
+    public int build(ParserListener listener) {
+        if (cache != null) {
+            cache.load(parser);
+        }
+
+        int modifications = fileManager.getModifications();
+        failed = false;
+        int count = 0;
+        if (threads > 1 && parser.supportsWorkers()) {
+            count = buildParallel(listener);
+        } else {
+            for (File nextFile : fileManager.extractFiles()) {
+                ClassCollector fileClasses = new ClassCollector();
+                try {
+                    buildClasses(nextFile, fileClasses);
+                } catch (IOException ioe) {
+                    failed = true;
+                    System.err.println("\n" + ioe.getMessage());
+                    continue;
+                }
+                count += fileClasses.deliver(listener);
+            }
+        }
+
+        if (cache != null) {
             try {
-                classes.addAll(buildClasses(nextFile));
+                cache.save();
             } catch (IOException ioe) {
                 System.err.println("\n" + ioe.getMessage());
             }
         }
 
-        return classes;
+        if (!failed) {
+            classCount = count;
+            countedModifications = modifications;
+        }
+        return count;
     }
 
     /**
@@ -74,29 +249,63 @@ public class JavaClassBuilder {
      * @return Collection of <code>JavaClass</code> instances.
      */
     public Collection<JavaClass> buildClasses(File file) throws IOException {
+        ClassCollector collector = new ClassCollector();
+        buildClasses(file, collector);
+        return collector.classes;
+    }
+
+    private int buildClasses(File file, ParserListener listener) throws IOException {
         if (fileManager.acceptClassFile(file)) {
-            InputStream is = null;
-            try {
-                is = new BufferedInputStream(new FileInputStream(file));
-                JavaClass parsedClass = parser.parse(is);
-                Collection<JavaClass> javaClasses = new ArrayList<JavaClass>();
-                javaClasses.add(parsedClass);
-                return javaClasses;
-            } finally {
-                if (is != null) {
-                    is.close();
+            JavaClass parsedClass = parseClassFile(parser, file);
+            parsedClass.setOrigin(file);
+            listener.onParsedJavaClass(parsedClass);
+            return 1;
+        } else if (fileManager.acceptJarFile(file)) {
+            ZipArchive archive = openArchive(file);
+            if (archive != null) {
+                try {
+                    return buildClasses(archive, listener);
+                } finally {
+                    archive.close();
                 }
             }
-        } else if (fileManager.acceptJarFile(file)) {
             JarFile jarFile = new JarFile(file);
-            Collection<JavaClass> result = buildClasses(jarFile);
-            jarFile.close();
-            return result;
+            try {
+                return buildClasses(jarFile, listener);
+            } finally {
+                jarFile.close();
+            }
         } else {
             throw new IOException("File is not a valid " + ".class, .jar, .war, or .zip file: " + file.getPath());
         }
     }
 
+    /*
+     * Maps the archive, or returns null if it must be read with java.util.zip.
+     */
+    private ZipArchive openArchive(File file) throws IOException {
+        try {
+            return ZipArchive.open(file);
+        } catch (ZipException e) {
+            return null;
+        }
+    }
+
+    private int buildClasses(ZipArchive archive, ParserListener listener) throws IOException {
+        int count = 0;
+
+        for (ZipArchive.Entry e : archive.getEntries()) {
+            if (fileManager.acceptClassFileName(e.getName())) {
+                JavaClass parsedClass = parseEntry(parser, archive, e);
+                parsedClass.setOrigin(archive.getFile());
+                listener.onParsedJavaClass(parsedClass);
+                count++;
+            }
+        }
+
+        return count;
+    }
+
     /**
      * Builds the <code>JavaClass</code> instances from the specified
      * jar, war, or zip file.
@@ -105,25 +314,321 @@ public class JavaClassBuilder {
      * @return Collection of <code>JavaClass</code> instances.
      */
     public Collection<JavaClass> buildClasses(JarFile file) throws IOException {
-        Collection<JavaClass> javaClasses = new ArrayList<JavaClass>();
+        ClassCollector collector = new ClassCollector();
+        buildClasses(file, collector);
+        return collector.classes;
+    }
+
+    private int buildClasses(JarFile file, ParserListener listener) throws IOException {
+        int count = 0;
+        File origin = new File(file.getName());
 
         Enumeration entries = file.entries();
         while (entries.hasMoreElements()) {
             ZipEntry e = (ZipEntry) entries.nextElement();
             if (fileManager.acceptClassFileName(e.getName())) {
-                InputStream is = null;
-                try {
-                    is = new BufferedInputStream(file.getInputStream(e));
-                    JavaClass jc = parser.parse(is);
-                    javaClasses.add(jc);
-                } finally {
-                    if (is != null) {
-                        is.close();
+                JavaClass parsedClass = parseEntry(parser, file, e);
+                parsedClass.setOrigin(origin);
+                listener.onParsedJavaClass(parsedClass);
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /*
+     * The parse methods below take classes from the cache if they did not
+     * change. Cached classes are announced to the listeners of the parser
+     * just like parsed ones; worker parsers have no listeners.
+     */
+    private JavaClass parseClassFile(AbstractParser p, File file) throws IOException {
+        if (cache == null) {
+            return p.parse(file);
+        }
+
+        String key = file.getAbsolutePath();
+        long size = file.length();
+        if (!cache.isUsingContentHash()) {
+            long stamp = file.lastModified();
+            JavaClass jc = cached(p, key, size, stamp);
+            if (jc == null) {
+                jc = p.parse(file);
+                cache.put(key, size, stamp, jc);
+            }
+            return jc;
+        }
+
+        byte[] bytes = readFully(file);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        JavaClass jc = cached(p, key, bytes.length, crc.getValue());
+        if (jc == null) {
+            jc = p.parse(ByteBuffer.wrap(bytes));
+            cache.put(key, bytes.length, crc.getValue(), jc);
+        }
+        return jc;
+    }
+
+    private JavaClass parseEntry(AbstractParser p, ZipArchive archive, ZipArchive.Entry e) throws IOException {
+        if (cache == null) {
+            return parseMapped(p, archive, e);
+        }
+
+        String key = archive.getFile().getAbsolutePath() + "!/" + e.getName();
+        long crc = e.getCrc() & 0xFFFFFFFFL;
+        JavaClass jc = cached(p, key, e.getSize(), crc);
+        if (jc == null) {
+            jc = parseMapped(p, archive, e);
+            cache.put(key, e.getSize(), crc, jc);
+        }
+        return jc;
+    }
+
+    /*
+     * Parses the entry while keeping the archive from being unmapped,
+     * as the parser may read straight from the mapping.
+     */
+    private JavaClass parseMapped(AbstractParser p, ZipArchive archive, ZipArchive.Entry e) throws IOException {
+        Lock lock = archive.readLock();
+        lock.lock();
+        try {
+            return p.parse(archive.read(e));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private JavaClass parseEntry(AbstractParser p, JarFile file, ZipEntry e) throws IOException {
+        String key = null;
+        JavaClass jc = null;
+        if (cache != null && e.getCrc() != -1 && e.getSize() != -1) {
+            key = new File(file.getName()).getAbsolutePath() + "!/" + e.getName();
+            jc = cached(p, key, e.getSize(), e.getCrc());
+        }
+
+        if (jc == null) {
+            InputStream is = new BufferedInputStream(file.getInputStream(e));
+            try {
+                jc = p.parse(is);
+            } finally {
+                is.close();
+            }
+            if (key != null) {
+                cache.put(key, e.getSize(), e.getCrc(), jc);
+            }
+        }
+        return jc;
+    }
+
+    private JavaClass cached(AbstractParser p, String key, long size, long stamp) {
+        JavaClass jc = cache.get(key, size, stamp, p.getPackageTable());
+        if (jc != null) {
+            p.onParsedJavaClass(jc);
+        }
+        return jc;
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            byte[] bytes = new byte[(int) file.length()];
+            in.readFully(bytes);
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+
+    /*
+     * Parses the files on a pool of worker threads. At most a few tasks per
+     * thread are in flight at any time; the results are collected file by
+     * file in the order of the file manager, so that the classes and the
+     * listener notifications are the same as in a sequential build.
+     */
+    private int buildParallel(ParserListener listener) {
+        int count = 0;
+
+        final ThreadLocal<AbstractParser> workers = new ThreadLocal<AbstractParser>() {
+            @Override
+            protected AbstractParser initialValue() {
+                return parser.newWorker();
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            int window = threads * 4;
+            int inFlight = 0;
+            LinkedList<PendingFile> pending = new LinkedList<PendingFile>();
+            Iterator<File> files = fileManager.extractFiles().iterator();
+
+            while (files.hasNext() || !pending.isEmpty()) {
+                if (files.hasNext() && inFlight < window) {
+                    PendingFile next = submit(files.next(), executor, workers);
+                    pending.add(next);
+                    inFlight += next.tasks.size();
+                } else {
+                    PendingFile first = pending.removeFirst();
+                    inFlight -= first.tasks.size();
+                    ClassCollector fileClasses = new ClassCollector();
+                    try {
+                        JavaClass parsedClass;
+                        while ((parsedClass = first.next()) != null) {
+                            parsedClass.setOrigin(first.file);
+                            parser.onParsedJavaClass(parsedClass);
+                            fileClasses.onParsedJavaClass(parsedClass);
+                        }
+                        count += fileClasses.deliver(listener);
+                    } catch (IOException ioe) {
+                        failed = true;
+                        System.err.println("\n" + ioe.getMessage());
+                    } finally {
+                        first.close();
                     }
                 }
             }
+        } finally {
+            executor.shutdownNow();
         }
 
-        return javaClasses;
+        return count;
+    }
+
+    private PendingFile submit(File file, ExecutorService executor, final ThreadLocal<AbstractParser> workers) {
+        PendingFile pendingFile = new PendingFile(file);
+
+        try {
+            ZipArchive archive;
+            if (fileManager.acceptClassFile(file)) {
+                final File classFile = file;
+                pendingFile.tasks.add(executor.submit(new Callable<JavaClass>() {
+                    public JavaClass call() throws IOException {
+                        return parseClassFile(workers.get(), classFile);
+                    }
+                }));
+            } else if (fileManager.acceptJarFile(file) && (archive = openArchive(file)) != null) {
+                final ZipArchive zipArchive = archive;
+                pendingFile.archive = archive;
+                for (final ZipArchive.Entry e : zipArchive.getEntries()) {
+                    if (fileManager.acceptClassFileName(e.getName())) {
+                        pendingFile.tasks.add(executor.submit(new Callable<JavaClass>() {
+                            public JavaClass call() throws IOException {
+                                return parseEntry(workers.get(), zipArchive, e);
+                            }
+                        }));
+                    }
+                }
+            } else if (fileManager.acceptJarFile(file)) {
+                final JarFile jarFile = new JarFile(file);
+                pendingFile.jarFile = jarFile;
+                Enumeration<? extends ZipEntry> entries = jarFile.entries();
+                while (entries.hasMoreElements()) {
+                    final ZipEntry e = entries.nextElement();
+                    if (fileManager.acceptClassFileName(e.getName())) {
+                        pendingFile.tasks.add(executor.submit(new Callable<JavaClass>() {
+                            public JavaClass call() throws IOException {
+                                return parseEntry(workers.get(), jarFile, e);
+                            }
+                        }));
+                    }
+                }
+            } else {
+                throw new IOException("File is not a valid " + ".class, .jar, .war, or .zip file: " + file.getPath());
+            }
+        } catch (IOException ioe) {
+            pendingFile.error = ioe;
+        }
+
+        return pendingFile;
+    }
+
+    /**
+     * The parse tasks submitted for a single class, jar, war, or zip file.
+     */
+    private static class PendingFile {
+        private final File file;
+        private final LinkedList<Future<JavaClass>> tasks = new LinkedList<Future<JavaClass>>();
+        private JarFile jarFile;
+        private ZipArchive archive;
+        private IOException error;
+
+        PendingFile(File file) {
+            this.file = file;
+        }
+
+        /**
+         * Waits for the next task of the file and returns its class, or
+         * <code>null</code> if all tasks were consumed. Consumed tasks are
+         * released, so that their classes can be dropped by the caller.
+         */
+        JavaClass next() throws IOException {
+            if (error != null) {
+                throw error;
+            }
+            if (tasks.isEmpty()) {
+                return null;
+            }
+            try {
+                return tasks.removeFirst().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while parsing classes");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+
+        /**
+         * Cancels the remaining tasks and closes the file. A mapped
+         * archive is released once its running tasks are done.
+         */
+        void close() {
+            for (Future<JavaClass> task : tasks) {
+                task.cancel(false);
+            }
+            tasks.clear();
+            if (archive != null) {
+                archive.close();
+            }
+            if (jarFile != null) {
+                try {
+                    jarFile.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the built classes.
+     */
+    private static class ClassCollector implements ParserListener {
+        private final List<JavaClass> classes = new ArrayList<JavaClass>();
+
+        public void onParsedJavaClass(JavaClass parsedClass) {
+            classes.add(parsedClass);
+        }
+
+        /**
+         * Passes the collected classes to the specified listener and
+         * returns their number.
+         */
+        int deliver(ParserListener listener) {
+            for (JavaClass parsedClass : classes) {
+                listener.onParsedJavaClass(parsedClass);
+            }
+            return classes.size();
+        }
     }
 }
@@ -4,6 +4,37 @@ import java.util.*;
 
 /**
  * The <code>JavaPackage</code> class represents a Java package.
+ * <p>
+ * Dependency cycles are found by a <code>CycleDetector</code> whose
+ * results are cached until an efferent of a package connected to this
+ * one by dependencies changes; the
+ * efferents must therefore only be changed with the methods of this
+ * class and not through the collection returned by
+ * <code>getEfferents()</code>.
+ * </p>
+ * <p>
+ * Afferents and efferents are kept in insertion order, so that they are
+ * iterated in the order in which the dependencies were added.
+ * </p>
+ * <p>
+ * Each efferent has a weight: the number of times it was added, which
+ * is the number of classes of this package that import it when the
+ * package was analyzed by <code>JDepend</code>. A package imported by
+ * one stray class weighs 1, however many references the class makes.
+ * </p>
+ * <p>
+ * If the classes were parsed with code scanning, each efferent also has
+ * the number of references of each <code>DependencyKind</code> the
+ * classes of this package make to it.
+ * </p>
+ * <p>
+ * The number of abstract classes is counted as classes are added and
+ * removed, and the abstractness, instability, and distance are computed
+ * once and kept until a class, an afferent, an efferent, or the
+ * volatility changes. A class must therefore not change whether it is
+ * abstract while it is part of a package, and classes and afferents must
+ * also only be changed with the methods of this class.
+ * </p>
  *
  * @author <b>Mike Clark</b>
  * @author Clarkware Consulting, Inc.
@@ -14,8 +45,17 @@ public class JavaPackage {
     private String name;
     private int volatility;
     private Set<JavaClass> classes;
-    private List<JavaPackage> afferents;
-    private List<JavaPackage> efferents;
+    private Set<JavaPackage> afferents;
+    private Set<JavaPackage> efferents;
+    private PackageWeights weights;
+    private Map<JavaPackage, int[]> dependencies;
+    private int abstractClassCount;
+    private boolean metricsValid;
+    private float abstractness;
+    private float instability;
+    private float distance;
+    final CycleDetector.Graph cycleGraph = new CycleDetector.Graph();
+    volatile CycleDetector.Info cycleInfo;
 
 
     public JavaPackage(String name) {
@@ -26,8 +66,9 @@ public class JavaPackage {
         this.name = name;
         setVolatility(volatility);
         classes = new HashSet<JavaClass>();
-        afferents = new ArrayList<JavaPackage>();
-        efferents = new ArrayList<JavaPackage>();
+        afferents = new LinkedHashSet<JavaPackage>();
+        efferents = new LinkedHashSet<JavaPackage>();
+        weights = new PackageWeights();
     }
 
     public String getName() {
@@ -46,10 +87,18 @@ public class JavaPackage {
      */
     public void setVolatility(int v) {
         volatility = v;
+        metricsValid = false;
     }
 
+    /**
+     * Indicates whether a package dependency cycle can be reached from
+     * this package.
+     *
+     * @return <code>true</code> if a cycle exist; <code>false</code>
+     * otherwise.
+     */
     public boolean containsCycle() {
-        return collectCycle(new ArrayList<JavaPackage>());
+        return CycleDetector.reachesCycle(this);
     }
 
     /**
@@ -62,23 +111,7 @@ public class JavaPackage {
      * otherwise.
      */
     public boolean collectCycle(List<JavaPackage> list) {
-
-        if (list.contains(this)) {
-            list.add(this);
-            return true;
-        }
-
-        list.add(this);
-
-        for (JavaPackage efferent : getEfferents()) {
-            if (efferent.collectCycle(list)) {
-                return true;
-            }
-        }
-
-        list.remove(this);
-
-        return false;
+        return CycleDetector.collectCycle(this, list);
     }
 
     /**
@@ -95,31 +128,45 @@ public class JavaPackage {
      * otherwise.
      */
     public boolean collectAllCycles(List<JavaPackage> list) {
+        return CycleDetector.collectAllCycles(this, list);
+    }
 
-        if (list.contains(this)) {
-            list.add(this);
-            return true;
-        }
-
-        list.add(this);
+    /**
+     * Returns the packages which are in a dependency cycle with this
+     * package: the strongly connected component of the package
+     * dependency graph which contains it.
+     *
+     * @return Unmodifiable list of the packages, including this one, or
+     * an empty list if this package is not part of a cycle.
+     */
+    public List<JavaPackage> getCycleComponent() {
+        return CycleDetector.getComponent(this);
+    }
 
-        boolean containsCycle = false;
-        for (JavaPackage efferent : getEfferents()) {
-            if (efferent.collectAllCycles(list)) {
-                containsCycle = true;
+    public void addClass(JavaClass clazz) {
+        if (classes.add(clazz)) {
+            if (clazz.isAbstract()) {
+                abstractClassCount++;
             }
+            metricsValid = false;
         }
-
-        if (containsCycle) {
-            return true;
-        }
-
-        list.remove(this);
-        return false;
     }
 
-    public void addClass(JavaClass clazz) {
-        classes.add(clazz);
+    /**
+     * Removes the specified class from this package.
+     *
+     * @param clazz Java class.
+     * @return <code>true</code> if the class was part of this package.
+     */
+    public boolean removeClass(JavaClass clazz) {
+        if (!classes.remove(clazz)) {
+            return false;
+        }
+        if (clazz.isAbstract()) {
+            abstractClassCount--;
+        }
+        metricsValid = false;
+        return true;
     }
 
     public Collection<JavaClass> getClasses() {
@@ -131,32 +178,17 @@ public class JavaPackage {
     }
 
     public int getAbstractClassCount() {
-        int count = 0;
-
-        for (JavaClass clazz : classes) {
-            if (clazz.isAbstract()) {
-                count++;
-            }
-        }
-
-        return count;
+        return abstractClassCount;
     }
 
     public int getConcreteClassCount() {
-        int count = 0;
-
-        for (JavaClass clazz : classes) {
-            if (!clazz.isAbstract()) {
-                count++;
-            }
-        }
-
-        return count;
+        return getClassCount() - getAbstractClassCount();
     }
 
     /**
      * Adds the specified Java package as an efferent of this package
-     * and adds this package as an afferent of it.
+     * and adds this package as an afferent of it. Each call adds 1 to
+     * the weight of the dependency.
      *
      * @param imported Java package.
      */
@@ -174,8 +206,8 @@ public class JavaPackage {
      */
     public void addAfferent(JavaPackage jPackage) {
         if (!jPackage.getName().equals(getName())) {
-            if (!afferents.contains(jPackage)) {
-                afferents.add(jPackage);
+            if (afferents.add(jPackage)) {
+                metricsValid = false;
             }
         }
     }
@@ -185,13 +217,23 @@ public class JavaPackage {
     }
 
     public void setAfferents(Collection<JavaPackage> afferents) {
-        this.afferents = new ArrayList<JavaPackage>(afferents);
+        this.afferents = new LinkedHashSet<JavaPackage>(afferents);
+        metricsValid = false;
     }
 
+    /**
+     * Adds the specified Java package as an efferent of this package, or
+     * adds 1 to the weight of the dependency if it already is one.
+     *
+     * @param jPackage Java package.
+     */
     public void addEfferent(JavaPackage jPackage) {
         if (!jPackage.getName().equals(getName())) {
-            if (!efferents.contains(jPackage)) {
-                efferents.add(jPackage);
+            weights.add(jPackage, 1);
+            if (efferents.add(jPackage)) {
+                metricsValid = false;
+                CycleDetector.connect(this, jPackage);
+                CycleDetector.graphChanged(this);
             }
         }
     }
@@ -200,8 +242,139 @@ public class JavaPackage {
         return efferents;
     }
 
+    /**
+     * Replaces the efferents of this package. Each of them has the
+     * weight 1.
+     *
+     * @param efferents Java packages.
+     */
     public void setEfferents(Collection<JavaPackage> efferents) {
-        this.efferents = new ArrayList<JavaPackage>(efferents);
+        this.efferents = new LinkedHashSet<JavaPackage>(efferents);
+        weights = new PackageWeights();
+        for (JavaPackage efferent : this.efferents) {
+            weights.add(efferent, 1);
+            CycleDetector.connect(this, efferent);
+        }
+        metricsValid = false;
+        CycleDetector.graphChanged(this);
+    }
+
+    /**
+     * Returns the weight of the dependency of this package upon the
+     * specified package: the number of classes of this package that
+     * import it.
+     *
+     * @param jPackage Java package.
+     * @return Weight of the dependency, 0 if it is not an efferent.
+     */
+    public int getDependencyWeight(JavaPackage jPackage) {
+        return weights.get(jPackage);
+    }
+
+    /**
+     * Adds the dependency of a class of this package upon the specified
+     * package, with the reference counts of the class if they were
+     * counted. Unlike <code>dependsUpon()</code>, a new efferent only
+     * invalidates the cycle information of the packages which reach
+     * this one, which requires their afferents to match their efferents.
+     *
+     * @param imported Package imported by the class.
+     * @param counts   Reference counts, or <code>null</code>.
+     */
+    void addImport(JavaPackage imported, int[] counts) {
+        if (!imported.getName().equals(getName())) {
+            imported.addAfferent(this);
+            weights.add(imported, 1);
+            if (efferents.add(imported)) {
+                metricsValid = false;
+                CycleDetector.connect(this, imported);
+                CycleDetector.dependencyChanged(this);
+            }
+        }
+        if (counts != null) {
+            addDependencies(imported, counts);
+        }
+    }
+
+    /**
+     * Withdraws the dependency of a removed class of this package upon
+     * the specified package, as added by <code>addImport()</code>. The
+     * efferent and the afferent are removed once no class imports the
+     * package any more.
+     *
+     * @param imported Package imported by the class.
+     * @param counts   Reference counts, or <code>null</code>.
+     */
+    void removeImport(JavaPackage imported, int[] counts) {
+        int[] sum = dependencies == null ? null : dependencies.get(imported);
+        if (counts != null && sum != null) {
+            for (int i = 0; i < counts.length; i++) {
+                sum[i] -= counts[i];
+            }
+        }
+        if (imported.getName().equals(getName())) {
+            return;
+        }
+
+        weights.add(imported, -1);
+        if (weights.get(imported) <= 0) {
+            weights.remove(imported);
+            if (dependencies != null) {
+                dependencies.remove(imported);
+            }
+            if (imported.afferents.remove(this)) {
+                imported.metricsValid = false;
+            }
+            if (efferents.remove(imported)) {
+                metricsValid = false;
+                CycleDetector.dependencyChanged(this);
+            }
+        }
+    }
+
+    /**
+     * Adds the reference counts of a class of this package to the
+     * specified efferent.
+     *
+     * @param jPackage Efferent package.
+     * @param counts   Reference counts, indexed by the ordinal of their kind.
+     */
+    void addDependencies(JavaPackage jPackage, int[] counts) {
+        if (dependencies == null) {
+            dependencies = new HashMap<JavaPackage, int[]>();
+        }
+        int[] sum = dependencies.get(jPackage);
+        if (sum == null) {
+            sum = new int[counts.length];
+            dependencies.put(jPackage, sum);
+        }
+        for (int i = 0; i < counts.length; i++) {
+            sum[i] += counts[i];
+        }
+    }
+
+    /**
+     * Returns the number of references of the specified kind the
+     * classes of this package make to the specified efferent.
+     *
+     * @param jPackage Efferent package.
+     * @param kind     Kind of the references.
+     * @return Number of references, 0 if they were not counted.
+     */
+    public int getDependencyCount(JavaPackage jPackage, DependencyKind kind) {
+        int[] counts = dependencies == null ? null : dependencies.get(jPackage);
+        return counts == null ? 0 : counts[kind.ordinal()];
+    }
+
+    /**
+     * Returns the kinds of the references the classes of this package
+     * make to the specified efferent.
+     *
+     * @param jPackage Efferent package.
+     * @return Kinds of the references; empty if they were not counted.
+     */
+    public Set<DependencyKind> getDependencyKinds(JavaPackage jPackage) {
+        return DependencyKind.kinds(dependencies == null ? null : dependencies.get(jPackage));
     }
 
     /**
@@ -222,33 +395,39 @@ public class JavaPackage {
      * @return Instability (0-1).
      */
     public float instability() {
-        float totalCoupling = (float) efferentCoupling() + (float) afferentCoupling();
-
-        if (totalCoupling > 0) {
-            return efferentCoupling() / totalCoupling;
-        }
-
-        return 0;
+        computeMetrics();
+        return instability;
     }
 
     /**
      * @return The package's abstractness (0-1).
      */
     public float abstractness() {
-
-        if (getClassCount() > 0) {
-            return (float) getAbstractClassCount() / (float) getClassCount();
-        }
-
-        return 0;
+        computeMetrics();
+        return abstractness;
     }
 
     /**
      * @return The package's distance from the main sequence (D).
      */
     public float distance() {
-        float d = Math.abs(abstractness() + instability() - 1);
-        return d * volatility;
+        computeMetrics();
+        return distance;
+    }
+
+    private void computeMetrics() {
+        if (metricsValid) {
+            return;
+        }
+
+        float totalCoupling = (float) efferentCoupling() + (float) afferentCoupling();
+        float i = totalCoupling > 0 ? efferentCoupling() / totalCoupling : 0;
+        float a = getClassCount() > 0 ? (float) getAbstractClassCount() / (float) getClassCount() : 0;
+
+        instability = i;
+        abstractness = a;
+        distance = Math.abs(a + i - 1) * volatility;
+        metricsValid = true;
     }
 
     public boolean equals(Object other) {
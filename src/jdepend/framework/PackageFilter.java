@@ -4,6 +4,11 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * The <code>PackageFilter</code> class is used to filter imported
@@ -13,6 +18,15 @@ import java.util.Collection;
  * The filter executes all excluding/including entries in the order they are defined.
  * The first one that matches is used as the result of the filter.
  * If no entry matches, the Filter accepts a package.
+ * <p>
+ * The entries are compiled into a prefix trie when a package name is
+ * first tested, so that a test takes time proportional to the length of
+ * the name rather than to the number of entries, and the decision for
+ * each package name is remembered. Adding an entry discards the trie
+ * and the decisions, and changes the <code>getVersion()</code> token by
+ * which the parsers tell that their own decisions are stale. Filters may
+ * be used by several threads once all entries were added.
+ * </p>
  *
  * @author <b>Mike Clark</b>
  * @author Clarkware Consulting, Inc.
@@ -20,6 +34,7 @@ import java.util.Collection;
 
 public class PackageFilter {
     private final Collection<Filter> filters;
+    private volatile Matcher matcher;
 
     private PackageFilter(Collection<Filter> filters) {
         this.filters = filters;
@@ -95,12 +110,27 @@ public class PackageFilter {
      * <code>false</code> otherwise.
      */
     public boolean accept(String packageName) {
-        for (Filter filter : filters) {
-            if (packageName.startsWith(filter.name)) {
-                return filter.include;
-            }
+        return matcher().accept(packageName);
+    }
+
+    /**
+     * Returns a token which stays the same as long as the entries of
+     * this filter do not change, so that callers remembering decisions
+     * of this filter know when to forget them.
+     *
+     * @return Current version of the entries.
+     */
+    Object getVersion() {
+        return matcher();
+    }
+
+    private Matcher matcher() {
+        Matcher m = matcher;
+        if (m == null || m.filterCount != filters.size()) {
+            m = new Matcher(filters);
+            matcher = m;
         }
-        return true;
+        return m;
     }
 
     private PackageFilter add(Collection<String> packageNames, boolean include) {
@@ -115,6 +145,7 @@ public class PackageFilter {
             packageName = packageName.substring(0, packageName.length() - 1);
         }
         filters.add(new Filter(packageName, include));
+        matcher = null;
         return this;
     }
 
@@ -122,6 +153,127 @@ public class PackageFilter {
         return filters;
     }
 
+    /**
+     * The entries of a filter compiled into a prefix trie. Each node
+     * holds the decision of the first entry naming the node or one of
+     * its ancestors, so that a test only walks the trie as deep as the
+     * package name reaches and takes the decision of the last node.
+     * The children of all nodes are kept in one open addressing table
+     * keyed by parent node and character.
+     */
+    private static final class Matcher {
+        private static final byte NONE = 0;
+        private static final byte INCLUDE = 1;
+        private static final byte EXCLUDE = 2;
+
+        private final int filterCount;
+        private final long[] keys;
+        private final int[] children;
+        private final byte[] decisions;
+        private final ConcurrentMap<String, Boolean> accepted;
+
+        Matcher(Collection<Filter> filters) {
+            filterCount = filters.size();
+
+            Map<Long, Integer> edges = new HashMap<Long, Integer>();
+            List<Integer> parents = new ArrayList<Integer>();
+            List<Integer> firsts = new ArrayList<Integer>();
+            List<Boolean> includes = new ArrayList<Boolean>();
+            parents.add(-1);
+            firsts.add(Integer.MAX_VALUE);
+            includes.add(Boolean.TRUE);
+
+            int index = 0;
+            for (Filter filter : filters) {
+                int node = 0;
+                for (int i = 0; i < filter.name.length(); i++) {
+                    Long key = key(node, filter.name.charAt(i));
+                    Integer child = edges.get(key);
+                    if (child == null) {
+                        child = parents.size();
+                        edges.put(key, child);
+                        parents.add(node);
+                        firsts.add(Integer.MAX_VALUE);
+                        includes.add(Boolean.TRUE);
+                    }
+                    node = child;
+                }
+                if (index < firsts.get(node)) {
+                    firsts.set(node, index);
+                    includes.set(node, filter.include);
+                }
+                index++;
+            }
+
+            // children are numbered after their parents
+            int nodes = parents.size();
+            int[] first = new int[nodes];
+            decisions = new byte[nodes];
+            for (int node = 0; node < nodes; node++) {
+                first[node] = firsts.get(node);
+                decisions[node] = first[node] == Integer.MAX_VALUE ? NONE : includes.get(node) ? INCLUDE : EXCLUDE;
+                int parent = parents.get(node);
+                if (parent >= 0 && first[parent] < first[node]) {
+                    first[node] = first[parent];
+                    decisions[node] = decisions[parent];
+                }
+            }
+
+            int capacity = Integer.highestOneBit(Math.max(2, edges.size()) * 2) * 2;
+            keys = new long[capacity];
+            children = new int[capacity];
+            for (Map.Entry<Long, Integer> edge : edges.entrySet()) {
+                int slot = slot(edge.getKey(), capacity - 1);
+                while (children[slot] != 0) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                keys[slot] = edge.getKey();
+                children[slot] = edge.getValue();
+            }
+
+            accepted = new ConcurrentHashMap<String, Boolean>();
+        }
+
+        boolean accept(String packageName) {
+            Boolean cached = accepted.get(packageName);
+            if (cached != null) {
+                return cached;
+            }
+
+            int mask = keys.length - 1;
+            int node = 0;
+            for (int i = 0; i < packageName.length(); i++) {
+                long key = key(node, packageName.charAt(i));
+                int slot = slot(key, mask);
+                int child = 0;
+                while (children[slot] != 0) {
+                    if (keys[slot] == key) {
+                        child = children[slot];
+                        break;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                if (child == 0) {
+                    break;
+                }
+                node = child;
+            }
+
+            boolean accept = decisions[node] != EXCLUDE;
+            accepted.put(packageName, accept);
+            return accept;
+        }
+
+        private static long key(int node, char c) {
+            return ((long) node << 16) | c;
+        }
+
+        private static int slot(long key, int mask) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 32) & mask;
+        }
+    }
+
     public static class Filter {
         public final String name;
         public final boolean include;
@@ -0,0 +1,647 @@
+package jdepend.framework;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The <code>PackageGraph</code> class is a compact, read-only form of
+ * the analyzed packages, for analyses of so many classes that a
+ * <code>JavaClass</code> per class and a set of classes per package do
+ * not fit into the heap.
+ * <p>
+ * Packages are identified by dense <code>int</code> ids. The classes
+ * are kept as UTF-8 names in one byte buffer, optionally outside the
+ * heap, with their package and abstractness in <code>int</code> and
+ * bit arrays; a class takes about 12 bytes plus its name. The
+ * dependencies between packages are stored in compressed sparse row
+ * form, in both directions, with their weights and reference counts.
+ * </p>
+ * <p>
+ * Each package is seen through a read-only <code>JavaPackage</code>
+ * view, so that the metrics, the cycle detection, and the reports work
+ * unchanged. The classes of a view are created when they are iterated.
+ * Methods of the views which change the packages throw an
+ * <code>UnsupportedOperationException</code>; only the volatility can
+ * be set. The graph is collected with
+ * <code>JDepend.compactPackages()</code>:
+ * </p>
+ * <blockquote>
+ * <pre>
+ * JDepend jdepend = new JDepend();
+ * jdepend.addDirectory(&quot;/path/to/server&quot;);
+ * jdepend.compactPackages(true);
+ * Collection packages = jdepend.analyze();
+ * </pre>
+ * </blockquote>
+ */
+
+public final class PackageGraph {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int KINDS = DependencyKind.values().length;
+
+    private final ByteBuffer classNames;
+    private final int[] nameOffsets;
+    private final long[] abstractClasses;
+    private final int[] classOffsets;
+    private final int[] classes;
+    private final int[] abstractCounts;
+    private EdgeTable edges;
+    private int[] edgeSources;
+    private int[] edgeTargets;
+    private final int[] weights;
+    private final int[] counts;
+    private final View[] views;
+    private final Map<String, View> byName;
+
+
+    private PackageGraph(Builder builder) {
+        this(builder.packageNames, (ByteBuffer) builder.names.duplicate().flip(),
+                Arrays.copyOf(builder.nameOffsets, builder.classCount + 1), builder.abstractClasses,
+                builder.classPackages, builder.classCount, builder.edges, builder.edgeSources, builder.edgeTargets,
+                Arrays.copyOf(builder.weights, builder.edges.size()),
+                builder.counts == null ? null : Arrays.copyOf(builder.counts, builder.edges.size() * KINDS));
+    }
+
+    /**
+     * Constructs a graph from its columns.
+     *
+     * @param packageNames    Names of the packages, by id.
+     * @param classNames      UTF-8 names of the classes.
+     * @param nameOffsets     Offsets of the class names in the buffer, and its end.
+     * @param abstractClasses Bit set of the abstract classes.
+     * @param classPackages   Package ids of the classes.
+     * @param classCount      Number of classes.
+     * @param edges           Dependency numbers of the package pairs, or
+     *                        <code>null</code> to build them when they are
+     *                        first looked up.
+     * @param edgeSources     Depending package of each dependency.
+     * @param edgeTargets     Package depended upon of each dependency.
+     * @param weights         Weight of each dependency.
+     * @param counts          Reference counts of each dependency, by kind, or
+     *                        <code>null</code> if they were not counted.
+     */
+    PackageGraph(List<String> packageNames, ByteBuffer classNames, int[] nameOffsets, long[] abstractClasses,
+                 int[] classPackages, int classCount, EdgeTable edges, int[] edgeSources, int[] edgeTargets,
+                 int[] weights, int[] counts) {
+        int n = packageNames.size();
+
+        if (edges == null) {
+            this.edgeSources = edgeSources;
+            this.edgeTargets = edgeTargets;
+        }
+        this.classNames = classNames;
+        this.nameOffsets = nameOffsets;
+        this.abstractClasses = abstractClasses;
+        this.edges = edges;
+        this.weights = weights;
+        this.counts = counts;
+
+        // the classes of each package, in the order they were added
+        classOffsets = new int[n + 1];
+        abstractCounts = new int[n];
+        for (int c = 0; c < classCount; c++) {
+            int p = classPackages[c];
+            classOffsets[p + 1]++;
+            if (isAbstract(c)) {
+                abstractCounts[p]++;
+            }
+        }
+        for (int p = 0; p < n; p++) {
+            classOffsets[p + 1] += classOffsets[p];
+        }
+        classes = new int[classCount];
+        int[] next = Arrays.copyOf(classOffsets, n);
+        for (int c = 0; c < classCount; c++) {
+            classes[next[classPackages[c]]++] = c;
+        }
+
+        // efferents and afferents, in the order the dependencies were added
+        int edgeCount = weights.length;
+        int[] efferentOffsets = new int[n + 1];
+        int[] afferentOffsets = new int[n + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            efferentOffsets[edgeSources[e] + 1]++;
+            afferentOffsets[edgeTargets[e] + 1]++;
+        }
+        for (int p = 0; p < n; p++) {
+            efferentOffsets[p + 1] += efferentOffsets[p];
+            afferentOffsets[p + 1] += afferentOffsets[p];
+        }
+        int[] efferents = new int[edgeCount];
+        int[] afferents = new int[edgeCount];
+        int[] nextEfferent = Arrays.copyOf(efferentOffsets, n);
+        int[] nextAfferent = Arrays.copyOf(afferentOffsets, n);
+        for (int e = 0; e < edgeCount; e++) {
+            efferents[nextEfferent[edgeSources[e]]++] = edgeTargets[e];
+            afferents[nextAfferent[edgeTargets[e]]++] = edgeSources[e];
+        }
+
+        views = new View[n];
+        byName = new HashMap<String, View>(2 * n);
+        for (int p = 0; p < n; p++) {
+            views[p] = new View(packageNames.get(p), p);
+            byName.put(views[p].getName(), views[p]);
+        }
+        for (int p = 0; p < n; p++) {
+            views[p].efferents = viewList(efferents, efferentOffsets[p], efferentOffsets[p + 1]);
+            views[p].afferents = viewList(afferents, afferentOffsets[p], afferentOffsets[p + 1]);
+            CycleDetector.connect(views[0], views[p]);
+        }
+    }
+
+    private List<JavaPackage> viewList(int[] ids, int from, int to) {
+        if (from == to) {
+            return Collections.emptyList();
+        }
+        JavaPackage[] list = new JavaPackage[to - from];
+        for (int i = from; i < to; i++) {
+            list[i - from] = views[ids[i]];
+        }
+        return Collections.unmodifiableList(Arrays.asList(list));
+    }
+
+    /**
+     * @return The number of packages.
+     */
+    public int size() {
+        return views.length;
+    }
+
+    /**
+     * @return The number of classes.
+     */
+    public int classCount() {
+        return classes.length;
+    }
+
+    /**
+     * @return The number of dependencies between the packages.
+     */
+    public int edgeCount() {
+        return weights.length;
+    }
+
+    /**
+     * Returns the read-only views of the packages.
+     *
+     * @return Collection of packages, in id order.
+     */
+    public Collection<JavaPackage> getPackages() {
+        return Collections.<JavaPackage>unmodifiableList(Arrays.asList(views));
+    }
+
+    /**
+     * Returns the read-only view of the package of the specified name.
+     *
+     * @param name Package name.
+     * @return Package, or <code>null</code> if the graph does not contain it.
+     */
+    public JavaPackage getPackage(String name) {
+        return byName.get(name);
+    }
+
+    private boolean isAbstract(int c) {
+        return (abstractClasses[c >>> 6] & (1L << c)) != 0;
+    }
+
+    private JavaClass toJavaClass(int c, String packageName) {
+        byte[] bytes = new byte[nameOffsets[c + 1] - nameOffsets[c]];
+        ByteBuffer names = classNames.duplicate();
+        names.position(nameOffsets[c]);
+        names.get(bytes);
+        JavaClass clazz = new JavaClass(new String(bytes, UTF8));
+        clazz.setPackageName(packageName);
+        clazz.isAbstract(isAbstract(c));
+        return clazz;
+    }
+
+    private int edge(View from, JavaPackage to) {
+        View target = to instanceof View && ((View) to).graph() == this ? (View) to : byName.get(to.getName());
+        return target == null ? -1 : edges().find(from.id, target.id);
+    }
+
+    private synchronized EdgeTable edges() {
+        if (edges == null) {
+            EdgeTable table = new EdgeTable(weights.length);
+            for (int e = 0; e < weights.length; e++) {
+                table.add(edgeSources[e], edgeTargets[e]);
+            }
+            edges = table;
+            edgeSources = null;
+            edgeTargets = null;
+        }
+        return edges;
+    }
+
+    /**
+     * A read-only package of the graph.
+     */
+    private final class View extends JavaPackage {
+        private final int id;
+        private List<JavaPackage> efferents;
+        private List<JavaPackage> afferents;
+
+        View(String name, int id) {
+            super(name);
+            this.id = id;
+        }
+
+        PackageGraph graph() {
+            return PackageGraph.this;
+        }
+
+        @Override
+        public Collection<JavaClass> getClasses() {
+            return new AbstractCollection<JavaClass>() {
+                public Iterator<JavaClass> iterator() {
+                    return new Iterator<JavaClass>() {
+                        private int next = classOffsets[id];
+
+                        public boolean hasNext() {
+                            return next < classOffsets[id + 1];
+                        }
+
+                        public JavaClass next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            return toJavaClass(classes[next++], getName());
+                        }
+
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                public int size() {
+                    return getClassCount();
+                }
+            };
+        }
+
+        @Override
+        public int getClassCount() {
+            return classOffsets[id + 1] - classOffsets[id];
+        }
+
+        @Override
+        public int getAbstractClassCount() {
+            return abstractCounts[id];
+        }
+
+        @Override
+        public int getConcreteClassCount() {
+            return getClassCount() - abstractCounts[id];
+        }
+
+        @Override
+        public Collection<JavaPackage> getEfferents() {
+            return efferents;
+        }
+
+        @Override
+        public Collection<JavaPackage> getAfferents() {
+            return afferents;
+        }
+
+        @Override
+        public int efferentCoupling() {
+            return efferents.size();
+        }
+
+        @Override
+        public int afferentCoupling() {
+            return afferents.size();
+        }
+
+        @Override
+        public int getDependencyWeight(JavaPackage jPackage) {
+            int e = edge(this, jPackage);
+            return e < 0 ? 0 : weights[e];
+        }
+
+        @Override
+        public int getDependencyCount(JavaPackage jPackage, DependencyKind kind) {
+            int e = counts == null ? -1 : edge(this, jPackage);
+            return e < 0 ? 0 : counts[e * KINDS + kind.ordinal()];
+        }
+
+        @Override
+        public Set<DependencyKind> getDependencyKinds(JavaPackage jPackage) {
+            int e = counts == null ? -1 : edge(this, jPackage);
+            return DependencyKind.kinds(e < 0 ? null : Arrays.copyOfRange(counts, e * KINDS, (e + 1) * KINDS));
+        }
+
+        @Override
+        public void addClass(JavaClass clazz) {
+            throw readOnly();
+        }
+
+        @Override
+        public boolean removeClass(JavaClass clazz) {
+            throw readOnly();
+        }
+
+        @Override
+        public void dependsUpon(JavaPackage... imported) {
+            throw readOnly();
+        }
+
+        @Override
+        public void addAfferent(JavaPackage jPackage) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setAfferents(Collection<JavaPackage> afferents) {
+            throw readOnly();
+        }
+
+        @Override
+        public void addEfferent(JavaPackage jPackage) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setEfferents(Collection<JavaPackage> efferents) {
+            throw readOnly();
+        }
+
+        private UnsupportedOperationException readOnly() {
+            return new UnsupportedOperationException("Package " + getName() + " of a package graph is read-only");
+        }
+    }
+
+    /**
+     * Maps the pairs of package ids of the dependencies to dependency
+     * numbers with open addressing.
+     */
+    static final class EdgeTable {
+        private long[] keys;
+        private int[] values;
+        private int size;
+
+        EdgeTable() {
+            this(512);
+        }
+
+        EdgeTable(int expected) {
+            int capacity = 1024;
+            while (capacity < 2 * expected) {
+                capacity *= 2;
+            }
+            keys = new long[capacity];
+            values = new int[capacity];
+        }
+
+        int find(int from, int to) {
+            long key = key(from, to);
+            int mask = keys.length - 1;
+            for (int slot = slot(key, mask); values[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot] - 1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Returns the number of the dependency, adding it if necessary.
+         */
+        int add(int from, int to) {
+            long key = key(from, to);
+            int mask = keys.length - 1;
+            int slot = slot(key, mask);
+            while (values[slot] != 0) {
+                if (keys[slot] == key) {
+                    return values[slot] - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = ++size;
+            if (size * 2 > keys.length) {
+                grow();
+            }
+            return size - 1;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private static long key(int from, int to) {
+            return ((long) from << 32) | (to & 0xFFFFFFFFL);
+        }
+
+        private static int slot(long key, int mask) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 32) & mask;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[2 * oldKeys.length];
+            values = new int[keys.length];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != 0) {
+                    int slot = slot(oldKeys[i], mask);
+                    while (values[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * The <code>Builder</code> collects the analyzed classes and their
+     * package dependencies without keeping the <code>JavaClass</code>
+     * instances, and turns them into a <code>PackageGraph</code>.
+     * <p>
+     * A builder is not thread safe.
+     * </p>
+     */
+    static final class Builder {
+
+        private final boolean offHeap;
+        private final Map<String, Integer> packageIds = new HashMap<String, Integer>();
+        private final List<String> packageNames = new ArrayList<String>();
+        private ByteBuffer names;
+        private int[] nameOffsets = new int[1025];
+        private int[] nameHashes = new int[1024];
+        private int[] classPackages = new int[1024];
+        private long[] abstractClasses = new long[16];
+        private int classCount;
+        private int[] classSlots = new int[2048];
+        private final EdgeTable edges = new EdgeTable();
+        private int[] edgeSources = new int[1024];
+        private int[] edgeTargets = new int[1024];
+        private int[] weights = new int[1024];
+        private int[] counts;
+
+        /**
+         * @param offHeap <code>true</code> to keep the class names in a
+         *                direct buffer outside the heap.
+         */
+        Builder(boolean offHeap) {
+            this.offHeap = offHeap;
+            this.names = allocate(1 << 16);
+        }
+
+        /**
+         * Returns the id of the package of the specified name, adding
+         * the package if necessary.
+         */
+        int addPackage(String name) {
+            Integer id = packageIds.get(name);
+            if (id == null) {
+                id = packageNames.size();
+                packageIds.put(name, id);
+                packageNames.add(name);
+            }
+            return id;
+        }
+
+        /**
+         * Adds a class to the specified package, unless a class of the
+         * same name was already added.
+         *
+         * @return <code>true</code> if the class was added.
+         */
+        boolean addClass(String name, int packageId, boolean isAbstract) {
+            byte[] bytes = name.getBytes(UTF8);
+            int hash = name.hashCode();
+            int mask = classSlots.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (classSlots[slot] != 0) {
+                int c = classSlots[slot] - 1;
+                if (nameHashes[c] == hash && sameName(c, bytes)) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            if (classCount == classPackages.length) {
+                int capacity = 2 * classCount;
+                nameOffsets = Arrays.copyOf(nameOffsets, capacity + 1);
+                nameHashes = Arrays.copyOf(nameHashes, capacity);
+                classPackages = Arrays.copyOf(classPackages, capacity);
+            }
+            if ((classCount >>> 6) == abstractClasses.length) {
+                abstractClasses = Arrays.copyOf(abstractClasses, 2 * abstractClasses.length);
+            }
+            if (names.remaining() < bytes.length) {
+                ByteBuffer grown = allocate(Math.max(2 * names.capacity(), names.position() + bytes.length));
+                names.flip();
+                grown.put(names);
+                names = grown;
+            }
+
+            int c = classCount++;
+            nameOffsets[c] = names.position();
+            names.put(bytes);
+            nameOffsets[c + 1] = names.position();
+            nameHashes[c] = hash;
+            classPackages[c] = packageId;
+            if (isAbstract) {
+                abstractClasses[c >>> 6] |= 1L << c;
+            }
+            classSlots[slot] = c + 1;
+            if (classCount * 2 > classSlots.length) {
+                growClassSlots();
+            }
+            return true;
+        }
+
+        /**
+         * Indicates whether a class of the first package was added with a
+         * dependency upon the second one.
+         */
+        boolean hasDependency(int from, int to) {
+            return from == to || edges.find(from, to) >= 0;
+        }
+
+        /**
+         * Adds 1 to the weight of the dependency of a class of the first
+         * package upon the second one, and adds the reference counts of
+         * the class if they were counted.
+         */
+        void addDependency(int from, int to, int[] referenceCounts) {
+            if (from == to) {
+                return;
+            }
+            int e = edges.add(from, to);
+            if (e == weights.length) {
+                edgeSources = Arrays.copyOf(edgeSources, 2 * e);
+                edgeTargets = Arrays.copyOf(edgeTargets, 2 * e);
+                weights = Arrays.copyOf(weights, 2 * e);
+            }
+            edgeSources[e] = from;
+            edgeTargets[e] = to;
+            weights[e]++;
+
+            if (referenceCounts != null) {
+                if (counts == null) {
+                    counts = new int[weights.length * KINDS];
+                } else if (counts.length < weights.length * KINDS) {
+                    counts = Arrays.copyOf(counts, weights.length * KINDS);
+                }
+                for (int k = 0; k < KINDS; k++) {
+                    counts[e * KINDS + k] += referenceCounts[k];
+                }
+            }
+        }
+
+        PackageGraph build() {
+            return new PackageGraph(this);
+        }
+
+        private boolean sameName(int c, byte[] bytes) {
+            int offset = nameOffsets[c];
+            if (nameOffsets[c + 1] - offset != bytes.length) {
+                return false;
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                if (names.get(offset + i) != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void growClassSlots() {
+            classSlots = new int[2 * classSlots.length];
+            int mask = classSlots.length - 1;
+            for (int c = 0; c < classCount; c++) {
+                int hash = nameHashes[c];
+                int slot = (hash ^ (hash >>> 16)) & mask;
+                while (classSlots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                classSlots[slot] = c + 1;
+            }
+        }
+
+        private ByteBuffer allocate(int capacity) {
+            return offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        }
+    }
+}
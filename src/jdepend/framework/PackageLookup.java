@@ -0,0 +1,136 @@
+package jdepend.framework;
+
+import java.util.Arrays;
+
+/**
+ * The <code>PackageLookup</code> class finds the canonical packages of
+ * package names given as a range of a class name, in binary
+ * (<code>java.lang</code>) or internal (<code>java/lang</code>) form,
+ * without creating a string for names it has seen before. It also
+ * remembers whether the filter accepts each package, until
+ * <code>checkFilter()</code> finds that the filter changed.
+ * <p>
+ * A lookup is not thread safe; every parser has its own lookup in front
+ * of the shared <code>PackageTable</code>.
+ * </p>
+ */
+
+class PackageLookup {
+
+    private static final byte UNKNOWN = 0;
+    private static final byte REJECTED = 1;
+    private static final byte ACCEPTED = 2;
+
+    private final PackageTable table;
+    private final PackageFilter filter;
+    private Object filterVersion;
+
+    private String[] names = new String[256];
+    private JavaPackage[] packages = new JavaPackage[256];
+    private byte[] accepted = new byte[256];
+    private int count;
+
+
+    PackageLookup(PackageTable table, PackageFilter filter) {
+        this.table = table;
+        this.filter = filter;
+    }
+
+    /**
+     * Forgets whether the filter accepts the packages if its entries
+     * changed since that was looked up.
+     */
+    void checkFilter() {
+        Object version = filter.getVersion();
+        if (version != filterVersion) {
+            Arrays.fill(accepted, UNKNOWN);
+            filterVersion = version;
+        }
+    }
+
+    /**
+     * Returns the canonical package named by the specified range.
+     */
+    JavaPackage getPackage(String s, int start, int end) {
+        return packages[find(s, start, end)];
+    }
+
+    /**
+     * Returns the canonical package named by the specified range, or
+     * <code>null</code> if the filter does not accept it.
+     */
+    JavaPackage getAcceptedPackage(String s, int start, int end) {
+        int slot = find(s, start, end);
+        if (accepted[slot] == UNKNOWN) {
+            accepted[slot] = filter.accept(names[slot]) ? ACCEPTED : REJECTED;
+        }
+        return accepted[slot] == ACCEPTED ? packages[slot] : null;
+    }
+
+    private int find(String s, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + dot(s.charAt(i));
+        }
+        hash ^= hash >>> 16;
+
+        int mask = names.length - 1;
+        int slot = hash & mask;
+        while (names[slot] != null) {
+            if (matches(names[slot], s, start, end)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        JavaPackage jPackage = table.intern(s.substring(start, end).replace('/', '.'));
+        names[slot] = jPackage.getName();
+        packages[slot] = jPackage;
+        if (++count * 2 > names.length) {
+            grow();
+            return find(s, start, end);
+        }
+        return slot;
+    }
+
+    private static boolean matches(String name, String s, int start, int end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (name.charAt(i - start) != dot(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char dot(char c) {
+        return c == '/' ? '.' : c;
+    }
+
+    private void grow() {
+        String[] oldNames = names;
+        JavaPackage[] oldPackages = packages;
+        byte[] oldAccepted = accepted;
+        names = new String[2 * oldNames.length];
+        packages = new JavaPackage[names.length];
+        accepted = new byte[names.length];
+
+        int mask = names.length - 1;
+        for (int i = 0; i < oldNames.length; i++) {
+            String name = oldNames[i];
+            if (name != null) {
+                int hash = name.hashCode();
+                hash ^= hash >>> 16;
+                int slot = hash & mask;
+                while (names[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                names[slot] = name;
+                packages[slot] = oldPackages[i];
+                accepted[slot] = oldAccepted[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package jdepend.framework;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The <code>PackageTable</code> class interns package names. Each name
+ * is given a dense <code>int</code> id and a canonical
+ * <code>JavaPackage</code> instance, so that the parsers, the parsed
+ * classes and the analyzed package graph share one instance and one
+ * name string per package.
+ * <p>
+ * The table is thread safe; the parsers of a parallel build share the
+ * table of the parser they were created from.
+ * </p>
+ */
+
+public class PackageTable {
+
+    private final ConcurrentMap<String, Entry> entries;
+    private volatile JavaPackage[] packages;
+    private int size;
+
+
+    public PackageTable() {
+        entries = new ConcurrentHashMap<String, Entry>();
+        packages = new JavaPackage[64];
+    }
+
+    /**
+     * Returns the canonical package of the specified name, creating it
+     * if the name was not interned before.
+     *
+     * @param name Package name.
+     * @return Canonical package.
+     */
+    public JavaPackage intern(String name) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            entry = add(name, null);
+        }
+        return entry.jPackage;
+    }
+
+    /**
+     * Makes the specified package the canonical package of its name,
+     * unless the name was interned before.
+     *
+     * @param jPackage Package.
+     * @return Canonical package of the package's name.
+     */
+    public JavaPackage intern(JavaPackage jPackage) {
+        Entry entry = entries.get(jPackage.getName());
+        if (entry == null) {
+            entry = add(jPackage.getName(), jPackage);
+        }
+        return entry.jPackage;
+    }
+
+    /**
+     * Returns the id of the package of the specified name, interning the
+     * name if necessary. Ids are assigned in interning order, starting
+     * with 0.
+     *
+     * @param name Package name.
+     * @return Package id.
+     */
+    public int idOf(String name) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            entry = add(name, null);
+        }
+        return entry.id;
+    }
+
+    /**
+     * Returns the canonical package of the specified id.
+     *
+     * @param id Package id.
+     * @return Canonical package.
+     * @throws IndexOutOfBoundsException If no package has the id.
+     */
+    public JavaPackage get(int id) {
+        JavaPackage[] table = packages;
+        JavaPackage jPackage = id >= 0 && id < table.length ? table[id] : null;
+        if (jPackage == null) {
+            throw new IndexOutOfBoundsException("Unknown package id: " + id);
+        }
+        return jPackage;
+    }
+
+    /**
+     * @return The number of interned packages.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized Entry add(String name, JavaPackage jPackage) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            if (jPackage == null) {
+                jPackage = new JavaPackage(name);
+            }
+            JavaPackage[] table = packages;
+            if (size == table.length) {
+                table = Arrays.copyOf(table, 2 * size);
+            }
+            table[size] = jPackage;
+            packages = table;
+            entry = new Entry(jPackage, size++);
+            entries.put(name, entry);
+        }
+        return entry;
+    }
+
+    private static class Entry {
+        private final JavaPackage jPackage;
+        private final int id;
+
+        Entry(JavaPackage jPackage, int id) {
+            this.jPackage = jPackage;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package jdepend.framework;
+
+/**
+ * The <code>PackageWeights</code> class maps packages to <code>int</code>
+ * weights with open addressing, so that counting a dependency neither
+ * boxes the count nor allocates an entry.
+ * <p>
+ * Packages are compared by name, like <code>JavaPackage.equals()</code>.
+ * The weights are not thread safe.
+ * </p>
+ */
+
+final class PackageWeights {
+
+    private JavaPackage[] keys;
+    private int[] values;
+    private int size;
+
+
+    PackageWeights() {
+        keys = new JavaPackage[8];
+        values = new int[8];
+    }
+
+    /**
+     * Returns the weight of the specified package, 0 if it has none.
+     */
+    int get(JavaPackage jPackage) {
+        JavaPackage[] k = keys;
+        int mask = k.length - 1;
+        for (int slot = slot(jPackage, mask); k[slot] != null; slot = (slot + 1) & mask) {
+            if (matches(k[slot], jPackage)) {
+                return values[slot];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Adds the specified amount to the weight of the specified package.
+     */
+    void add(JavaPackage jPackage, int amount) {
+        int mask = keys.length - 1;
+        int slot = slot(jPackage, mask);
+        while (keys[slot] != null) {
+            if (matches(keys[slot], jPackage)) {
+                values[slot] += amount;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = jPackage;
+        values[slot] = amount;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    /**
+     * Removes the weight of the specified package. The entries following
+     * it in its probe sequence are moved back, so that no tombstones are
+     * left behind.
+     */
+    void remove(JavaPackage jPackage) {
+        int mask = keys.length - 1;
+        int slot = slot(jPackage, mask);
+        while (keys[slot] != null && !matches(keys[slot], jPackage)) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == null) {
+            return;
+        }
+
+        int gap = slot;
+        for (int next = (gap + 1) & mask; keys[next] != null; next = (next + 1) & mask) {
+            int home = slot(keys[next], mask);
+            // move the entry into the gap unless its home lies cyclically in (gap, next]
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        keys[gap] = null;
+        values[gap] = 0;
+        size--;
+    }
+
+    /**
+     * @return The number of packages with a weight.
+     */
+    int size() {
+        return size;
+    }
+
+    private static int slot(JavaPackage jPackage, int mask) {
+        int hash = jPackage.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static boolean matches(JavaPackage key, JavaPackage jPackage) {
+        return key == jPackage || key.getName().equals(jPackage.getName());
+    }
+
+    private void grow() {
+        JavaPackage[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new JavaPackage[2 * oldKeys.length];
+        values = new int[keys.length];
+
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = slot(oldKeys[i], mask);
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
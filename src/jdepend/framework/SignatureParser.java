@@ -1,7 +1,9 @@
 package jdepend.framework;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -16,6 +18,7 @@ public class SignatureParser {
     private char c;
     private int pos;
     private Set<String> packages = new HashSet<String>();
+    private List<String> classes = new ArrayList<String>();
 
     private SignatureParser(String s) {
         this.s = s;
@@ -46,6 +49,15 @@ public class SignatureParser {
         return packages;
     }
 
+    /**
+     * Returns the binary names of the classes in the signature, with
+     * <code>$</code> separating inner classes, in the order in which they
+     * appear.
+     */
+    public List<String> getClasses() {
+        return classes;
+    }
+
     private void classSignature() {
         if (is('<')) {
             formalTypeParameters();
@@ -112,6 +124,7 @@ public class SignatureParser {
         }
         final int pos = id.lastIndexOf('.');
         packages.add(pos < 0 ? id : id.substring(0, pos));
+        classes.add(id);
         read(';');
     }
 
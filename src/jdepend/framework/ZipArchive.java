@@ -0,0 +1,349 @@
+package jdepend.framework;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * The <code>ZipArchive</code> class reads the entries of a jar, war, or
+ * zip file through a memory mapping of the whole file.
+ * <p>
+ * Only the central directory is read to list the entries; manifests and
+ * signatures are not checked. Stored entries are returned as slices of
+ * the mapping, deflated entries are inflated into a buffer of the calling
+ * thread which is reused by its next <code>read()</code>.
+ * </p>
+ * <p>
+ * The mapping is held until <code>close()</code>, which unmaps it
+ * right away where the JVM allows it, and otherwise leaves it to the
+ * garbage collector. The buffers returned by <code>read()</code> must
+ * not be used after the archive was closed; callers reading from several
+ * threads hold the <code>readLock()</code> while they use them, so that
+ * <code>close()</code> waits until they are done.
+ * </p>
+ * <p>
+ * ZIP64 archives are not supported; <code>open()</code> throws a
+ * <code>ZipException</code> for them, so that callers can fall back to
+ * <code>java.util.zip</code>.
+ * </p>
+ */
+
+class ZipArchive {
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_HEADER = 0x06054b50;
+    private static final int END_HEADER_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private static final ThreadLocal<Inflation> inflations = new ThreadLocal<Inflation>() {
+        @Override
+        protected Inflation initialValue() {
+            return new Inflation();
+        }
+    };
+
+    private final File file;
+    private final List<Entry> entries;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private ByteBuffer buffer;
+
+
+    private ZipArchive(File file, ByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        this.entries = readCentralDirectory();
+    }
+
+    /**
+     * Maps the specified archive and reads its central directory.
+     *
+     * @param file Jar, war, or zip file.
+     * @throws ZipException If the file is not a zip file supported by this reader.
+     * @throws IOException  If the file cannot be read.
+     */
+    public static ZipArchive open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size == 0) {
+                throw new ZipException("zip file is empty");
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new ZipException("zip file is too large to be mapped: " + file.getPath());
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return new ZipArchive(file, buffer);
+        } finally {
+            raf.close();
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the lock to hold while reading entries and using their
+     * contents, to keep the archive from being closed meanwhile.
+     *
+     * @return Shared lock of the archive.
+     */
+    public Lock readLock() {
+        return lock.readLock();
+    }
+
+    /**
+     * Releases the mapping of the archive once no thread holds the
+     * <code>readLock()</code>. Entries cannot be read afterwards.
+     */
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (buffer != null) {
+                unmap(buffer);
+                buffer = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+     * Unmaps the buffer through the cleaner of the JVM (sun.misc.Unsafe
+     * from Java 9 on, the buffer's own cleaner before), if it is accessible.
+     */
+    private static void unmap(ByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+                return;
+            }
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (Exception e) {
+            // left to the garbage collector
+        }
+    }
+
+    /**
+     * @return The file entries of the archive, in central directory order.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns the contents of the specified entry. Stored entries are
+     * returned without copying; deflated entries are inflated into a buffer
+     * of the calling thread, which is only valid until the next call to
+     * this method on the same thread.
+     *
+     * @param entry Entry of this archive.
+     * @return Buffer with the entry's contents between its position and limit.
+     * @throws ZipException If the archive was closed or the entry is invalid.
+     */
+    public ByteBuffer read(Entry entry) throws IOException {
+        if (buffer == null) {
+            throw new ZipException("Archive is closed: " + file.getPath());
+        }
+        try {
+            ByteBuffer in = buffer.duplicate();
+            in.order(ByteOrder.LITTLE_ENDIAN);
+            int local = entry.localHeaderOffset;
+            if (in.getInt(local) != LOCAL_HEADER) {
+                throw new ZipException("Invalid local header of " + entry.name + " in " + file.getPath());
+            }
+            int data = local + 30 + u2(in, local + 26) + u2(in, local + 28);
+            in.limit(data + entry.compressedSize).position(data);
+
+            switch (entry.method) {
+                case STORED:
+                    return in.slice();
+                case DEFLATED:
+                    return inflations.get().inflate(in, entry.size);
+                default:
+                    throw new ZipException("Unsupported compression method " + entry.method
+                            + " of " + entry.name + " in " + file.getPath());
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw invalid(entry.name, e);
+        } catch (IllegalArgumentException e) {
+            throw invalid(entry.name, e);
+        } catch (DataFormatException e) {
+            throw invalid(entry.name, e);
+        }
+    }
+
+    private ZipException invalid(String name, Exception cause) {
+        ZipException e = new ZipException("Invalid entry " + name + " in " + file.getPath());
+        e.initCause(cause);
+        return e;
+    }
+
+    private List<Entry> readCentralDirectory() throws IOException {
+        int end = findEndHeader();
+        int count = u2(buffer, end + 10);
+        long offset = u4(buffer, end + 16);
+        if (count == 0xFFFF || offset == 0xFFFFFFFFL) {
+            throw new ZipException("ZIP64 archives are not supported: " + file.getPath());
+        }
+
+        List<Entry> result = new ArrayList<Entry>(count);
+        try {
+            int pos = (int) offset;
+            byte[] name = new byte[256];
+            for (int i = 0; i < count; i++) {
+                if (buffer.getInt(pos) != CENTRAL_HEADER) {
+                    throw new ZipException("Invalid central directory of " + file.getPath());
+                }
+                int nameLength = u2(buffer, pos + 28);
+                if (name.length < nameLength) {
+                    name = new byte[nameLength];
+                }
+                for (int n = 0; n < nameLength; n++) {
+                    name[n] = buffer.get(pos + 46 + n);
+                }
+                boolean utf8 = (u2(buffer, pos + 8) & 0x800) != 0;
+                String entryName = new String(name, 0, nameLength, utf8 ? "UTF-8" : "ISO-8859-1");
+                if (!entryName.endsWith("/")) {
+                    result.add(new Entry(entryName, u2(buffer, pos + 10), buffer.getInt(pos + 16),
+                            toInt(u4(buffer, pos + 20)), toInt(u4(buffer, pos + 24)), toInt(u4(buffer, pos + 42))));
+                }
+                pos += 46 + nameLength + u2(buffer, pos + 30) + u2(buffer, pos + 32);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            ZipException ze = new ZipException("Invalid central directory of " + file.getPath());
+            ze.initCause(e);
+            throw ze;
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return result;
+    }
+
+    private int findEndHeader() throws ZipException {
+        int last = buffer.limit() - END_HEADER_SIZE;
+        int first = Math.max(0, last - MAX_COMMENT_SIZE);
+        for (int pos = last; pos >= first; pos--) {
+            if (buffer.get(pos) == 0x50 && buffer.getInt(pos) == END_HEADER) {
+                return pos;
+            }
+        }
+        throw new ZipException("Not a zip file: " + file.getPath());
+    }
+
+    private int toInt(long value) throws ZipException {
+        if (value > Integer.MAX_VALUE) {
+            throw new ZipException("ZIP64 archives are not supported: " + file.getPath());
+        }
+        return (int) value;
+    }
+
+    private static int u2(ByteBuffer buffer, int offset) {
+        return buffer.getShort(offset) & 0xFFFF;
+    }
+
+    private static long u4(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * A file entry of the central directory.
+     */
+    static class Entry {
+        private final String name;
+        private final int method;
+        private final int crc;
+        private final int compressedSize;
+        private final int size;
+        private final int localHeaderOffset;
+
+        Entry(String name, int method, int crc, int compressedSize, int size, int localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCrc() {
+            return crc;
+        }
+
+        public int getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * The inflater and buffers of a thread.
+     */
+    private static class Inflation {
+        private final Inflater inflater = new Inflater(true);
+        private byte[] input = new byte[8192];
+        private byte[] output = new byte[8192];
+
+        ByteBuffer inflate(ByteBuffer compressed, int size) throws DataFormatException, ZipException {
+            int length = compressed.remaining();
+            // the inflater needs an extra dummy byte for entries without data descriptor
+            if (input.length < length + 1) {
+                input = new byte[length + 1];
+            }
+            if (output.length < size) {
+                output = new byte[size];
+            }
+            compressed.get(input, 0, length);
+            input[length] = 0;
+
+            inflater.reset();
+            inflater.setInput(input, 0, length + 1);
+            int inflated = 0;
+            while (inflated < size && !inflater.finished()) {
+                int n = inflater.inflate(output, inflated, size - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += n;
+            }
+            if (inflated != size) {
+                throw new ZipException("Invalid compressed entry size: " + inflated + " instead of " + size);
+            }
+            return ByteBuffer.wrap(output, 0, size);
+        }
+    }
+}
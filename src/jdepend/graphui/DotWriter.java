@@ -0,0 +1,92 @@
+package jdepend.graphui;
+
+import java.io.PrintWriter;
+
+/**
+ * The <code>DotWriter</code> class writes the package dependency graph in
+ * the DOT language of Graphviz.
+ * <p>
+ * Each package is a record node labeled with its name and number of
+ * classes, filled with a color whose saturation is its distance from
+ * the main sequence (D). Packages in a dependency cycle are outlined in
+ * red. The weight of each dependency is the weight of its edge.
+ * </p>
+ * <blockquote>
+ * <pre>
+ * java jdepend.graphui.JDepend -file jdepend.dot /path/to/classes
+ * dot -Tsvg -o jdepend.svg jdepend.dot
+ * </pre>
+ * </blockquote>
+ */
+
+public class DotWriter extends GraphWriter {
+
+    public DotWriter(PrintWriter writer) {
+        super(writer);
+    }
+
+    protected void startGraph() {
+        getWriter().println("digraph g {");
+        getWriter().println("    graph [rankdir = \"LR\"];");
+        getWriter().println("    node [fontsize = \"12\" fontname = \"Courier\" shape = \"record\" style = \"filled\"];");
+    }
+
+    protected void writeNode(Node node) {
+        PrintWriter writer = getWriter();
+        writer.write("    ");
+        writeId(node.getName());
+        writer.write(" [label=\"");
+        writeEscaped(node.getName(), true);
+        if (node.getClassCount() > 0) {
+            writer.write(" | Total Classes: ");
+            writer.write(String.valueOf(node.getClassCount()));
+        }
+        writer.write("\" fillcolor=\".99 ");
+        writer.write(toFormattedString(node.distance()));
+        writer.write(" .9\"");
+        if (node.isInCycle()) {
+            writer.write(" color=\"red\"");
+        }
+        writer.println("];");
+    }
+
+    protected void writeEdge(String from, String to, int weight) {
+        PrintWriter writer = getWriter();
+        writer.write("    ");
+        writeId(from);
+        writer.write(" -> ");
+        writeId(to);
+        writer.write(" [weight=");
+        writer.write(String.valueOf(weight));
+        writer.println("];");
+    }
+
+    protected void endGraph() {
+        getWriter().println("}");
+    }
+
+    private void writeId(String name) {
+        getWriter().write('"');
+        writeEscaped(name, false);
+        getWriter().write('"');
+    }
+
+    /*
+     * Escapes quotes and backslashes, and in record labels also the
+     * characters which separate and name the fields.
+     */
+    private void writeEscaped(String s, boolean record) {
+        PrintWriter writer = getWriter();
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\'
+                    || (record && (c == '|' || c == '{' || c == '}' || c == '<' || c == '>'))) {
+                writer.write(s, start, i - start);
+                writer.write('\\');
+                start = i;
+            }
+        }
+        writer.write(s, start, s.length() - start);
+    }
+}
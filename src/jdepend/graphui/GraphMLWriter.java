@@ -0,0 +1,89 @@
+package jdepend.graphui;
+
+import jdepend.xmlui.XMLWriter;
+
+import java.io.PrintWriter;
+
+/**
+ * The <code>GraphMLWriter</code> class writes the package dependency
+ * graph in GraphML.
+ * <p>
+ * Each package is a node whose id is its name, with the data keys
+ * <code>classes</code>, <code>abstractClasses</code>, <code>ca</code>,
+ * <code>ce</code>, <code>a</code>, <code>i</code>, <code>d</code>, and
+ * <code>cycle</code>. Each dependency is a directed edge with the data
+ * key <code>weight</code>. The elements are written with an
+ * <code>XMLWriter</code> as the packages are reached.
+ * </p>
+ */
+
+public class GraphMLWriter extends GraphWriter {
+
+    private final XMLWriter xml;
+
+    public GraphMLWriter(PrintWriter writer) {
+        super(writer);
+        xml = new XMLWriter(writer, "    ");
+    }
+
+    protected void startGraph() {
+        xml.startDocument();
+        xml.startElement("graphml");
+        xml.attribute("xmlns", "http://graphml.graphdrawing.org/xmlns");
+        writeKey("classes", "node", "int");
+        writeKey("abstractClasses", "node", "int");
+        writeKey("ca", "node", "int");
+        writeKey("ce", "node", "int");
+        writeKey("a", "node", "float");
+        writeKey("i", "node", "float");
+        writeKey("d", "node", "float");
+        writeKey("cycle", "node", "boolean");
+        writeKey("weight", "edge", "int");
+        xml.startElement("graph");
+        xml.attribute("id", "JDepend");
+        xml.attribute("edgedefault", "directed");
+    }
+
+    protected void writeNode(Node node) {
+        xml.startElement("node");
+        xml.attribute("id", node.getName());
+        writeData("classes", String.valueOf(node.getClassCount()));
+        writeData("abstractClasses", String.valueOf(node.getAbstractClassCount()));
+        writeData("ca", String.valueOf(node.afferentCoupling()));
+        writeData("ce", String.valueOf(node.efferentCoupling()));
+        writeData("a", toFormattedString(node.abstractness()));
+        writeData("i", toFormattedString(node.instability()));
+        writeData("d", toFormattedString(node.distance()));
+        writeData("cycle", String.valueOf(node.isInCycle()));
+        xml.endElement();
+    }
+
+    protected void writeEdge(String from, String to, int weight) {
+        xml.startElement("edge");
+        xml.attribute("source", from);
+        xml.attribute("target", to);
+        writeData("weight", String.valueOf(weight));
+        xml.endElement();
+    }
+
+    protected void endGraph() {
+        xml.endElement();
+        xml.endElement();
+    }
+
+    private void writeKey(String id, String domain, String type) {
+        xml.startElement("key");
+        xml.attribute("id", id);
+        xml.attribute("for", domain);
+        xml.attribute("attr.name", id);
+        xml.attribute("attr.type", type);
+        xml.endElement();
+    }
+
+    private void writeData(String key, String value) {
+        xml.startElement("data");
+        xml.attribute("key", key);
+        xml.text(value);
+        xml.endElement();
+    }
+}
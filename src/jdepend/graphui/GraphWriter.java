@@ -0,0 +1,372 @@
+package jdepend.graphui;
+
+import jdepend.framework.JavaPackage;
+import jdepend.framework.PackageComparator;
+
+import java.io.PrintWriter;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+/**
+ * The <code>GraphWriter</code> class writes the package dependency graph
+ * in a graph format, one package with its dependencies after the other,
+ * directly to a <code>PrintWriter</code>.
+ * <p>
+ * Packages may be collapsed into a single node: all packages of a
+ * component set with <code>setComponents()</code>, as
+ * <code>JDepend.setComponents()</code> does during the analysis, and,
+ * with <code>collapseCycles()</code>, all packages which are in a
+ * dependency cycle with each other. The node of collapsed packages sums
+ * their classes and the weights of their dependencies upon other nodes;
+ * dependencies within the node are dropped, and its metrics are
+ * computed as those of a package with its classes and dependencies.
+ * </p>
+ * <p>
+ * The nodes are written in the order of the names of their first
+ * packages, each followed by its dependencies in the same order of the
+ * nodes depended upon. A node of collapsed packages is named after its
+ * first component or package, followed by the number of other
+ * components and packages it contains.
+ * </p>
+ */
+
+public abstract class GraphWriter {
+
+    private final PrintWriter writer;
+    private final NumberFormat formatter;
+    private Collection<String> components;
+    private boolean collapseCycles;
+
+
+    /**
+     * Constructs a <code>GraphWriter</code> with the specified writer.
+     *
+     * @param writer Writer.
+     */
+    protected GraphWriter(PrintWriter writer) {
+        this.writer = writer;
+        this.formatter = NumberFormat.getInstance(Locale.ENGLISH);
+        this.formatter.setMaximumFractionDigits(2);
+        this.formatter.setGroupingUsed(false);
+    }
+
+    public PrintWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * Sets the list of components whose packages are collapsed into one
+     * node each.
+     *
+     * @param components Comma-separated list of components, or
+     *                   <code>null</code> to collapse no components.
+     */
+    public void setComponents(String components) {
+        if (components == null) {
+            this.components = null;
+            return;
+        }
+        this.components = new ArrayList<String>();
+        StringTokenizer st = new StringTokenizer(components, ",");
+        while (st.hasMoreTokens()) {
+            this.components.add(st.nextToken().trim());
+        }
+    }
+
+    /**
+     * Determines whether the packages of each dependency cycle are
+     * collapsed into one node.
+     *
+     * @param b <code>true</code> to collapse cycles; <code>false</code>
+     *          otherwise.
+     */
+    public void collapseCycles(boolean b) {
+        collapseCycles = b;
+    }
+
+    /**
+     * Writes the graph of the specified packages and the packages they
+     * depend upon.
+     *
+     * @param packages Analyzed packages.
+     */
+    public void write(Collection<JavaPackage> packages) {
+        List<JavaPackage> list = new ArrayList<JavaPackage>(packages);
+        Set<String> names = new HashSet<String>();
+        for (JavaPackage jPackage : list) {
+            names.add(jPackage.getName());
+        }
+        for (int p = 0; p < list.size(); p++) {
+            for (JavaPackage efferent : list.get(p).getEfferents()) {
+                if (names.add(efferent.getName())) {
+                    list.add(efferent);
+                }
+            }
+        }
+        Collections.sort(list, new PackageComparator(PackageComparator.byName()));
+
+        startGraph();
+        if (components == null && !collapseCycles) {
+            writePackages(list);
+        } else {
+            writeCollapsed(list);
+        }
+        endGraph();
+        writer.flush();
+    }
+
+    private void writePackages(List<JavaPackage> list) {
+        for (JavaPackage jPackage : list) {
+            writeNode(new Node(jPackage.getName(), jPackage.getClassCount(), jPackage.getAbstractClassCount(),
+                    jPackage.afferentCoupling(), jPackage.efferentCoupling(), jPackage.getVolatility(),
+                    !jPackage.getCycleComponent().isEmpty()));
+
+            List<JavaPackage> efferents = new ArrayList<JavaPackage>(jPackage.getEfferents());
+            Collections.sort(efferents, new PackageComparator(PackageComparator.byName()));
+            for (JavaPackage efferent : efferents) {
+                writeEdge(jPackage.getName(), efferent.getName(), jPackage.getDependencyWeight(efferent));
+            }
+        }
+    }
+
+    private void writeCollapsed(List<JavaPackage> list) {
+        int n = list.size();
+        Map<String, Integer> ids = new HashMap<String, Integer>(2 * n);
+        for (int p = 0; p < n; p++) {
+            ids.put(list.get(p).getName(), p);
+        }
+
+        // merge the packages of each component and cycle
+        int[] parent = new int[n];
+        for (int p = 0; p < n; p++) {
+            parent[p] = p;
+        }
+        String[] keys = new String[n];
+        Map<String, Integer> firstOfKey = new HashMap<String, Integer>();
+        for (int p = 0; p < n; p++) {
+            keys[p] = toComponent(list.get(p).getName());
+            Integer first = firstOfKey.get(keys[p]);
+            if (first == null) {
+                firstOfKey.put(keys[p], p);
+            } else {
+                union(parent, first, p);
+            }
+            List<JavaPackage> cycle = list.get(p).getCycleComponent();
+            if (collapseCycles && !cycle.isEmpty()) {
+                union(parent, p, ids.get(cycle.get(0).getName()));
+            }
+        }
+
+        // number the nodes in the order of their first package
+        int[] node = new int[n];
+        int nodeCount = 0;
+        int[] nodeOfRoot = new int[n];
+        Arrays.fill(nodeOfRoot, -1);
+        for (int p = 0; p < n; p++) {
+            int root = find(parent, p);
+            if (nodeOfRoot[root] < 0) {
+                nodeOfRoot[root] = nodeCount++;
+            }
+            node[p] = nodeOfRoot[root];
+        }
+
+        String[] nodeNames = new String[nodeCount];
+        int[] nodeKeys = new int[nodeCount];
+        int[] classes = new int[nodeCount];
+        int[] abstractClasses = new int[nodeCount];
+        int[] volatility = new int[nodeCount];
+        boolean[] cycle = new boolean[nodeCount];
+        for (int p = 0; p < n; p++) {
+            JavaPackage jPackage = list.get(p);
+            int v = node[p];
+            if (firstOfKey.get(keys[p]) == p) {
+                if (nodeKeys[v]++ == 0) {
+                    nodeNames[v] = keys[p];
+                }
+            }
+            classes[v] += jPackage.getClassCount();
+            abstractClasses[v] += jPackage.getAbstractClassCount();
+            volatility[v] = Math.max(volatility[v], jPackage.getVolatility());
+            cycle[v] = cycle[v] || !jPackage.getCycleComponent().isEmpty();
+        }
+
+        // sum the weights of the dependencies between nodes
+        Map<Long, int[]> weights = new HashMap<Long, int[]>();
+        for (int p = 0; p < n; p++) {
+            JavaPackage jPackage = list.get(p);
+            for (JavaPackage efferent : jPackage.getEfferents()) {
+                int from = node[p];
+                int to = node[ids.get(efferent.getName())];
+                if (from != to) {
+                    Long key = ((long) from << 32) | to;
+                    int[] weight = weights.get(key);
+                    if (weight == null) {
+                        weight = new int[1];
+                        weights.put(key, weight);
+                    }
+                    weight[0] += jPackage.getDependencyWeight(efferent);
+                }
+            }
+        }
+        long[] edges = new long[weights.size()];
+        int e = 0;
+        int[] ca = new int[nodeCount];
+        int[] ce = new int[nodeCount];
+        for (Long key : weights.keySet()) {
+            edges[e++] = key;
+            ce[(int) (key >>> 32)]++;
+            ca[(int) (long) key]++;
+        }
+        Arrays.sort(edges);
+
+        for (int v = 0; v < nodeCount; v++) {
+            if (nodeKeys[v] > 1) {
+                nodeNames[v] += " (+" + (nodeKeys[v] - 1) + ")";
+            }
+        }
+        e = 0;
+        for (int v = 0; v < nodeCount; v++) {
+            writeNode(new Node(nodeNames[v], classes[v], abstractClasses[v], ca[v], ce[v], volatility[v],
+                    cycle[v]));
+            for (; e < edges.length && (int) (edges[e] >>> 32) == v; e++) {
+                int to = (int) edges[e];
+                writeEdge(nodeNames[v], nodeNames[to], weights.get(edges[e])[0]);
+            }
+        }
+    }
+
+    private String toComponent(String packageName) {
+        if (components != null) {
+            for (String component : components) {
+                if (packageName.startsWith(component + ".")) {
+                    return component;
+                }
+            }
+        }
+        return packageName;
+    }
+
+    private static int find(int[] parent, int p) {
+        while (parent[p] != p) {
+            parent[p] = parent[parent[p]];
+            p = parent[p];
+        }
+        return p;
+    }
+
+    private static void union(int[] parent, int p, int q) {
+        int rootP = find(parent, p);
+        int rootQ = find(parent, q);
+        if (rootP != rootQ) {
+            parent[Math.max(rootP, rootQ)] = Math.min(rootP, rootQ);
+        }
+    }
+
+    protected String toFormattedString(float f) {
+        return formatter.format(f);
+    }
+
+    /**
+     * Writes the start of the graph.
+     */
+    protected abstract void startGraph();
+
+    /**
+     * Writes a node of the graph.
+     *
+     * @param node Node.
+     */
+    protected abstract void writeNode(Node node);
+
+    /**
+     * Writes a dependency between two nodes which were written before or
+     * are written later.
+     *
+     * @param from   Name of the depending node.
+     * @param to     Name of the node depended upon.
+     * @param weight Number of classes of the depending node which
+     *               depend upon the other one.
+     */
+    protected abstract void writeEdge(String from, String to, int weight);
+
+    /**
+     * Writes the end of the graph.
+     */
+    protected abstract void endGraph();
+
+    /**
+     * A node of the graph: a package, or packages collapsed into one.
+     * The metrics are computed as those of <code>JavaPackage</code>.
+     */
+    protected static final class Node {
+        private final String name;
+        private final int classCount;
+        private final int abstractClassCount;
+        private final int afferentCoupling;
+        private final int efferentCoupling;
+        private final int volatility;
+        private final boolean cycle;
+
+        Node(String name, int classCount, int abstractClassCount, int afferentCoupling, int efferentCoupling,
+             int volatility, boolean cycle) {
+            this.name = name;
+            this.classCount = classCount;
+            this.abstractClassCount = abstractClassCount;
+            this.afferentCoupling = afferentCoupling;
+            this.efferentCoupling = efferentCoupling;
+            this.volatility = volatility;
+            this.cycle = cycle;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getClassCount() {
+            return classCount;
+        }
+
+        public int getAbstractClassCount() {
+            return abstractClassCount;
+        }
+
+        public int afferentCoupling() {
+            return afferentCoupling;
+        }
+
+        public int efferentCoupling() {
+            return efferentCoupling;
+        }
+
+        public float abstractness() {
+            return classCount > 0 ? (float) abstractClassCount / (float) classCount : 0;
+        }
+
+        public float instability() {
+            float totalCoupling = (float) efferentCoupling + (float) afferentCoupling;
+            return totalCoupling > 0 ? efferentCoupling / totalCoupling : 0;
+        }
+
+        public float distance() {
+            return Math.abs(abstractness() + instability() - 1) * volatility;
+        }
+
+        /**
+         * @return <code>true</code> if a package of the node is part of a
+         * package dependency cycle.
+         */
+        public boolean isInCycle() {
+            return cycle;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package jdepend.graphui;
+
+import jdepend.framework.JavaPackage;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The <code>JDepend</code> class analyzes directories of Java class files
+ * and writes the package dependency graph in the DOT language of
+ * Graphviz or, with <code>-graphml</code>, in GraphML.
+ * <p>
+ * With <code>-collapse</code>, the packages of each dependency cycle are
+ * collapsed into one node. The packages of the components set with
+ * <code>-components</code> are collapsed by the analysis. All other
+ * options are those of the textual UI.
+ * </p>
+ */
+
+public class JDepend extends jdepend.textui.JDepend {
+
+    private boolean graphML;
+    private boolean collapseCycles;
+
+    /**
+     * Constructs a <code>JDepend</code> instance using standard output.
+     */
+    public JDepend() {
+        this(new PrintWriter(System.out));
+    }
+
+    /**
+     * Constructs a <code>JDepend</code> instance with the specified writer.
+     *
+     * @param writer Writer.
+     */
+    public JDepend(PrintWriter writer) {
+        super(writer);
+    }
+
+    /**
+     * Determines whether the graph is written in GraphML instead of DOT.
+     *
+     * @param b <code>true</code> to write GraphML; <code>false</code>
+     *          to write DOT.
+     */
+    public void writeGraphML(boolean b) {
+        graphML = b;
+    }
+
+    /**
+     * Determines whether the packages of each dependency cycle are
+     * collapsed into one node.
+     *
+     * @param b <code>true</code> to collapse cycles; <code>false</code>
+     *          otherwise.
+     */
+    public void collapseCycles(boolean b) {
+        collapseCycles = b;
+    }
+
+    protected void report(Collection<JavaPackage> packages) {
+        GraphWriter writer = graphML ? new GraphMLWriter(getWriter()) : new DotWriter(getWriter());
+        writer.collapseCycles(collapseCycles);
+        writer.write(packages);
+    }
+
+    protected void usage(String message) {
+        if (message != null) {
+            System.err.println("\n" + message);
+        }
+        String baseUsage = "\nJDepend ";
+
+        System.err.println("");
+        System.err.println("usage: ");
+        System.err.println(baseUsage + "[-graphml] [-collapse] [-components <components>]" +
+                " [-threads <threads>] [-cache <cache file>] [-watch] [-compact] [-dropimports]" +
+                " [-export <export file>] [-file <output file>] <directory> [directory2 [directory 3] ...]");
+        System.exit(1);
+    }
+
+    protected void instanceMain(String[] args) {
+        List<String> options = new ArrayList<String>();
+        for (String arg : args) {
+            if (arg.equalsIgnoreCase("-graphml")) {
+                writeGraphML(true);
+            } else if (arg.equalsIgnoreCase("-collapse")) {
+                collapseCycles(true);
+            } else {
+                options.add(arg);
+            }
+        }
+        super.instanceMain(options.toArray(new String[options.size()]));
+    }
+
+    /**
+     * Main.
+     */
+    public static void main(String args[]) {
+        new JDepend().instanceMain(args);
+    }
+}
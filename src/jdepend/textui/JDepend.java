@@ -1,19 +1,26 @@
 package jdepend.textui;
 
+import jdepend.framework.AnalysisCache;
+import jdepend.framework.DirectoryWatcher;
 import jdepend.framework.JavaClass;
 import jdepend.framework.JavaPackage;
 import jdepend.framework.PackageComparator;
 import jdepend.framework.PackageFilter;
 
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * The <code>JDepend</code> class analyzes directories of Java class files,
@@ -32,6 +39,14 @@ public class JDepend {
 
     protected NumberFormat formatter;
 
+    private boolean showWeights;
+
+    private File outputFile;
+
+    private File exportFile;
+
+    private Map<JavaPackage, List<JavaPackage>> collectedCycles;
+
     /**
      * Constructs a <code>JDepend</code> instance using standard output.
      */
@@ -82,6 +97,61 @@ public class JDepend {
         analyzer.setComponents(components);
     }
 
+    /**
+     * Sets the number of threads used to parse the class files.
+     *
+     * @param threads Number of parser threads.
+     */
+    public void setThreads(int threads) {
+        analyzer.setThreads(threads);
+    }
+
+    /**
+     * Sets the file in which parsed classes are cached between runs.
+     *
+     * @param cacheFile Cache file.
+     */
+    public void setCacheFile(File cacheFile) {
+        analyzer.setCache(new AnalysisCache(cacheFile));
+    }
+
+    /**
+     * Determines whether the weight of each dependency, the number of
+     * classes of the depending package which import the other one, is
+     * reported next to the package names of the efferents and afferents.
+     *
+     * @param b <code>true</code> to report the weights; <code>false</code>
+     *          otherwise.
+     */
+    public void showWeights(boolean b) {
+        showWeights = b;
+    }
+
+    /**
+     * Determines whether the analysis is kept in a compact package graph,
+     * for class paths whose classes do not fit into the heap otherwise.
+     * The watch mode does not use it.
+     *
+     * @param b <code>true</code> to use a compact package graph;
+     *          <code>false</code> otherwise.
+     */
+    public void compactPackages(boolean b) {
+        analyzer.compactPackages(b);
+    }
+
+    /**
+     * Determines whether the analyzed classes keep their imported
+     * packages. Dropping them bounds the memory of an analysis by the
+     * number of packages; the reports are the same. The watch mode
+     * always retains them.
+     *
+     * @param b <code>true</code> to retain the imported packages of the
+     *          classes; <code>false</code> otherwise.
+     */
+    public void retainClassImports(boolean b) {
+        analyzer.retainClassImports(b);
+    }
+
     /**
      * Adds the specified directory name to the collection of directories to be
      * analyzed.
@@ -108,7 +178,96 @@ public class JDepend {
      * package, and reports the metrics.
      */
     public void analyze() {
-        List<JavaPackage> packageList = new ArrayList<JavaPackage>(analyzer.analyze());
+        report(analyzer.analyze());
+        exportPackages();
+    }
+
+    /**
+     * Analyzes the registered directories and reports the metrics, then
+     * watches the directories and reports the metrics again after each
+     * change. Only the changed class files and archives are parsed
+     * again; a burst of changes, such as a compiler run, is reported
+     * once. If an output file is set, it is rewritten with each report.
+     * <p>
+     * This method only returns if the watch fails.
+     * </p>
+     *
+     * @throws IOException          If the directories cannot be watched.
+     * @throws InterruptedException If the thread is interrupted.
+     */
+    public void watch() throws IOException, InterruptedException {
+        analyzer.compactPackages(false);
+        analyzer.retainClassImports(true);
+
+        DirectoryWatcher watcher = new DirectoryWatcher(analyzer.getDirectories());
+        try {
+            report(analyzer.analyze());
+            closeOutputFile();
+            exportPackages();
+            while (true) {
+                Collection<File> changes = watcher.awaitChanges();
+                if (outputFile != null) {
+                    setOutputFile(outputFile);
+                }
+                report(analyzer.reanalyze(changes));
+                closeOutputFile();
+                exportPackages();
+            }
+        } finally {
+            watcher.close();
+        }
+    }
+
+    /**
+     * Sets the file the reports are written to, in UTF-8. If the file
+     * name ends with <code>.gz</code>, the reports are compressed with
+     * gzip, and the file is only complete once the writer is closed.
+     *
+     * @param file Output file.
+     * @throws IOException If the file cannot be created.
+     */
+    public void setOutputFile(File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        if (file.getName().endsWith(".gz")) {
+            out = new GZIPOutputStream(out, 65536);
+        }
+        setWriter(new PrintWriter(new OutputStreamWriter(out, "UTF8")));
+        outputFile = file;
+    }
+
+    /**
+     * Sets the file the analyzed packages are exported to in the binary
+     * format of <code>AnalysisExport</code>, along with each report.
+     *
+     * @param file Export file, or <code>null</code> to export nothing.
+     */
+    public void setExportFile(File file) {
+        exportFile = file;
+    }
+
+    private void exportPackages() {
+        if (exportFile != null) {
+            try {
+                analyzer.exportPackages(exportFile);
+            } catch (IOException ioe) {
+                System.err.println("\n" + ioe.getMessage());
+            }
+        }
+    }
+
+    private void closeOutputFile() {
+        if (outputFile != null) {
+            getWriter().close();
+        }
+    }
+
+    /**
+     * Reports the metrics of the specified packages.
+     *
+     * @param packages Analyzed packages.
+     */
+    protected void report(Collection<JavaPackage> packages) {
+        List<JavaPackage> packageList = new ArrayList<JavaPackage>(packages);
 
         Collections.sort(packageList, new PackageComparator(PackageComparator.byName()));
 
@@ -196,7 +355,11 @@ public class JDepend {
         List<JavaPackage> efferents = new ArrayList<JavaPackage>(jPackage.getEfferents());
         Collections.sort(efferents, new PackageComparator(PackageComparator.byName()));
         for (JavaPackage efferent : efferents) {
-            printPackageName(efferent);
+            if (showWeights) {
+                printPackageName(efferent, jPackage.getDependencyWeight(efferent));
+            } else {
+                printPackageName(efferent);
+            }
         }
         if (efferents.size() == 0) {
             printEfferentsError();
@@ -211,7 +374,11 @@ public class JDepend {
         List<JavaPackage> afferents = new ArrayList<JavaPackage>(jPackage.getAfferents());
         Collections.sort(afferents, new PackageComparator(PackageComparator.byName()));
         for (JavaPackage afferent : afferents) {
-            printPackageName(afferent);
+            if (showWeights) {
+                printPackageName(afferent, afferent.getDependencyWeight(jPackage));
+            } else {
+                printPackageName(afferent);
+            }
         }
         if (afferents.size() == 0) {
             printAfferentsError();
@@ -220,25 +387,66 @@ public class JDepend {
         printAfferentsFooter();
     }
 
+    /**
+     * Prints the first dependency cycle path of each of the specified
+     * packages which reaches a cycle, in the order of the packages,
+     * through <code>printCycle(JavaPackage)</code>. The paths are
+     * collected beforehand by the analyzer, in parallel if it uses
+     * several threads.
+     *
+     * @param packages Analyzed packages.
+     */
     protected void printCycles(Collection<JavaPackage> packages) {
         printCyclesHeader();
 
-        for (JavaPackage aPackage : packages) {
-            printCycle(aPackage);
+        List<JavaPackage> list = new ArrayList<JavaPackage>(packages);
+        List<List<JavaPackage>> cycles = analyzer.collectCycles(list);
+        collectedCycles = new HashMap<JavaPackage, List<JavaPackage>>();
+        for (int i = 0; i < list.size(); i++) {
+            collectedCycles.put(list.get(i), cycles.get(i));
+        }
+        try {
+            for (JavaPackage aPackage : list) {
+                printCycle(aPackage);
+            }
+        } finally {
+            collectedCycles = null;
         }
 
         printCyclesFooter();
     }
 
+    /**
+     * Prints the first dependency cycle path of the specified package,
+     * if it reaches a cycle. The path collected by
+     * <code>printCycles()</code> is used if there is one.
+     *
+     * @param jPackage Package.
+     */
     protected void printCycle(JavaPackage jPackage) {
 
-        List<JavaPackage> list = new ArrayList<JavaPackage>();
-        jPackage.collectCycle(list);
+        List<JavaPackage> list = collectedCycles == null ? null : collectedCycles.get(jPackage);
+        if (list == null) {
+            if (!jPackage.containsCycle()) {
+                return;
+            }
+            list = new ArrayList<JavaPackage>();
+            jPackage.collectCycle(list);
+        }
 
-        if (!jPackage.containsCycle()) {
-            return;
+        if (!list.isEmpty()) {
+            printCycle(list);
         }
+    }
 
+    /**
+     * Prints a dependency cycle path as collected by
+     * <code>JavaPackage.collectCycle()</code>.
+     *
+     * @param list Packages of the path, the last one being the first
+     *             package of the cycle reached.
+     */
+    protected void printCycle(List<JavaPackage> list) {
         JavaPackage cyclePackage = list.get(list.size() - 1);
         String cyclePackageName = cyclePackage.getName();
 
@@ -314,6 +522,10 @@ public class JDepend {
         getWriter().println(tab() + jPackage.getName());
     }
 
+    protected void printPackageName(JavaPackage jPackage, int weight) {
+        getWriter().println(tab() + jPackage.getName() + " (" + weight + ")");
+    }
+
     protected void printAbstractClassesHeader() {
         getWriter().println("Abstract Classes:");
     }
@@ -434,6 +646,7 @@ public class JDepend {
         System.err.println("");
         System.err.println("usage: ");
         System.err.println(baseUsage + "[-components <components>]" +
+                " [-threads <threads>] [-cache <cache file>] [-weights] [-watch] [-compact] [-dropimports] [-export <export file>]" +
                 " [-file <output file>] <directory> " +
                 "[directory2 [directory 3] ...]");
         System.exit(1);
@@ -446,6 +659,7 @@ public class JDepend {
         }
 
         int directoryCount = 0;
+        boolean watch = false;
 
         for (int i = 0; i < args.length; i++) {
             if (args[i].startsWith("-")) {
@@ -456,8 +670,7 @@ public class JDepend {
                     }
 
                     try {
-                        setWriter(new PrintWriter(new OutputStreamWriter(
-                                new FileOutputStream(args[++i]), "UTF8")));
+                        setOutputFile(new File(args[++i]));
                     } catch (IOException ioe) {
                         usage(ioe.getMessage());
                     }
@@ -467,6 +680,33 @@ public class JDepend {
                         usage("Components not specified.");
                     }
                     setComponents(args[++i]);
+                } else if (args[i].equalsIgnoreCase("-threads")) {
+                    if (args.length <= i + 1) {
+                        usage("Number of threads not specified.");
+                    }
+                    try {
+                        setThreads(Integer.parseInt(args[++i]));
+                    } catch (IllegalArgumentException iae) {
+                        usage("Invalid number of threads: " + args[i]);
+                    }
+                } else if (args[i].equalsIgnoreCase("-cache")) {
+                    if (args.length <= i + 1) {
+                        usage("Cache file name not specified.");
+                    }
+                    setCacheFile(new File(args[++i]));
+                } else if (args[i].equalsIgnoreCase("-weights")) {
+                    showWeights(true);
+                } else if (args[i].equalsIgnoreCase("-watch")) {
+                    watch = true;
+                } else if (args[i].equalsIgnoreCase("-compact")) {
+                    compactPackages(true);
+                } else if (args[i].equalsIgnoreCase("-dropimports")) {
+                    retainClassImports(false);
+                } else if (args[i].equalsIgnoreCase("-export")) {
+                    if (args.length <= i + 1) {
+                        usage("Export file name not specified.");
+                    }
+                    setExportFile(new File(args[++i]));
                 } else {
                     usage("Invalid argument: " + args[i]);
                 }
@@ -484,7 +724,19 @@ public class JDepend {
             usage("Must specify at least one directory.");
         }
 
-        analyze();
+        if (watch) {
+            try {
+                watch();
+            } catch (IOException ioe) {
+                System.err.println("\n" + ioe.getMessage());
+                System.exit(1);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            analyze();
+            closeOutputFile();
+        }
     }
 
     public static void main(String args[]) {
@@ -12,6 +12,12 @@ import java.util.Locale;
  * The <code>JDepend</code> class analyzes directories of Java class files,
  * generates metrics for each Java package, and reports the metrics in an XML
  * format.
+ * <p>
+ * The report is written element by element with an <code>XMLWriter</code>
+ * as the packages are reported, so that its size is not limited by
+ * memory. If the output file name ends with <code>.gz</code>, the report
+ * is compressed with gzip.
+ * </p>
  *
  * @author <b>Mike Clark</b>
  * @author Clarkware Consulting, Inc.
@@ -19,6 +25,8 @@ import java.util.Locale;
 
 public class JDepend extends jdepend.textui.JDepend {
 
+    private XMLWriter xml;
+
     /**
      * Constructs a <code>JDepend</code> instance using standard output.
      */
@@ -38,102 +46,105 @@ public class JDepend extends jdepend.textui.JDepend {
         formatter.setMaximumFractionDigits(2);
     }
 
+    /**
+     * Returns the XML writer for the current output writer.
+     *
+     * @return XML writer.
+     */
+    protected XMLWriter getXMLWriter() {
+        if (xml == null || xml.getWriter() != getWriter()) {
+            xml = new XMLWriter(getWriter(), tab());
+        }
+        return xml;
+    }
+
     protected void printHeader() {
-        getWriter().println("<?xml version=\"1.0\"?>");
-        getWriter().println("<JDepend>");
+        getXMLWriter().startDocument();
+        getXMLWriter().startElement("JDepend");
     }
 
     protected void printFooter() {
-        getWriter().println("</JDepend>");
+        getXMLWriter().endElement();
     }
 
     protected void printPackagesHeader() {
-        getWriter().println(tab() + "<Packages>");
+        getXMLWriter().startElement("Packages");
     }
 
     protected void printPackagesFooter() {
-        getWriter().println(tab() + "</Packages>");
+        getXMLWriter().endElement();
     }
 
     protected void printPackageHeader(JavaPackage jPackage) {
         printSectionBreak();
-        getWriter().println(
-                tab(2) + "<Package name=\"" + jPackage.getName() + "\">");
+        getXMLWriter().startElement("Package");
+        getXMLWriter().attribute("name", jPackage.getName());
     }
 
     protected void printPackageFooter(JavaPackage jPackage) {
-        getWriter().println(tab(2) + "</Package>");
+        getXMLWriter().endElement();
     }
 
     protected void printNoStats() {
-        getWriter().println(
-                tab(3) + "<error>No stats available: "
-                        + "package referenced, but not analyzed.</error>");
+        getXMLWriter().element("error",
+                "No stats available: package referenced, but not analyzed.");
     }
 
     protected void printStatistics(JavaPackage jPackage) {
-        getWriter().println(tab(3) + "<Stats>");
-        getWriter().println(
-                tab(4) + "<TotalClasses>" + jPackage.getClassCount()
-                        + "</TotalClasses>");
-        getWriter().println(
-                tab(4) + "<ConcreteClasses>" + jPackage.getConcreteClassCount()
-                        + "</ConcreteClasses>");
-        getWriter().println(
-                tab(4) + "<AbstractClasses>" + jPackage.getAbstractClassCount()
-                        + "</AbstractClasses>");
-        getWriter().println(
-                tab(4) + "<Ca>" + jPackage.afferentCoupling() + "</Ca>");
-        getWriter().println(
-                tab(4) + "<Ce>" + jPackage.efferentCoupling() + "</Ce>");
-        getWriter().println(
-                tab(4) + "<A>" + toFormattedString(jPackage.abstractness())
-                        + "</A>");
-        getWriter().println(
-                tab(4) + "<I>" + toFormattedString(jPackage.instability())
-                        + "</I>");
-        getWriter().println(
-                tab(4) + "<D>" + toFormattedString(jPackage.distance())
-                        + "</D>");
-        getWriter().println(tab(4) + "<V>" + jPackage.getVolatility() + "</V>");
-        getWriter().println(tab(3) + "</Stats>");
+        XMLWriter xml = getXMLWriter();
+        xml.startElement("Stats");
+        xml.element("TotalClasses", jPackage.getClassCount());
+        xml.element("ConcreteClasses", jPackage.getConcreteClassCount());
+        xml.element("AbstractClasses", jPackage.getAbstractClassCount());
+        xml.element("Ca", jPackage.afferentCoupling());
+        xml.element("Ce", jPackage.efferentCoupling());
+        xml.element("A", toFormattedString(jPackage.abstractness()));
+        xml.element("I", toFormattedString(jPackage.instability()));
+        xml.element("D", toFormattedString(jPackage.distance()));
+        xml.element("V", jPackage.getVolatility());
+        xml.endElement();
     }
 
     protected void printClassName(JavaClass jClass) {
-        getWriter().println(
-                tab(4) + "<Class sourceFile=\"" + jClass.getSourceFile()
-                        + "\">");
-        getWriter().println(tab(5) + jClass.getName());
-        getWriter().println(tab(4) + "</Class>");
+        getXMLWriter().startElement("Class");
+        getXMLWriter().attribute("sourceFile", jClass.getSourceFile());
+        getXMLWriter().textLine(jClass.getName());
+        getXMLWriter().endElement();
     }
 
     protected void printPackageName(JavaPackage jPackage) {
-        getWriter().println(
-                tab(4) + "<Package>" + jPackage.getName() + "</Package>");
+        getXMLWriter().element("Package", jPackage.getName());
+    }
+
+    protected void printPackageName(JavaPackage jPackage, int weight) {
+        getXMLWriter().startElement("Package");
+        getXMLWriter().attribute("weight", weight);
+        getXMLWriter().text(jPackage.getName());
+        getXMLWriter().endElement();
     }
 
     protected void printAbstractClassesHeader() {
-        getWriter().println(tab(3) + "<AbstractClasses>");
+        getXMLWriter().startElement("AbstractClasses");
     }
 
     protected void printAbstractClassesFooter() {
-        getWriter().println(tab(3) + "</AbstractClasses>");
+        getXMLWriter().endElement();
     }
 
     protected void printConcreteClassesHeader() {
-        getWriter().println(tab(3) + "<ConcreteClasses>");
+        getXMLWriter().startElement("ConcreteClasses");
     }
 
     protected void printConcreteClassesFooter() {
-        getWriter().println(tab(3) + "</ConcreteClasses>");
+        getXMLWriter().endElement();
     }
 
     protected void printEfferentsHeader() {
-        getWriter().println(tab(3) + "<DependsUpon>");
+        getXMLWriter().startElement("DependsUpon");
     }
 
     protected void printEfferentsFooter() {
-        getWriter().println(tab(3) + "</DependsUpon>");
+        getXMLWriter().endElement();
     }
 
     protected void printEfferentsError() {
@@ -141,11 +152,11 @@ public class JDepend extends jdepend.textui.JDepend {
     }
 
     protected void printAfferentsHeader() {
-        getWriter().println(tab(3) + "<UsedBy>");
+        getXMLWriter().startElement("UsedBy");
     }
 
     protected void printAfferentsFooter() {
-        getWriter().println(tab(3) + "</UsedBy>");
+        getXMLWriter().endElement();
     }
 
     protected void printAfferentsError() {
@@ -154,20 +165,20 @@ public class JDepend extends jdepend.textui.JDepend {
 
     protected void printCyclesHeader() {
         printSectionBreak();
-        getWriter().println(tab() + "<Cycles>");
+        getXMLWriter().startElement("Cycles");
     }
 
     protected void printCyclesFooter() {
-        getWriter().println(tab() + "</Cycles>");
+        getXMLWriter().endElement();
     }
 
     protected void printCycleHeader(JavaPackage jPackage) {
-        getWriter().println(
-                tab(2) + "<Package Name=\"" + jPackage.getName() + "\">");
+        getXMLWriter().startElement("Package");
+        getXMLWriter().attribute("Name", jPackage.getName());
     }
 
     protected void printCycleFooter() {
-        getWriter().println(tab(2) + "</Package>");
+        getXMLWriter().endElement();
         printSectionBreak();
     }
 
@@ -176,8 +187,11 @@ public class JDepend extends jdepend.textui.JDepend {
     }
 
     protected void printCycleContributor(JavaPackage jPackage) {
-        getWriter().println(
-                tab(3) + "<Package>" + jPackage.getName() + "</Package>");
+        getXMLWriter().element("Package", jPackage.getName());
+    }
+
+    protected void printSectionBreak() {
+        getXMLWriter().blankLine();
     }
 
     protected void printSummary(Collection packages) {
@@ -0,0 +1,238 @@
+package jdepend.xmlui;
+
+import java.io.PrintWriter;
+
+/**
+ * The <code>XMLWriter</code> class writes an XML document element by
+ * element to a <code>PrintWriter</code>, without building the document
+ * or its lines in memory.
+ * <p>
+ * Each element starts on a new line, indented by its depth. An element
+ * whose content is written with <code>text()</code> is closed on the
+ * same line; all others are closed on a line of their own. Attribute
+ * values and text are escaped while they are written: runs of
+ * characters which need no escaping are passed to the writer as they
+ * are.
+ * </p>
+ * <blockquote>
+ * <pre>
+ * XMLWriter xml = new XMLWriter(writer, "    ");
+ * xml.startDocument();
+ * xml.startElement("Package");
+ * xml.attribute("name", "jdepend.framework");
+ * xml.element("Ca", 3);
+ * xml.endElement();
+ * </pre>
+ * </blockquote>
+ */
+
+public class XMLWriter {
+
+    private final PrintWriter writer;
+    private final String indent;
+    private final String lineSeparator;
+    private String[] elements;
+    private int depth;
+    private boolean startTagOpen;
+    private boolean inline;
+
+
+    /**
+     * Constructs an <code>XMLWriter</code> with the specified writer and
+     * indentation.
+     *
+     * @param writer Writer.
+     * @param indent Indentation of each level.
+     */
+    public XMLWriter(PrintWriter writer, String indent) {
+        this.writer = writer;
+        this.indent = indent;
+        this.lineSeparator = System.getProperty("line.separator");
+        this.elements = new String[16];
+    }
+
+    public PrintWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * Returns the number of elements which are started but not ended.
+     *
+     * @return Depth of the next element.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Writes the XML declaration.
+     */
+    public void startDocument() {
+        writer.write("<?xml version=\"1.0\"?>");
+        writer.write(lineSeparator);
+    }
+
+    /**
+     * Starts an element on a new line. Its attributes are written next.
+     *
+     * @param name Element name.
+     */
+    public void startElement(String name) {
+        closeStartTag(true);
+        writeIndent(depth);
+        writer.write('<');
+        writer.write(name);
+        if (depth == elements.length) {
+            String[] grown = new String[depth * 2];
+            System.arraycopy(elements, 0, grown, 0, depth);
+            elements = grown;
+        }
+        elements[depth++] = name;
+        startTagOpen = true;
+        inline = false;
+    }
+
+    /**
+     * Writes an attribute of the element just started.
+     *
+     * @param name  Attribute name.
+     * @param value Attribute value.
+     */
+    public void attribute(String name, String value) {
+        if (!startTagOpen) {
+            throw new IllegalStateException("Attribute " + name + " outside of a start tag");
+        }
+        writer.write(' ');
+        writer.write(name);
+        writer.write("=\"");
+        escape(value, true);
+        writer.write('"');
+    }
+
+    public void attribute(String name, int value) {
+        attribute(name, String.valueOf(value));
+    }
+
+    /**
+     * Writes text into the current element, on the line of its start tag.
+     *
+     * @param text Text.
+     */
+    public void text(String text) {
+        closeStartTag(false);
+        escape(text, false);
+        inline = true;
+    }
+
+    /**
+     * Writes text into the current element, on a line of its own.
+     *
+     * @param text Text.
+     */
+    public void textLine(String text) {
+        closeStartTag(true);
+        writeIndent(depth);
+        escape(text, false);
+        writer.write(lineSeparator);
+    }
+
+    /**
+     * Ends the current element.
+     */
+    public void endElement() {
+        if (depth == 0) {
+            throw new IllegalStateException("No element to end");
+        }
+        String name = elements[--depth];
+        elements[depth] = null;
+        if (inline) {
+            inline = false;
+        } else {
+            closeStartTag(true);
+            writeIndent(depth);
+        }
+        writer.write("</");
+        writer.write(name);
+        writer.write('>');
+        writer.write(lineSeparator);
+    }
+
+    /**
+     * Writes an element with the specified text on a single line.
+     *
+     * @param name Element name.
+     * @param text Text.
+     */
+    public void element(String name, String text) {
+        startElement(name);
+        text(text);
+        endElement();
+    }
+
+    public void element(String name, int value) {
+        element(name, String.valueOf(value));
+    }
+
+    /**
+     * Writes an empty line.
+     */
+    public void blankLine() {
+        closeStartTag(true);
+        writer.write(lineSeparator);
+    }
+
+    public void flush() {
+        writer.flush();
+    }
+
+    private void closeStartTag(boolean newLine) {
+        if (startTagOpen) {
+            writer.write('>');
+            if (newLine) {
+                writer.write(lineSeparator);
+            }
+            startTagOpen = false;
+        } else if (inline && newLine) {
+            throw new IllegalStateException("Element " + elements[depth - 1] + " has inline text");
+        }
+    }
+
+    private void writeIndent(int level) {
+        for (int i = 0; i < level; i++) {
+            writer.write(indent);
+        }
+    }
+
+    private void escape(String s, boolean attribute) {
+        if (s == null) {
+            s = "null";
+        }
+        int start = 0;
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            String entity;
+            switch (s.charAt(i)) {
+                case '<':
+                    entity = "&lt;";
+                    break;
+                case '>':
+                    entity = "&gt;";
+                    break;
+                case '&':
+                    entity = "&amp;";
+                    break;
+                case '"':
+                    entity = attribute ? "&quot;" : null;
+                    break;
+                default:
+                    entity = null;
+            }
+            if (entity != null) {
+                writer.write(s, start, i - start);
+                writer.write(entity);
+                start = i + 1;
+            }
+        }
+        writer.write(s, start, length - start);
+    }
+}
@@ -0,0 +1,206 @@
+package jdepend.framework;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AnalysisCacheTest extends JDependTestCase {
+
+    private File dir;
+    private File cacheFile;
+
+    @Before
+    public void createDirectory() throws IOException {
+        dir = File.createTempFile("jdepend", "");
+        dir.delete();
+        dir.mkdir();
+        cacheFile = new File(dir, "jdepend.cache");
+    }
+
+    @After
+    public void deleteDirectory() {
+        delete(dir);
+    }
+
+    @Test
+    public void cachedBuildMatchesParsedBuild() throws IOException {
+        AnalysisCache cache = new AnalysisCache(cacheFile);
+        List<JavaClass> parsed = build(cache, 1, getTestBuildDir(), getTestDataDir() + "test.jar");
+        assertEquals(0, cache.countHits());
+        assertEquals(parsed.size(), cache.countMisses());
+        assertTrue(cacheFile.isFile());
+
+        cache = new AnalysisCache(cacheFile);
+        List<JavaClass> cached = build(cache, 1, getTestBuildDir(), getTestDataDir() + "test.jar");
+        assertEquals(parsed.size(), cache.countHits());
+        assertEquals(0, cache.countMisses());
+        assertSameClasses(parsed, cached);
+
+        cache = new AnalysisCache(cacheFile);
+        cached = build(cache, 3, getTestBuildDir(), getTestDataDir() + "test.jar");
+        assertEquals(parsed.size(), cache.countHits());
+        assertSameClasses(parsed, cached);
+    }
+
+    @Test
+    public void scannedCountsAreCached() throws IOException {
+        copy("ExampleConcreteClass.class");
+        List<JavaClass> parsed = build(new AnalysisCache(cacheFile), 1, false, dir.getPath());
+        assertEquals(0, parsed.get(0).getDependencyCount(new JavaPackage("java.net"), DependencyKind.NEW));
+
+        AnalysisCache cache = new AnalysisCache(cacheFile);
+        parsed = build(cache, 1, true, dir.getPath());
+        assertEquals(0, cache.countHits());
+        assertEquals(1, parsed.get(0).getDependencyCount(new JavaPackage("java.net"), DependencyKind.NEW));
+
+        cache = new AnalysisCache(cacheFile);
+        List<JavaClass> cached = build(cache, 1, true, dir.getPath());
+        assertEquals(1, cache.countHits());
+        assertSameClasses(parsed, cached);
+        JavaClass e = parsed.get(0);
+        JavaClass a = cached.get(0);
+        for (JavaPackage imported : e.getImportedPackages()) {
+            for (DependencyKind kind : DependencyKind.values()) {
+                assertEquals(e.getDependencyCount(imported, kind), a.getDependencyCount(imported, kind));
+            }
+        }
+    }
+
+    @Test
+    public void classReferencesAreCached() throws IOException {
+        copy("ExampleConcreteClass.class");
+        ClassTable classTable = new ClassTable();
+        List<JavaClass> parsed = build(new AnalysisCache(cacheFile), classTable, dir.getPath());
+
+        AnalysisCache cache = new AnalysisCache(cacheFile);
+        List<JavaClass> cached = build(cache, classTable, dir.getPath());
+        assertEquals(1, cache.countHits());
+        assertTrue(parsed.get(0).getClassReferences().length > 0);
+        assertArrayEquals(parsed.get(0).getClassReferences(), cached.get(0).getClassReferences());
+
+        cache = new AnalysisCache(cacheFile);
+        build(cache, 1, dir.getPath());
+        assertEquals(0, cache.countHits());
+    }
+
+    @Test
+    public void changedClassFileIsParsedAgain() throws IOException {
+        File classFile = copy("ExampleConcreteClass.class");
+        copy("ExampleInterface.class");
+
+        AnalysisCache cache = new AnalysisCache(cacheFile);
+        build(cache, 1, dir.getPath());
+        assertEquals(2, cache.countMisses());
+
+        classFile.setLastModified(classFile.lastModified() - 10000);
+        build(cache, 1, dir.getPath());
+        assertEquals(1, cache.countHits());
+        assertEquals(1, cache.countMisses());
+    }
+
+    @Test
+    public void contentHashIgnoresModificationTime() throws IOException {
+        File classFile = copy("ExampleConcreteClass.class");
+
+        AnalysisCache cache = new AnalysisCache(cacheFile);
+        cache.useContentHash(true);
+        build(cache, 1, dir.getPath());
+        assertEquals(1, cache.countMisses());
+
+        classFile.setLastModified(classFile.lastModified() - 10000);
+        List<JavaClass> classes = build(cache, 1, dir.getPath());
+        assertEquals(1, cache.countHits());
+        assertEquals("jdepend.framework.ExampleConcreteClass", classes.get(0).getName());
+    }
+
+    @Test
+    public void otherFilterDiscardsCache() throws IOException {
+        copy("ExampleConcreteClass.class");
+        build(new AnalysisCache(cacheFile), 1, dir.getPath());
+
+        FileManager fm = new FileManager();
+        fm.addDirectory(dir.getPath());
+        JavaClassBuilder builder = new JavaClassBuilder(new ClassFileParser(PackageFilter.all().excluding("java.")), fm);
+        AnalysisCache cache = new AnalysisCache(cacheFile);
+        builder.setCache(cache);
+        builder.build();
+        assertEquals(0, cache.countHits());
+        assertEquals(1, cache.countMisses());
+    }
+
+    @Test
+    public void deletedFilesAreDropped() throws IOException {
+        File classFile = copy("ExampleConcreteClass.class");
+        copy("ExampleInterface.class");
+        AnalysisCache cache = new AnalysisCache(cacheFile);
+        build(cache, 1, dir.getPath());
+
+        classFile.delete();
+        build(cache, 1, dir.getPath());
+        long size = cacheFile.length();
+
+        copy("ExampleConcreteClass.class");
+        build(cache, 1, dir.getPath());
+        assertEquals(1, cache.countHits());
+        assertEquals(1, cache.countMisses());
+        assertTrue(cacheFile.length() > size);
+    }
+
+    private List<JavaClass> build(AnalysisCache cache, int threads, String... paths) throws IOException {
+        return build(cache, threads, false, paths);
+    }
+
+    private List<JavaClass> build(AnalysisCache cache, int threads, boolean scanCode, String... paths)
+            throws IOException {
+        FileManager fm = new FileManager();
+        for (String path : paths) {
+            fm.addDirectory(path);
+        }
+        ClassFileParser parser = new ClassFileParser(PackageFilter.all());
+        parser.scanCode(scanCode);
+        JavaClassBuilder builder = new JavaClassBuilder(parser, fm);
+        builder.setThreads(threads);
+        builder.setCache(cache);
+        return new ArrayList<JavaClass>(builder.build());
+    }
+
+    private List<JavaClass> build(AnalysisCache cache, ClassTable classTable, String path) throws IOException {
+        FileManager fm = new FileManager();
+        fm.addDirectory(path);
+        ClassFileParser parser = new ClassFileParser(PackageFilter.all());
+        parser.setClassTable(classTable);
+        JavaClassBuilder builder = new JavaClassBuilder(parser, fm);
+        builder.setCache(cache);
+        return new ArrayList<JavaClass>(builder.build());
+    }
+
+    private void assertSameClasses(List<JavaClass> expected, List<JavaClass> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            JavaClass e = expected.get(i);
+            JavaClass a = actual.get(i);
+            assertEquals(e.getName(), a.getName());
+            assertEquals(e.getPackageName(), a.getPackageName());
+            assertEquals(e.isAbstract(), a.isAbstract());
+            assertEquals(e.getSourceFile(), a.getSourceFile());
+            assertEquals(new HashSet<JavaPackage>(e.getImportedPackages()),
+                    new HashSet<JavaPackage>(a.getImportedPackages()));
+        }
+    }
+
+    private File copy(String name) throws IOException {
+        File target = new File(dir, name);
+        copy(new File(getTestBuildDir() + getPackageSubDir() + name), target);
+        return target;
+    }
+}
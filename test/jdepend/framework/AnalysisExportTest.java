@@ -0,0 +1,136 @@
+package jdepend.framework;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+public class AnalysisExportTest extends JDependTestCase {
+
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("jdepend", ".bin");
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void importedPackagesMatchAnalysis() throws IOException {
+        JDepend expected = analyzer(false);
+        expected.getPackage("jdepend.framework").setVolatility(0);
+        expected.exportPackages(file);
+
+        JDepend actual = new JDepend();
+        actual.importPackages(file);
+        assertSameAnalysis(expected, actual);
+    }
+
+    @Test
+    public void compactPackagesAreExported() throws IOException {
+        JDepend expected = analyzer(false);
+        analyzer(true).exportPackages(file);
+
+        JDepend actual = new JDepend();
+        actual.importPackages(file);
+        assertSameAnalysis(expected, actual);
+    }
+
+    @Test
+    public void analysisReplacesImportedPackages() throws IOException {
+        analyzer(false).exportPackages(file);
+
+        JDepend actual = new JDepend();
+        actual.importPackages(file);
+        actual.addDirectory(getBuildDir());
+        actual.addDirectory(getTestBuildDir());
+        actual.scanCode(true);
+        actual.analyze();
+        assertSameAnalysis(analyzer(false), actual);
+    }
+
+    @Test
+    public void emptyAnalysis() throws IOException {
+        AnalysisExport.write(new ArrayList<JavaPackage>(), file);
+        assertEquals(0, AnalysisExport.read(file).size());
+    }
+
+    @Test
+    public void otherVersionsAreRejected() throws IOException {
+        analyzer(false).exportPackages(file);
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.seek(4);
+            out.writeInt(AnalysisExport.VERSION + 1);
+        } finally {
+            out.close();
+        }
+        try {
+            AnalysisExport.read(file);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    private JDepend analyzer(boolean compact) throws IOException {
+        JDepend jdepend = new JDepend();
+        jdepend.addDirectory(getBuildDir());
+        jdepend.addDirectory(getTestBuildDir());
+        jdepend.scanCode(true);
+        jdepend.compactPackages(compact);
+        jdepend.analyze();
+        return jdepend;
+    }
+
+    private static void assertSameAnalysis(JDepend expected, JDepend actual) {
+        assertEquals(new HashSet<String>(names(expected.getPackages())), new HashSet<String>(names(actual.getPackages())));
+        for (JavaPackage e : expected.getPackages()) {
+            JavaPackage a = actual.getPackage(e.getName());
+            String name = e.getName();
+            assertNotNull(name, a);
+            assertEquals(name, classNames(e.getClasses()), classNames(a.getClasses()));
+            assertEquals(name, names(e.getEfferents()), names(a.getEfferents()));
+            assertEquals(name, new HashSet<String>(names(e.getAfferents())), new HashSet<String>(names(a.getAfferents())));
+            for (JavaPackage efferent : e.getEfferents()) {
+                assertEquals(name, e.getDependencyWeight(efferent), a.getDependencyWeight(efferent));
+                for (DependencyKind kind : DependencyKind.values()) {
+                    assertEquals(name, e.getDependencyCount(efferent, kind), a.getDependencyCount(efferent, kind));
+                }
+            }
+            assertEquals(name, e.getVolatility(), a.getVolatility());
+            assertEquals(name, e.distance(), a.distance(), 0);
+            assertEquals(name, e.containsCycle(), a.containsCycle());
+        }
+    }
+
+    private static List<String> names(Iterable<JavaPackage> packages) {
+        List<String> names = new ArrayList<String>();
+        for (JavaPackage jPackage : packages) {
+            names.add(jPackage.getName());
+        }
+        return names;
+    }
+
+    private static Set<String> classNames(Iterable<JavaClass> classes) {
+        Set<String> names = new HashSet<String>();
+        for (JavaClass clazz : classes) {
+            names.add(clazz.getName() + (clazz.isAbstract() ? " (abstract)" : ""));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,109 @@
+package jdepend.framework;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchAnalyzerTest extends JDependTestCase {
+
+    private File jar;
+
+    @Before
+    public void copyJar() throws IOException {
+        jar = File.createTempFile("copy", ".jar");
+        copy(new File(getTestDataDir() + "test.jar"), jar);
+    }
+
+    @After
+    public void deleteJar() {
+        jar.delete();
+    }
+
+    @Test
+    public void sharedFilesAreParsedOnce() throws IOException {
+        BatchAnalyzer batch = new BatchAnalyzer();
+        batch.addProject("copy", getBuildDir(), jar.getPath());
+        batch.addProject("original", getBuildDir(), getTestDataDir() + "test.jar");
+        batch.addProject("classes", getBuildDir());
+        Map<String, Collection<JavaPackage>> projects = batch.analyze();
+
+        FileManager fileManager = new FileManager();
+        fileManager.addDirectory(getBuildDir());
+        assertEquals(fileManager.extractFiles().size() + 1, batch.countParsedFiles());
+        assertEquals(3, projects.size());
+
+        assertSamePackages(analyze(getBuildDir(), jar.getPath()), projects.get("copy"));
+        assertSamePackages(analyze(getBuildDir(), getTestDataDir() + "test.jar"), projects.get("original"));
+        assertSamePackages(analyze(getBuildDir()), projects.get("classes"));
+        assertTrue(batch.getAnalysis("copy").getPackage("jdepend.framework").getClassCount()
+                > batch.getAnalysis("classes").getPackage("jdepend.framework").getClassCount());
+    }
+
+    @Test
+    public void projectsHaveTheirOwnPackages() throws IOException {
+        BatchAnalyzer batch = new BatchAnalyzer();
+        batch.addProject("a", getBuildDir());
+        batch.addProject("b", getBuildDir());
+        batch.analyze();
+
+        JavaPackage a = batch.getAnalysis("a").getPackage("jdepend.framework");
+        JavaPackage b = batch.getAnalysis("b").getPackage("jdepend.framework");
+        assertTrue(a != b);
+        assertEquals(a.afferentCoupling(), b.afferentCoupling());
+        for (JavaPackage efferent : a.getEfferents()) {
+            assertTrue(batch.getAnalysis("a").getPackage(efferent.getName()) == efferent);
+        }
+    }
+
+    @Test
+    public void sharedClassesKeepTheConfiguredRetainMode() throws IOException {
+        JDepend jdepend = new JDepend();
+        jdepend.retainClassImports(false);
+        File file = new File(getTestDataDir() + "test.jar");
+        jdepend.analyzeClasses(file, new JavaClassBuilder(new FileManager()).buildClasses(file));
+
+        jdepend.addDirectory(getBuildDir());
+        jdepend.analyze();
+        for (JavaClass jClass : jdepend.getPackage("jdepend.textui").getClasses()) {
+            assertTrue(jClass.getImportedPackages().isEmpty());
+        }
+    }
+
+    private Collection<JavaPackage> analyze(String... directories) throws IOException {
+        JDepend jdepend = new JDepend();
+        for (String directory : directories) {
+            jdepend.addDirectory(directory);
+        }
+        return jdepend.analyze();
+    }
+
+    private static void assertSamePackages(Collection<JavaPackage> expected, Collection<JavaPackage> actual) {
+        assertEquals(summary(expected), summary(actual));
+    }
+
+    private static Map<String, String> summary(Collection<JavaPackage> packages) {
+        Map<String, String> summary = new TreeMap<String, String>();
+        for (JavaPackage p : packages) {
+            StringBuilder s = new StringBuilder();
+            s.append(p.getClassCount()).append(' ').append(p.getAbstractClassCount());
+            s.append(' ').append(p.afferentCoupling()).append(' ').append(p.efferentCoupling());
+            s.append(' ').append(p.containsCycle());
+            Map<String, Integer> weights = new TreeMap<String, Integer>();
+            for (JavaPackage efferent : p.getEfferents()) {
+                weights.put(efferent.getName(), p.getDependencyWeight(efferent));
+            }
+            s.append(' ').append(weights);
+            summary.put(p.getName(), s.toString());
+        }
+        return summary;
+    }
+}
@@ -0,0 +1,101 @@
+package jdepend.framework;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs the <code>ClassFileParserTest</code> against the
+ * <code>ByteBufferClassFileParser</code> and compares both parsers.
+ */
+
+public class ByteBufferClassFileParserTest extends ClassFileParserTest {
+
+    @Override
+    protected AbstractParser createParser(PackageFilter filter) {
+        return new ByteBufferClassFileParser(filter);
+    }
+
+    @Test
+    public void sameImportsAsClassFileParser() throws IOException {
+        FileManager fm = new FileManager();
+        fm.addDirectory(getBuildDir());
+        fm.addDirectory(getTestBuildDir());
+
+        ClassFileParser expectedParser = new ClassFileParser(PackageFilter.all());
+        ByteBufferClassFileParser actualParser = new ByteBufferClassFileParser(PackageFilter.all());
+
+        for (File file : fm.extractFiles()) {
+            if (!fm.acceptClassFile(file)) {
+                continue;
+            }
+            JavaClass expected = expectedParser.parse(file);
+            JavaClass actual = actualParser.parse(file);
+            assertSameClass(expected, actual);
+        }
+    }
+
+    @Test
+    public void sameCountsAsClassFileParser() throws IOException {
+        FileManager fm = new FileManager();
+        fm.addDirectory(getBuildDir());
+        fm.addDirectory(getTestBuildDir());
+
+        ClassFileParser expectedParser = new ClassFileParser(PackageFilter.all());
+        expectedParser.scanCode(true);
+        ByteBufferClassFileParser actualParser = new ByteBufferClassFileParser(PackageFilter.all());
+        actualParser.scanCode(true);
+
+        for (File file : fm.extractFiles()) {
+            if (!fm.acceptClassFile(file)) {
+                continue;
+            }
+            JavaClass expected = expectedParser.parse(file);
+            JavaClass actual = actualParser.parse(file);
+            assertSameClass(expected, actual);
+            for (JavaPackage imported : expected.getImportedPackages()) {
+                for (DependencyKind kind : DependencyKind.values()) {
+                    assertEquals(expected.getName() + " " + imported.getName() + " " + kind,
+                            expected.getDependencyCount(imported, kind), actual.getDependencyCount(imported, kind));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void directAndMappedBuffers() throws IOException {
+        File f = new File(getTestBuildDir() + getPackageSubDir() + "ExampleConcreteClass.class");
+        JavaClass expected = new ClassFileParser(PackageFilter.all()).parse(f);
+        ByteBufferClassFileParser parser = new ByteBufferClassFileParser(PackageFilter.all());
+
+        FileInputStream in = new FileInputStream(f);
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            assertSameClass(expected, parser.parse(mapped));
+            assertEquals(0, mapped.position());
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(mapped.capacity() + 3);
+            direct.put(new byte[3]).put(mapped).flip().position(3);
+            assertSameClass(expected, parser.parse(direct));
+        } finally {
+            in.close();
+        }
+    }
+
+    private void assertSameClass(JavaClass expected, JavaClass actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getPackageName(), actual.getPackageName());
+        assertEquals(expected.isAbstract(), actual.isAbstract());
+        assertEquals(expected.getSourceFile(), actual.getSourceFile());
+        assertEquals(new HashSet<JavaPackage>(expected.getImportedPackages()),
+                new HashSet<JavaPackage>(actual.getImportedPackages()));
+    }
+}
@@ -3,9 +3,13 @@ package jdepend.framework;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
+import java.util.EnumSet;
 
 import static org.junit.Assert.*;
 
@@ -16,12 +20,16 @@ import static org.junit.Assert.*;
 
 public class ClassFileParserTest extends JDependTestCase {
 
-    private ClassFileParser parser;
+    private AbstractParser parser;
 
     @Before
     public void setUp() {
         PackageFilter filter = PackageFilter.all();
-        parser = new ClassFileParser(filter);
+        parser = createParser(filter);
+    }
+
+    protected AbstractParser createParser(PackageFilter filter) {
+        return new ClassFileParser(filter);
     }
 
     @Test
@@ -123,6 +131,54 @@ public class ClassFileParserTest extends JDependTestCase {
         assertTrue(imports.contains(new JavaPackage("java.awt.dnd.peer")));
     }
 
+    @Test
+    public void scannedCode() throws IOException {
+        File f = new File(getTestBuildDir() + getPackageSubDir() + "ExampleConcreteClass.class");
+        parser.scanCode(true);
+        JavaClass clazz = parser.parse(f);
+
+        assertEquals(19, clazz.getImportedPackages().size());
+
+        JavaPackage net = new JavaPackage("java.net");
+        assertEquals(1, clazz.getDependencyCount(net, DependencyKind.NEW));
+        assertEquals(1, clazz.getDependencyCount(net, DependencyKind.INVOKE));
+        assertEquals(EnumSet.of(DependencyKind.REFERENCE, DependencyKind.NEW, DependencyKind.INVOKE),
+                clazz.getDependencyKinds(net));
+
+        assertEquals(EnumSet.of(DependencyKind.REFERENCE, DependencyKind.NEW),
+                clazz.getDependencyKinds(new JavaPackage("java.util.jar")));
+        assertEquals(EnumSet.of(DependencyKind.REFERENCE),
+                clazz.getDependencyKinds(new JavaPackage("java.sql")));
+        assertEquals(EnumSet.of(DependencyKind.ANNOTATION),
+                clazz.getDependencyKinds(new JavaPackage("javax.crypto")));
+    }
+
+    @Test
+    public void unscannedCode() throws IOException {
+        File f = new File(getTestBuildDir() + getPackageSubDir() + "ExampleConcreteClass.class");
+        JavaClass clazz = parser.parse(f);
+
+        assertEquals(0, clazz.getDependencyCount(new JavaPackage("java.net"), DependencyKind.NEW));
+        assertTrue(clazz.getDependencyKinds(new JavaPackage("java.net")).isEmpty());
+    }
+
+    @Test
+    public void invisibleAnnotations() throws IOException {
+        byte[] bytes = readInvisibleAnnotations("ExampleConcreteClass.class");
+
+        JavaClass clazz = parser.parse(new ByteArrayInputStream(bytes));
+        assertFalse(clazz.getImportedPackages().contains(new JavaPackage("javax.crypto")));
+        assertFalse(clazz.getImportedPackages().contains(new JavaPackage("java.applet")));
+
+        parser.scanCode(true);
+        clazz = parser.parse(new ByteArrayInputStream(bytes));
+        assertEquals(19, clazz.getImportedPackages().size());
+        assertEquals(EnumSet.of(DependencyKind.ANNOTATION),
+                clazz.getDependencyKinds(new JavaPackage("javax.crypto")));
+        assertEquals(EnumSet.of(DependencyKind.ANNOTATION),
+                clazz.getDependencyKinds(new JavaPackage("java.applet")));
+    }
+
     @Test
     public void innerClass() throws IOException {
 
@@ -185,5 +241,56 @@ public class ClassFileParserTest extends JDependTestCase {
         assertEquals(11,generic.getImportedPackages().size());
         assertEquals(1,subGeneric.getImportedPackages().size());
     }
-}
 
+    /*
+     * Returns the class file with its runtime visible annotations
+     * renamed to invisible ones. Only the name constant is changed, so
+     * that all other constants keep their indexes.
+     */
+    private byte[] readInvisibleAnnotations(String name) throws IOException {
+        InputStream in = new FileInputStream(getTestBuildDir() + getPackageSubDir() + name);
+        byte[] bytes;
+        try {
+            bytes = new byte[in.available()];
+            int n = 0;
+            while (n < bytes.length) {
+                n += in.read(bytes, n, bytes.length - n);
+            }
+        } finally {
+            in.close();
+        }
+
+        byte[] visible = utf8Constant("RuntimeVisibleAnnotations");
+        byte[] invisible = utf8Constant("RuntimeInvisibleAnnotations");
+        for (int i = 0; i <= bytes.length - visible.length; i++) {
+            if (regionMatches(bytes, i, visible)) {
+                byte[] result = new byte[bytes.length + invisible.length - visible.length];
+                System.arraycopy(bytes, 0, result, 0, i);
+                System.arraycopy(invisible, 0, result, i, invisible.length);
+                System.arraycopy(bytes, i + visible.length, result, i + invisible.length,
+                        bytes.length - i - visible.length);
+                return result;
+            }
+        }
+        throw new IOException("No annotations in " + name);
+    }
+
+    private static byte[] utf8Constant(String s) {
+        byte[] constant = new byte[s.length() + 3];
+        constant[0] = 1;
+        constant[2] = (byte) s.length();
+        for (int i = 0; i < s.length(); i++) {
+            constant[i + 3] = (byte) s.charAt(i);
+        }
+        return constant;
+    }
+
+    private static boolean regionMatches(byte[] bytes, int offset, byte[] region) {
+        for (int i = 0; i < region.length; i++) {
+            if (bytes[offset + i] != region[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
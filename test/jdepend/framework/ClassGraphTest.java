@@ -0,0 +1,211 @@
+package jdepend.framework;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ClassGraphTest extends JDependTestCase {
+
+    @Test
+    public void rowsAreSortedAndMerged() {
+        ClassTable table = new ClassTable();
+        int a = table.idOf("a.A");
+        int b = table.idOf("b.B");
+        int c = table.idOf("c.C");
+        int d = table.idOf("d.D");
+
+        ClassGraph.Builder builder = new ClassGraph.Builder(table);
+        builder.add(a, new int[]{c, b});
+        builder.add(c, new int[]{a});
+        builder.add(a, new int[]{b, d});
+        ClassGraph graph = builder.build();
+
+        assertEquals(4, graph.size());
+        assertEquals(4, graph.edgeCount());
+        assertArrayEquals(new int[]{b, c, d}, graph.getDependencies(a));
+        assertArrayEquals(new int[]{a}, graph.getDependencies(c));
+        assertArrayEquals(new int[0], graph.getDependencies(b));
+        assertArrayEquals(new int[]{c}, graph.getDependents(a));
+        assertArrayEquals(new int[]{a}, graph.getDependents(b));
+        assertEquals(3, graph.dependencyCount(a));
+        assertEquals(1, graph.dependentCount(d));
+        assertEquals(c, graph.idOf("c.C"));
+        assertEquals(-1, graph.idOf("e.E"));
+        assertEquals("d.D", graph.nameOf(d));
+    }
+
+    @Test
+    public void reachability() {
+        ClassGraph graph = chain(5, true);
+
+        assertTrue(graph.reaches(0, 4));
+        assertTrue(graph.reaches(2, 1));
+        assertFalse(graph.reaches(4, 0));
+        assertFalse(graph.reaches(4, 4));
+        assertArrayEquals(new int[]{1, 2, 3, 4}, graph.getReachable(0));
+        assertArrayEquals(new int[]{1, 2, 3, 4}, graph.getReachable(1));
+        assertArrayEquals(new int[0], graph.getReachable(4));
+    }
+
+    @Test
+    public void components() {
+        // 0 -> 1 -> 2 -> 3 -> 4 with 2 -> 1
+        ClassGraph graph = chain(5, true);
+
+        assertFalse(graph.isInCycle(0));
+        assertTrue(graph.isInCycle(1));
+        assertTrue(graph.isInCycle(2));
+        assertFalse(graph.isInCycle(3));
+        assertArrayEquals(new int[]{1, 2}, graph.getComponent(2));
+        assertArrayEquals(new int[]{3}, graph.getComponent(3));
+
+        int[] components = graph.getComponents();
+        assertEquals(components[1], components[2]);
+        assertTrue(components[0] > components[1]);
+        assertTrue(components[1] > components[3]);
+        assertTrue(components[3] > components[4]);
+    }
+
+    @Test
+    public void deepGraph() {
+        ClassGraph graph = chain(200000, false);
+
+        assertTrue(graph.reaches(0, 199999));
+        assertEquals(199999, graph.getReachable(0).length);
+        assertFalse(graph.isInCycle(100000));
+    }
+
+    @Test
+    public void randomGraph() {
+        int classes = 20000;
+        int edges = 200000;
+        ClassTable table = new ClassTable();
+        for (int i = 0; i < classes; i++) {
+            table.idOf("p" + (i % 100) + ".C" + i);
+        }
+        Random random = new Random(42);
+        ClassGraph.Builder builder = new ClassGraph.Builder(table);
+        int[][] rows = new int[classes][];
+        for (int i = 0; i < classes; i++) {
+            rows[i] = new int[edges / classes];
+            for (int n = 0; n < rows[i].length; n++) {
+                rows[i][n] = random.nextInt(classes);
+            }
+            builder.add(i, rows[i]);
+        }
+        ClassGraph graph = builder.build();
+
+        int edgeCount = 0;
+        int dependentCount = 0;
+        for (int i = 0; i < classes; i++) {
+            int[] expected = unique(rows[i]);
+            assertArrayEquals(expected, graph.getDependencies(i));
+            for (int target : expected) {
+                assertTrue(Arrays.binarySearch(graph.getDependents(target), i) >= 0);
+            }
+            edgeCount += expected.length;
+            dependentCount += graph.dependentCount(i);
+        }
+        assertEquals(edgeCount, graph.edgeCount());
+        assertEquals(edgeCount, dependentCount);
+        assertTrue(graph.isInCycle(0));
+    }
+
+    @Test
+    public void analyzedClasses() throws IOException {
+        JDepend jdepend = new JDepend();
+        jdepend.addDirectory(getTestBuildDir());
+        jdepend.collectClassGraph(true);
+        jdepend.analyze();
+        ClassGraph graph = jdepend.getClassGraph();
+
+        int concrete = graph.idOf("jdepend.framework.ExampleConcreteClass");
+        assertTrue(concrete >= 0);
+        assertDependsOn(graph, concrete, "jdepend.framework.ExampleAbstractClass");
+        assertDependsOn(graph, concrete, "java.net.URL");
+        assertDependsOn(graph, concrete, "java.io.File");
+        assertDependsOn(graph, concrete, "java.sql.Statement");
+        assertDependsOn(graph, concrete, "jdepend.framework.ExampleAnnotation");
+        assertDependsOn(graph, concrete, "jdepend.framework.p2.ExampleEnum");
+        assertDependsOn(graph, concrete, "java.awt.geom.AffineTransform");
+        assertDependsOn(graph, concrete, "jdepend.framework.ExampleConcreteClass$ExampleInnerClass");
+        assertFalse(Arrays.binarySearch(graph.getDependencies(concrete), concrete) >= 0);
+
+        int generic = graph.idOf("jdepend.framework.p4.GenericParameters");
+        assertDependsOn(graph, generic, "jdepend.framework.p4.p2.Type2");
+        assertDependsOn(graph, generic, "jdepend.framework.p4.p4.Type4");
+
+        int abstractClass = graph.idOf("jdepend.framework.ExampleAbstractClass");
+        assertTrue(Arrays.binarySearch(graph.getDependents(abstractClass), concrete) >= 0);
+        assertTrue(graph.reaches(concrete, graph.idOf("java.lang.Object")));
+    }
+
+    @Test
+    public void classGraphIsOptional() throws IOException {
+        JDepend jdepend = new JDepend();
+        jdepend.addDirectory(getTestBuildDir());
+        jdepend.analyze();
+        assertNull(jdepend.getClassGraph());
+    }
+
+    @Test
+    public void parsersCollectSameClasses() throws IOException {
+        ClassFileParser expectedParser = new ClassFileParser(PackageFilter.all());
+        expectedParser.setClassTable(new ClassTable());
+        ByteBufferClassFileParser actualParser = new ByteBufferClassFileParser(PackageFilter.all());
+        actualParser.setClassTable(expectedParser.getClassTable());
+
+        FileManager fm = new FileManager();
+        fm.addDirectory(getBuildDir());
+        fm.addDirectory(getTestBuildDir());
+        int classes = 0;
+        for (File file : fm.extractFiles()) {
+            if (fm.acceptClassFile(file)) {
+                JavaClass expected = expectedParser.parse(file);
+                JavaClass actual = actualParser.parse(file);
+                assertArrayEquals(expected.getName(), expected.getClassReferences(), actual.getClassReferences());
+                classes++;
+            }
+        }
+        assertTrue(classes > 0);
+    }
+
+    private static void assertDependsOn(ClassGraph graph, int id, String className) {
+        int target = graph.idOf(className);
+        assertTrue(className, target >= 0);
+        assertTrue(className, Arrays.binarySearch(graph.getDependencies(id), target) >= 0);
+    }
+
+    /*
+     * A chain of classes, each depending on the next one, with a cycle
+     * between the second and the third one.
+     */
+    private static ClassGraph chain(int length, boolean cycle) {
+        ClassTable table = new ClassTable();
+        for (int i = 0; i < length; i++) {
+            table.idOf("p.C" + i);
+        }
+        ClassGraph.Builder builder = new ClassGraph.Builder(table);
+        for (int i = 0; i + 1 < length; i++) {
+            builder.add(i, cycle && i == 2 ? new int[]{1, i + 1} : new int[]{i + 1});
+        }
+        return builder.build();
+    }
+
+    private static int[] unique(int[] ids) {
+        int[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, count);
+    }
+}
@@ -52,13 +52,13 @@ public class ComponentTest extends JDependTestCase {
     private void assertJDependPackage() {
         JavaPackage p = jdepend.getPackage("jdepend");
         assertEquals("jdepend", p.getName());
-        assertEquals(48, p.getConcreteClassCount());
-        assertEquals(10, p.getAbstractClassCount());
+        assertEquals(80, p.getConcreteClassCount());
+        assertEquals(11, p.getAbstractClassCount());
         assertEquals(0, p.afferentCoupling());
         assertEquals(5, p.efferentCoupling());
-        assertEquals(format(0.17f), format(p.abstractness()));
+        assertEquals(format(0.12f), format(p.abstractness()));
         assertEquals("1", format(p.instability()));
-        assertEquals(format(0.17f), format(p.distance()));
+        assertEquals(format(0.12f), format(p.distance()));
         assertEquals(1, p.getVolatility());
 
         Collection efferents = p.getEfferents();
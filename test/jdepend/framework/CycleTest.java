@@ -3,10 +3,13 @@ package jdepend.framework;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 /**
  * @author <b>Mike Clark</b>
@@ -173,6 +176,165 @@ public class CycleTest extends JDependTestCase {
         assertListEquals(eCycles, new String[]{"E", "A", "B", "C", "A"});
     }
 
+    @Test
+    public void deepGraph() {
+        JavaPackage[] packages = new JavaPackage[5000];
+        for (int i = 0; i < packages.length; i++) {
+            packages[i] = new JavaPackage("P" + i);
+            if (i > 0) {
+                packages[i - 1].dependsUpon(packages[i]);
+            }
+        }
+
+        assertEquals(false, packages[0].containsCycle());
+        List<JavaPackage> cycle = new ArrayList<JavaPackage>();
+        assertEquals(false, packages[0].collectCycle(cycle));
+        assertEquals(0, cycle.size());
+
+        packages[packages.length - 1].dependsUpon(packages[packages.length - 2]);
+
+        assertEquals(true, packages[0].containsCycle());
+        assertEquals(true, packages[0].collectCycle(cycle));
+        assertEquals(packages.length + 1, cycle.size());
+        assertEquals(packages[packages.length - 2], cycle.get(cycle.size() - 1));
+
+        List<JavaPackage> allCycles = new ArrayList<JavaPackage>();
+        assertEquals(true, packages[0].collectAllCycles(allCycles));
+        assertEquals(packages.length + 1, allCycles.size());
+    }
+
+    @Test
+    public void sameCyclesAsExhaustiveSearch() {
+        Random random = new Random(42);
+        for (int graph = 0; graph < 200; graph++) {
+            JavaPackage[] packages = new JavaPackage[2 + random.nextInt(8)];
+            for (int i = 0; i < packages.length; i++) {
+                packages[i] = new JavaPackage("P" + i);
+            }
+            int edges = random.nextInt(packages.length * 2);
+            for (int i = 0; i < edges; i++) {
+                packages[random.nextInt(packages.length)].dependsUpon(packages[random.nextInt(packages.length)]);
+            }
+
+            for (JavaPackage p : packages) {
+                List<JavaPackage> expected = new ArrayList<JavaPackage>();
+                List<JavaPackage> actual = new ArrayList<JavaPackage>();
+                assertEquals(searchCycle(p, expected), p.collectCycle(actual));
+                assertEquals(expected, actual);
+                assertEquals(searchCycle(p, new ArrayList<JavaPackage>()), p.containsCycle());
+
+                expected.clear();
+                actual.clear();
+                assertEquals(searchAllCycles(p, expected), p.collectAllCycles(actual));
+                assertEquals(expected, actual);
+
+                JavaPackage other = packages[random.nextInt(packages.length)];
+                expected = new ArrayList<JavaPackage>(Collections.singletonList(other));
+                actual = new ArrayList<JavaPackage>(Collections.singletonList(other));
+                assertEquals(searchCycle(p, expected), p.collectCycle(actual));
+                assertEquals(expected, actual);
+
+                expected = new ArrayList<JavaPackage>(Collections.singletonList(other));
+                actual = new ArrayList<JavaPackage>(Collections.singletonList(other));
+                assertEquals(searchAllCycles(p, expected), p.collectAllCycles(actual));
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void graphsAreInvalidatedSeparately() {
+        JavaPackage a = new JavaPackage("A");
+        JavaPackage b = new JavaPackage("B");
+        a.dependsUpon(b);
+        b.dependsUpon(a);
+        JavaPackage c = new JavaPackage("C");
+        JavaPackage d = new JavaPackage("D");
+        c.dependsUpon(d);
+
+        assertEquals(true, a.containsCycle());
+        CycleDetector.Info info = a.cycleInfo;
+        assertEquals(false, c.containsCycle());
+
+        d.dependsUpon(new JavaPackage("E"));
+        assertSame(info, a.cycleInfo);
+        assertEquals(true, a.containsCycle());
+        assertSame(info, a.cycleInfo);
+
+        d.dependsUpon(a);
+        assertEquals(true, c.containsCycle());
+        assertListEquals(c.getCycleComponent(), new String[]{});
+        assertListEquals(a.getCycleComponent(), new String[]{"A", "B"});
+    }
+
+    @Test
+    public void parallelCyclesMatchCollectCycle() {
+        Random random = new Random(7);
+        List<JavaPackage> packages = new ArrayList<JavaPackage>();
+        for (int i = 0; i < 1000; i++) {
+            packages.add(new JavaPackage("P" + i));
+        }
+        for (int i = 0; i < 1500; i++) {
+            packages.get(random.nextInt(packages.size())).dependsUpon(packages.get(random.nextInt(packages.size())));
+        }
+
+        JDepend jdepend = new JDepend();
+        jdepend.setThreads(4);
+        List<List<JavaPackage>> cycles = jdepend.collectCycles(packages);
+        jdepend.setThreads(1);
+        assertEquals(cycles, jdepend.collectCycles(packages));
+
+        assertEquals(packages.size(), cycles.size());
+        int found = 0;
+        for (int i = 0; i < packages.size(); i++) {
+            List<JavaPackage> expected = new ArrayList<JavaPackage>();
+            assertEquals(packages.get(i).collectCycle(expected), !cycles.get(i).isEmpty());
+            assertEquals(expected, cycles.get(i));
+            if (!expected.isEmpty()) {
+                found++;
+            }
+        }
+        assertEquals(true, found > 0);
+    }
+
+    /*
+     * The exhaustive depth-first searches of JavaPackage.collectCycle()
+     * and JavaPackage.collectAllCycles().
+     */
+    private boolean searchCycle(JavaPackage p, List<JavaPackage> list) {
+        if (list.contains(p)) {
+            list.add(p);
+            return true;
+        }
+        list.add(p);
+        for (JavaPackage efferent : p.getEfferents()) {
+            if (searchCycle(efferent, list)) {
+                return true;
+            }
+        }
+        list.remove(p);
+        return false;
+    }
+
+    private boolean searchAllCycles(JavaPackage p, List<JavaPackage> list) {
+        if (list.contains(p)) {
+            list.add(p);
+            return true;
+        }
+        list.add(p);
+        boolean containsCycle = false;
+        for (JavaPackage efferent : p.getEfferents()) {
+            if (searchAllCycles(efferent, list)) {
+                containsCycle = true;
+            }
+        }
+        if (containsCycle) {
+            return true;
+        }
+        list.remove(p);
+        return false;
+    }
+
     protected void assertListEquals(List<JavaPackage> list, String names[]) {
         assertEquals(names.length, list.size());
 
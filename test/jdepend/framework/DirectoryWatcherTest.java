@@ -0,0 +1,101 @@
+package jdepend.framework;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DirectoryWatcherTest extends JDependTestCase {
+
+    private File dir;
+    private DirectoryWatcher watcher;
+
+    @Before
+    public void createDirectory() throws IOException {
+        dir = File.createTempFile("jdepend", "").getAbsoluteFile();
+        dir.delete();
+        dir.mkdir();
+        new File(dir, "a").mkdir();
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+        }
+        delete(dir);
+    }
+
+    @Test(timeout = 30000)
+    public void burstIsReportedOnce() throws Exception {
+        watcher = new DirectoryWatcher(Arrays.asList(dir));
+        File first = new File(dir, "a/A.class");
+        File second = new File(dir, "a/B.class");
+        write(first);
+        write(second);
+
+        Set<File> changes = awaitChanges(first, second);
+        assertTrue(changes.contains(first));
+        assertTrue(changes.contains(second));
+
+        first.delete();
+        assertEquals(new HashSet<File>(Arrays.asList(first)), awaitChanges(first));
+    }
+
+    @Test(timeout = 30000)
+    public void createdDirectoriesAreWatched() throws Exception {
+        watcher = new DirectoryWatcher(Arrays.asList(dir));
+        File created = new File(dir, "b");
+        created.mkdir();
+        awaitChanges(created);
+
+        File file = new File(created, "B.class");
+        write(file);
+        assertTrue(awaitChanges(file).contains(file));
+    }
+
+    @Test(timeout = 30000)
+    public void archivesAreWatched() throws Exception {
+        File jar = new File(dir, "a/lib.jar");
+        write(jar);
+        watcher = new DirectoryWatcher(Arrays.asList(jar));
+        watcher.setDelay(50);
+
+        write(new File(dir, "a/A.class"));
+        write(jar);
+        assertEquals(new HashSet<File>(Arrays.asList(jar)), awaitChanges(jar));
+    }
+
+    /*
+     * Collects changes until all the expected files were reported, as
+     * a slow file system may split a burst.
+     */
+    private Set<File> awaitChanges(File... expected) throws InterruptedException {
+        Set<File> changes = new HashSet<File>();
+        while (!changes.containsAll(Arrays.asList(expected))) {
+            Collection<File> next = watcher.awaitChanges();
+            assertTrue(!next.isEmpty());
+            changes.addAll(next);
+        }
+        return changes;
+    }
+
+    private static void write(File file) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[]{(byte) 0xCA, (byte) 0xFE});
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -117,6 +117,7 @@ public class ExampleTest {
         JavaPackage text = constraint.addPackage("jdepend.textui");
         JavaPackage xml = constraint.addPackage("jdepend.xmlui");
         JavaPackage swing = constraint.addPackage("jdepend.swingui");
+        JavaPackage graph = constraint.addPackage("jdepend.graphui");
         JavaPackage orgjunitrunners = constraint.addPackage("org.junit.runners");
         JavaPackage jdependframeworkp2 = constraint.addPackage("jdepend.framework.p2");
         JavaPackage jdependframeworkp3 = constraint.addPackage("jdepend.framework.p3");
@@ -139,6 +140,7 @@ public class ExampleTest {
         text.dependsUpon(framework);
         xml.dependsUpon(framework, text);
         swing.dependsUpon(framework);
+        graph.dependsUpon(framework, text, xml);
         framework.dependsUpon(jdependframeworkp1, jdependframeworkp2, jdependframeworkp3, orgjunitrunners, orgjunit);
         jdependframeworkp4.dependsUpon(jdependframeworkp4p1,jdependframeworkp4p2,jdependframeworkp4p4,jdependframeworkp4p5,
                 jdependframeworkp4p6,jdependframeworkp4p7,jdependframeworkp4p8,jdependframeworkp4p9,jdependframeworkp4p10);
@@ -5,6 +5,11 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
 
 import static org.junit.Assert.assertEquals;
 
@@ -32,7 +37,63 @@ public class FileManagerTest extends JDependTestCase {
     public void buildDirectory() throws IOException {
         fileManager.addDirectory(getBuildDir());
         fileManager.addDirectory(getTestBuildDir());
-        assertEquals(60, fileManager.extractFiles().size());
+        assertEquals(93, fileManager.extractFiles().size());
+    }
+
+    @Test
+    public void parallelTraversalMatchesSequentialTraversal() throws IOException {
+        fileManager.addDirectory(getBuildDir());
+        fileManager.addDirectory(getTestBuildDir());
+        fileManager.addDirectory(getTestDataDir());
+        List<File> sequential = new ArrayList<File>(fileManager.extractFiles());
+
+        fileManager.setThreads(4);
+        assertEquals(sequential, new ArrayList<File>(fileManager.extractFiles()));
+
+        fileManager.acceptInnerClasses(false);
+        List<File> parallel = new ArrayList<File>(fileManager.extractFiles());
+        fileManager.setThreads(1);
+        assertEquals(new ArrayList<File>(fileManager.extractFiles()), parallel);
+    }
+
+    @Test
+    public void filesAreSortedAndUnique() throws IOException {
+        fileManager.addDirectory(getTestBuildDir());
+        fileManager.addDirectory(getBuildDir());
+        fileManager.addDirectory(getBuildDir() + "jdepend");
+
+        List<File> files = new ArrayList<File>(fileManager.extractFiles());
+        assertEquals(new ArrayList<File>(new TreeSet<File>(files)), files);
+    }
+
+    @Test
+    public void symbolicLinkLoop() throws IOException {
+        File dir = File.createTempFile("loop", "");
+        dir.delete();
+        dir.mkdir();
+        try {
+            File classFile = new File(dir, "A.class");
+            classFile.createNewFile();
+            try {
+                Files.createSymbolicLink(new File(dir, "self").toPath(), dir.toPath());
+            } catch (UnsupportedOperationException e) {
+                return;
+            }
+            fileManager.addDirectory(dir.getPath());
+
+            assertEquals(Collections.singletonList(classFile), fileManager.extractFiles());
+            fileManager.setThreads(2);
+            assertEquals(Collections.singletonList(classFile), fileManager.extractFiles());
+        } finally {
+            new File(dir, "self").delete();
+            new File(dir, "A.class").delete();
+            dir.delete();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidThreads() {
+        fileManager.setThreads(0);
     }
 
     @Test(expected = IOException.class)
@@ -8,6 +8,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -64,6 +65,82 @@ public class FilterTest extends JDependTestCase {
         assertFalse(filter.accept("a.c"));
     }
 
+    @Test
+    public void acceptMatchesFirstEntry() {
+        Random random = new Random(7);
+        String[] parts = {"a", "b", "c", "ab", "org", "com"};
+        PackageFilter filter = PackageFilter.all();
+        for (int i = 0; i < 300; i++) {
+            String name = randomName(random, parts) + (random.nextBoolean() ? ".*" : "");
+            if (random.nextBoolean()) {
+                filter.including(name);
+            } else {
+                filter.excluding(name);
+            }
+        }
+
+        for (int i = 0; i < 5000; i++) {
+            String name = randomName(random, parts);
+            assertEquals(name, firstMatch(filter, name), filter.accept(name));
+            assertEquals(name, firstMatch(filter, name), filter.accept(name));
+        }
+    }
+
+    @Test
+    public void addedEntriesApply() {
+        PackageFilter filter = PackageFilter.all().excluding("a.b");
+        assertTrue(filter.accept("a"));
+        assertFalse(filter.accept("a.b.c"));
+
+        filter.excluding("a");
+        assertFalse(filter.accept("a"));
+        filter.getFilters().add(new PackageFilter.Filter("", false));
+        assertFalse(filter.accept("b"));
+        assertFalse(PackageFilter.all().excludingRest().including("x").accept("x.y"));
+    }
+
+    @Test
+    public void parsersApplyAddedEntries() throws IOException {
+        File f = new File(getTestBuildDir() + getPackageSubDir() + "ExampleConcreteClass.class");
+        PackageFilter filter = PackageFilter.all();
+        AbstractParser[] parsers = {new ClassFileParser(filter), new ByteBufferClassFileParser(filter)};
+        for (AbstractParser parser : parsers) {
+            assertTrue(importsPackage(parser.parse(f), "java.math"));
+        }
+
+        filter.excluding("java.math");
+        for (AbstractParser parser : parsers) {
+            assertFalse(importsPackage(parser.parse(f), "java.math"));
+            assertTrue(importsPackage(parser.parse(f), "java.sql"));
+        }
+    }
+
+    private static boolean importsPackage(JavaClass jClass, String packageName) {
+        for (JavaPackage jPackage : jClass.getImportedPackages()) {
+            if (jPackage.getName().equals(packageName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String randomName(Random random, String[] parts) {
+        StringBuilder name = new StringBuilder(parts[random.nextInt(parts.length)]);
+        for (int n = random.nextInt(4); n > 0; n--) {
+            name.append('.').append(parts[random.nextInt(parts.length)]);
+        }
+        return name.toString();
+    }
+
+    private static boolean firstMatch(PackageFilter filter, String packageName) {
+        for (PackageFilter.Filter f : filter.getFilters()) {
+            if (packageName.startsWith(f.name)) {
+                return f.include;
+            }
+        }
+        return true;
+    }
+
     private void assertFiltersExist(PackageFilter filter) {
         assertFalse(filter.accept("java.lang"));
         assertFalse(filter.accept("javax.ejb"));
@@ -0,0 +1,247 @@
+package jdepend.framework;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalAnalysisTest extends JDependTestCase {
+
+    private File dir;
+
+    @Before
+    public void createDirectory() throws IOException {
+        dir = File.createTempFile("jdepend", "");
+        dir.delete();
+        dir.mkdir();
+        copy(new File(getBuildDir()), dir);
+    }
+
+    @After
+    public void deleteDirectory() {
+        delete(dir);
+    }
+
+    @Test
+    public void reanalysisMatchesNewAnalysis() throws IOException {
+        JDepend jdepend = analyzer();
+        Collection<JavaPackage> packages = jdepend.analyze();
+        for (JavaPackage jPackage : packages) {
+            jPackage.containsCycle();
+        }
+        assertNotNull(jdepend.getPackage("jdepend.swingui"));
+
+        List<File> changed = new ArrayList<File>();
+        File swingui = new File(dir, "jdepend/swingui");
+        for (File file : swingui.listFiles()) {
+            changed.add(file);
+        }
+        delete(swingui);
+
+        File modified = new File(dir, "jdepend/framework/PackageComparator.class");
+        copy(new File(getBuildDir(), "jdepend/xmlui/JDepend.class"), modified);
+        changed.add(modified);
+
+        File added = new File(dir, "jdepend/framework/p1/ExampleInnerAnnotation.class");
+        added.getParentFile().mkdir();
+        copy(new File(getTestBuildDir(), "jdepend/framework/p1/ExampleInnerAnnotation.class"), added);
+        changed.add(added);
+
+        jdepend.reanalyze(changed);
+
+        JDepend expected = analyzer();
+        expected.analyze();
+        assertSameAnalysis(expected, jdepend);
+        assertNull(jdepend.getPackage("jdepend.swingui"));
+        assertNotNull(jdepend.getPackage("jdepend.framework.p1"));
+    }
+
+    @Test
+    public void reanalysisOfUnchangedFilesKeepsAnalysis() throws IOException {
+        JDepend jdepend = analyzer();
+        jdepend.analyze();
+
+        List<File> all = new ArrayList<File>();
+        collectFiles(dir, all);
+        jdepend.reanalyze(all);
+
+        JDepend expected = analyzer();
+        expected.analyze();
+        assertSameAnalysis(expected, jdepend);
+    }
+
+    @Test
+    public void reanalysisOfDirectories() throws IOException {
+        JDepend jdepend = analyzer();
+        jdepend.analyze();
+
+        File swingui = new File(dir, "jdepend/swingui");
+        delete(swingui);
+        File p1 = new File(dir, "jdepend/framework/p1");
+        copy(new File(getTestBuildDir(), "jdepend/framework/p1"), p1);
+        jdepend.reanalyze(Arrays.asList(swingui, p1));
+
+        JDepend expected = analyzer();
+        expected.analyze();
+        assertSameAnalysis(expected, jdepend);
+        assertNull(jdepend.getPackage("jdepend.swingui"));
+        assertNotNull(jdepend.getPackage("jdepend.framework.p1"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void reanalysisRequiresClassImports() throws IOException {
+        JDepend jdepend = new JDepend();
+        jdepend.addDirectory(dir.getPath());
+        jdepend.retainClassImports(false);
+        jdepend.analyze();
+        jdepend.reanalyze(Arrays.asList(new File(dir, "jdepend/framework/JDepend.class")));
+    }
+
+    @Test
+    public void explicitPackagesAreKept() throws IOException {
+        JDepend jdepend = new JDepend();
+        jdepend.addDirectory(dir.getPath());
+        jdepend.addPackage("jdepend.swingui");
+        jdepend.analyze();
+
+        File swingui = new File(dir, "jdepend/swingui");
+        List<File> deleted = Arrays.asList(swingui.listFiles());
+        delete(swingui);
+        jdepend.reanalyze(deleted);
+
+        JavaPackage jPackage = jdepend.getPackage("jdepend.swingui");
+        assertNotNull(jPackage);
+        assertEquals(0, jPackage.getClassCount());
+        assertEquals(0, jPackage.efferentCoupling());
+    }
+
+    @Test
+    public void removedDependencyBreaksCycle() {
+        JavaPackage a = new JavaPackage("A");
+        JavaPackage b = new JavaPackage("B");
+        JavaPackage c = new JavaPackage("C");
+        JavaPackage d = new JavaPackage("D");
+        JavaPackage e = new JavaPackage("E");
+        a.addImport(b, null);
+        b.addImport(c, null);
+        c.addImport(a, null);
+        c.addImport(a, null);
+        d.addImport(e, null);
+
+        assertTrue(a.containsCycle());
+        assertFalse(d.containsCycle());
+        CycleDetector.Info unrelated = d.cycleInfo;
+
+        c.removeImport(a, null);
+        assertTrue(c.containsCycle());
+        c.removeImport(a, null);
+        assertFalse(a.containsCycle());
+        assertFalse(b.containsCycle());
+        assertFalse(c.containsCycle());
+        assertEquals(0, c.getDependencyWeight(a));
+        assertEquals(0, a.afferentCoupling());
+        assertSame(unrelated, d.cycleInfo);
+
+        e.addImport(d, null);
+        assertTrue(d.containsCycle());
+        assertFalse(a.containsCycle());
+    }
+
+    @Test
+    public void removedDependencyCounts() {
+        JavaPackage a = new JavaPackage("A");
+        JavaPackage b = new JavaPackage("B");
+        int[] counts = new int[DependencyKind.values().length];
+        counts[DependencyKind.INVOKE.ordinal()] = 2;
+        a.addImport(b, counts);
+        a.addImport(b, counts);
+
+        a.removeImport(b, counts);
+        assertEquals(2, a.getDependencyCount(b, DependencyKind.INVOKE));
+        assertEquals(1, a.getDependencyWeight(b));
+        a.removeImport(b, counts);
+        assertEquals(0, a.getDependencyCount(b, DependencyKind.INVOKE));
+        assertFalse(a.getEfferents().contains(b));
+    }
+
+    private JDepend analyzer() throws IOException {
+        JDepend jdepend = new JDepend();
+        jdepend.addDirectory(dir.getPath());
+        jdepend.scanCode(true);
+        jdepend.collectClassGraph(true);
+        return jdepend;
+    }
+
+    private static void assertSameAnalysis(JDepend expected, JDepend actual) {
+        assertEquals(names(expected.getPackages()), names(actual.getPackages()));
+        for (JavaPackage e : expected.getPackages()) {
+            JavaPackage a = actual.getPackage(e.getName());
+            String name = e.getName();
+            assertEquals(name, classNames(e.getClasses()), classNames(a.getClasses()));
+            assertEquals(name, names(e.getEfferents()), names(a.getEfferents()));
+            assertEquals(name, names(e.getAfferents()), names(a.getAfferents()));
+            for (JavaPackage efferent : e.getEfferents()) {
+                assertEquals(name, e.getDependencyWeight(efferent), a.getDependencyWeight(efferent));
+                for (DependencyKind kind : DependencyKind.values()) {
+                    assertEquals(name, e.getDependencyCount(efferent, kind), a.getDependencyCount(efferent, kind));
+                }
+            }
+            assertEquals(name, e.abstractness(), a.abstractness(), 0);
+            assertEquals(name, e.instability(), a.instability(), 0);
+            assertEquals(name, e.distance(), a.distance(), 0);
+            assertEquals(name, e.containsCycle(), a.containsCycle());
+        }
+        assertEquals(edges(expected.getClassGraph()), edges(actual.getClassGraph()));
+    }
+
+    private static Set<String> names(Collection<JavaPackage> packages) {
+        Set<String> names = new HashSet<String>();
+        for (JavaPackage jPackage : packages) {
+            names.add(jPackage.getName());
+        }
+        return names;
+    }
+
+    private static Set<String> classNames(Collection<JavaClass> classes) {
+        Set<String> names = new HashSet<String>();
+        for (JavaClass clazz : classes) {
+            names.add(clazz.getName() + (clazz.isAbstract() ? " (abstract)" : ""));
+        }
+        return names;
+    }
+
+    private static Set<String> edges(ClassGraph graph) {
+        Set<String> edges = new HashSet<String>();
+        for (int id = 0; id < graph.size(); id++) {
+            for (int target : graph.getDependencies(id)) {
+                edges.add(graph.nameOf(id) + " -> " + graph.nameOf(target));
+            }
+        }
+        return edges;
+    }
+
+    private static void collectFiles(File file, List<File> files) {
+        if (file.isDirectory()) {
+            for (File child : file.listFiles()) {
+                collectFiles(child, files);
+            }
+        } else {
+            files.add(file);
+        }
+    }
+}
@@ -4,6 +4,11 @@ import org.junit.After;
 import org.junit.Before;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 import static org.junit.Assert.fail;
 
@@ -67,4 +72,45 @@ public class JDependTestCase {
     public String getPackageSubDir() {
         return packageSubDir;
     }
+
+    /**
+     * Copies the specified file, or directory with all its contents.
+     */
+    public static void copy(File from, File to) throws IOException {
+        if (from.isDirectory()) {
+            to.mkdir();
+            for (File child : from.listFiles()) {
+                copy(child, new File(to, child.getName()));
+            }
+            return;
+        }
+        InputStream in = new FileInputStream(from);
+        try {
+            OutputStream out = new FileOutputStream(to);
+            try {
+                byte[] buffer = new byte[8192];
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, n);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Deletes the specified file, or directory with all its contents.
+     */
+    public static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
 }
\ No newline at end of file
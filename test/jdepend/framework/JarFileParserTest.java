@@ -4,8 +4,14 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -100,6 +106,55 @@ public class JarFileParserTest extends JDependTestCase {
         assertEquals(8, jdepend.countClasses());
     }
 
+    @Test
+    public void truncatedJarFileAddsNoClasses() throws IOException {
+        File dir = File.createTempFile("truncated", "");
+        dir.delete();
+        dir.mkdir();
+        File file = new File(dir, "truncated.jar");
+        byte[] bytes = read(new File(getTestBuildDir() + getPackageSubDir() + "ExampleInterface.class"));
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            out.putNextEntry(new ZipEntry("jdepend/framework/ExampleInterface.class"));
+            out.write(bytes);
+            out.putNextEntry(new ZipEntry("jdepend/framework/Truncated.class"));
+            out.write(Arrays.copyOf(bytes, bytes.length / 2));
+        } finally {
+            out.close();
+        }
+
+        try {
+            for (int threads = 1; threads <= 4; threads += 3) {
+                FileManager fm = new FileManager();
+                fm.addDirectory(dir.getPath());
+                JavaClassBuilder builder = new JavaClassBuilder(fm);
+                builder.setThreads(threads);
+                assertEquals(0, builder.build().size());
+
+                JDepend jdepend = new JDepend();
+                jdepend.addDirectory(dir.getPath());
+                jdepend.setThreads(threads);
+                assertEquals(0, jdepend.analyze().size());
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private byte[] read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] bytes = new byte[(int) file.length()];
+            int n = 0;
+            while (n < bytes.length) {
+                n += in.read(bytes, n, bytes.length - n);
+            }
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+
     private void assertClassesExist(Collection classes) {
         assertTrue(classes.contains(new JavaClass("jdepend.framework.ExampleAbstractClass")));
         assertTrue(classes.contains(new JavaClass("jdepend.framework.ExampleInterface")));
@@ -0,0 +1,151 @@
+package jdepend.framework;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class JavaClassBuilderTest extends JDependTestCase {
+
+    @Test
+    public void parallelBuildMatchesSequentialBuild() throws IOException {
+        List<JavaClass> sequential = build(1);
+        List<JavaClass> parallel = build(4);
+
+        assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            JavaClass expected = sequential.get(i);
+            JavaClass actual = parallel.get(i);
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getPackageName(), actual.getPackageName());
+            assertEquals(expected.isAbstract(), actual.isAbstract());
+            assertEquals(expected.getSourceFile(), actual.getSourceFile());
+            assertEquals(new HashSet<JavaPackage>(expected.getImportedPackages()),
+                    new HashSet<JavaPackage>(actual.getImportedPackages()));
+        }
+    }
+
+    @Test
+    public void parallelBuildNotifiesListenersInOrder() throws IOException {
+        FileManager fm = new FileManager();
+        fm.addDirectory(getTestBuildDir());
+        fm.addDirectory(getTestDataDir() + "test.jar");
+
+        ClassFileParser parser = new ClassFileParser(PackageFilter.all());
+        final List<JavaClass> notified = new ArrayList<JavaClass>();
+        parser.addParseListener(new ParserListener() {
+            public void onParsedJavaClass(JavaClass parsedClass) {
+                notified.add(parsedClass);
+            }
+        });
+        JavaClassBuilder builder = new JavaClassBuilder(parser, fm);
+        builder.setThreads(3);
+
+        Collection<JavaClass> classes = builder.build();
+
+        assertEquals(new ArrayList<JavaClass>(classes), notified);
+    }
+
+    @Test
+    public void streamingBuildMatchesCollectingBuild() throws IOException {
+        for (int threads = 1; threads <= 3; threads += 2) {
+            FileManager fm = new FileManager();
+            fm.addDirectory(getTestBuildDir());
+            fm.addDirectory(getTestDataDir() + "test.jar");
+            JavaClassBuilder builder = new JavaClassBuilder(new ClassFileParser(PackageFilter.all()), fm);
+            builder.setThreads(threads);
+
+            final List<JavaClass> streamed = new ArrayList<JavaClass>();
+            int count = builder.build(new ParserListener() {
+                public void onParsedJavaClass(JavaClass parsedClass) {
+                    streamed.add(parsedClass);
+                }
+            });
+
+            assertEquals(streamed.size(), count);
+            assertEquals(new ArrayList<JavaClass>(builder.build()), streamed);
+        }
+    }
+
+    @Test
+    public void countMatchesBuild() throws IOException {
+        for (boolean inner : new boolean[]{true, false}) {
+            FileManager fm = new FileManager();
+            fm.acceptInnerClasses(inner);
+            fm.addDirectory(getTestBuildDir());
+            fm.addDirectory(getTestDataDir() + "test.jar");
+            fm.addDirectory(getTestDataDir() + "test.zip");
+
+            assertEquals(new JavaClassBuilder(fm).build().size(), new JavaClassBuilder(fm).countClasses());
+        }
+    }
+
+    @Test
+    public void countReadsNoEntries() throws IOException {
+        File jar = File.createTempFile("unparsable", ".jar");
+        try {
+            ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+            for (String name : new String[]{"a/A.class", "a/A$1.class", "a/readme.txt"}) {
+                out.putNextEntry(new ZipEntry(name));
+                out.write(new byte[]{1, 2, 3});
+                out.closeEntry();
+            }
+            out.close();
+
+            FileManager fm = new FileManager();
+            fm.addDirectory(jar.getPath());
+            JavaClassBuilder builder = new JavaClassBuilder(fm);
+            assertEquals(2, builder.countClasses());
+
+            fm.acceptInnerClasses(false);
+            assertEquals(1, builder.countClasses());
+        } finally {
+            jar.delete();
+        }
+    }
+
+    @Test
+    public void countIsKeptUntilFileManagerChanges() throws IOException {
+        File jar = File.createTempFile("copy", ".jar");
+        try {
+            copy(new File(getTestDataDir() + "test.jar"), jar);
+            FileManager fm = new FileManager();
+            fm.addDirectory(jar.getPath());
+            JavaClassBuilder builder = new JavaClassBuilder(fm);
+            int count = builder.build().size();
+
+            jar.delete();
+            assertEquals(count, builder.countClasses());
+
+            copy(new File(getTestDataDir() + "test.jar"), jar);
+            fm.addDirectory(getTestDataDir() + "test.zip");
+            assertEquals(new JavaClassBuilder(fm).build().size(), builder.countClasses());
+        } finally {
+            jar.delete();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidThreads() {
+        new JavaClassBuilder().setThreads(0);
+    }
+
+    private List<JavaClass> build(int threads) throws IOException {
+        FileManager fm = new FileManager();
+        fm.addDirectory(getBuildDir());
+        fm.addDirectory(getTestBuildDir());
+        fm.addDirectory(getTestDataDir() + "test.jar");
+        fm.addDirectory(getTestDataDir() + "test.zip");
+
+        JavaClassBuilder builder = new JavaClassBuilder(new ClassFileParser(PackageFilter.all()), fm);
+        builder.setThreads(threads);
+        return new ArrayList<JavaClass>(builder.build());
+    }
+}
@@ -0,0 +1,177 @@
+package jdepend.framework;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JavaPackageTest extends JDependTestCase {
+
+    @Test
+    public void dependenciesKeepInsertionOrder() {
+        JavaPackage a = new JavaPackage("A");
+        JavaPackage b = new JavaPackage("B");
+        JavaPackage c = new JavaPackage("C");
+        JavaPackage d = new JavaPackage("D");
+
+        a.dependsUpon(c, b, d, b, new JavaPackage("C"), a);
+        d.dependsUpon(a);
+        b.dependsUpon(a);
+
+        assertEquals(Arrays.asList(c, b, d), new ArrayList<JavaPackage>(a.getEfferents()));
+        assertEquals(3, a.efferentCoupling());
+        assertEquals(Arrays.asList(d, b), new ArrayList<JavaPackage>(a.getAfferents()));
+        assertEquals(2, a.afferentCoupling());
+    }
+
+    @Test
+    public void dependencyWeights() {
+        JavaPackage a = new JavaPackage("A");
+        JavaPackage b = new JavaPackage("B");
+        JavaPackage c = new JavaPackage("C");
+
+        a.dependsUpon(b, c, b, a);
+        a.dependsUpon(new JavaPackage("B"));
+
+        assertEquals(3, a.getDependencyWeight(b));
+        assertEquals(1, a.getDependencyWeight(c));
+        assertEquals(0, a.getDependencyWeight(a));
+        assertEquals(0, b.getDependencyWeight(a));
+
+        a.setEfferents(Arrays.asList(b));
+        assertEquals(1, a.getDependencyWeight(b));
+        assertEquals(0, a.getDependencyWeight(c));
+    }
+
+    @Test
+    public void analyzedDependencyWeights() throws IOException {
+        // copies of a class found again only add the dependencies missing so far
+        final Map<String, Integer> importers = new HashMap<String, Integer>();
+        final Set<String> classNames = new HashSet<String>();
+        JDepend jdepend = new JDepend();
+        jdepend.addDirectory(getTestBuildDir());
+        jdepend.addParseListener(new ParserListener() {
+            public void onParsedJavaClass(JavaClass parsedClass) {
+                boolean copy = !classNames.add(parsedClass.getName());
+                for (JavaPackage imported : parsedClass.getImportedPackages()) {
+                    String edge = parsedClass.getPackageName() + " -> " + imported.getName();
+                    Integer count = importers.get(edge);
+                    if (!copy || count == null) {
+                        importers.put(edge, count == null ? 1 : count + 1);
+                    }
+                }
+            }
+        });
+        jdepend.analyze();
+
+        int edges = 0;
+        for (JavaPackage jPackage : jdepend.getPackages()) {
+            for (JavaPackage efferent : jPackage.getEfferents()) {
+                String edge = jPackage.getName() + " -> " + efferent.getName();
+                assertEquals(edge, importers.get(edge).intValue(), jPackage.getDependencyWeight(efferent));
+                edges++;
+            }
+        }
+        assertEquals(importers.size(), edges);
+    }
+
+    @Test
+    public void repeatedAnalysisKeepsDependencyWeights() throws IOException {
+        JDepend jdepend = new JDepend();
+        jdepend.addDirectory(getBuildDir());
+        jdepend.analyze();
+        Map<String, Integer> weights = dependencyWeights(jdepend);
+        assertEquals(1, jdepend.getPackage("jdepend.textui").getDependencyWeight(jdepend.getPackage("jdepend.framework")));
+
+        jdepend.analyze();
+        assertEquals(weights, dependencyWeights(jdepend));
+        assertEquals(1, jdepend.getPackage("jdepend.textui").getDependencyWeight(jdepend.getPackage("jdepend.framework")));
+    }
+
+    private static Map<String, Integer> dependencyWeights(JDepend jdepend) {
+        Map<String, Integer> weights = new HashMap<String, Integer>();
+        for (JavaPackage jPackage : jdepend.getPackages()) {
+            for (JavaPackage efferent : jPackage.getEfferents()) {
+                weights.put(jPackage.getName() + " -> " + efferent.getName(), jPackage.getDependencyWeight(efferent));
+            }
+        }
+        return weights;
+    }
+
+    @Test
+    public void manyDependencies() {
+        JavaPackage utils = new JavaPackage("utils");
+        List<JavaPackage> clients = new ArrayList<JavaPackage>();
+        for (int i = 0; i < 20000; i++) {
+            JavaPackage client = new JavaPackage("client" + i);
+            client.dependsUpon(utils);
+            client.dependsUpon(utils);
+            clients.add(client);
+        }
+
+        assertEquals(clients.size(), utils.afferentCoupling());
+        assertEquals(clients, new ArrayList<JavaPackage>(utils.getAfferents()));
+    }
+
+    @Test
+    public void scannedDependencyCounts() throws IOException {
+        JDepend jdepend = new JDepend();
+        jdepend.addDirectory(getTestBuildDir());
+        jdepend.scanCode(true);
+        jdepend.analyze();
+
+        JavaPackage framework = jdepend.getPackage("jdepend.framework");
+        JavaPackage sql = jdepend.getPackage("java.sql");
+        assertTrue(framework.getEfferents().contains(sql));
+        assertEquals(EnumSet.of(DependencyKind.REFERENCE), framework.getDependencyKinds(sql));
+        assertTrue(framework.getDependencyCount(jdepend.getPackage("java.net"), DependencyKind.NEW) >= 1);
+        assertTrue(framework.getDependencyCount(jdepend.getPackage("org.junit"), DependencyKind.ANNOTATION) >= 1);
+    }
+
+    @Test
+    public void metricsFollowChanges() {
+        JavaPackage a = new JavaPackage("A");
+        JavaPackage b = new JavaPackage("B");
+        JavaClass abstractClass = new JavaClass("A.Abstract");
+        abstractClass.isAbstract(true);
+        JavaClass concreteClass = new JavaClass("A.Concrete");
+
+        a.addClass(abstractClass);
+        a.addClass(concreteClass);
+        a.addClass(concreteClass);
+        assertEquals(1, a.getAbstractClassCount());
+        assertEquals(1, a.getConcreteClassCount());
+        assertEquals(0.5f, a.abstractness(), 0);
+        assertEquals(0f, a.instability(), 0);
+        assertEquals(0.5f, a.distance(), 0);
+
+        a.dependsUpon(b);
+        assertEquals(1f, a.instability(), 0);
+        assertEquals(0.5f, a.distance(), 0);
+        assertEquals(0f, b.instability(), 0);
+        assertEquals(1f, b.distance(), 0);
+
+        assertTrue(a.removeClass(abstractClass));
+        assertEquals(0, a.getAbstractClassCount());
+        assertEquals(0f, a.abstractness(), 0);
+        assertEquals(0f, a.distance(), 0);
+
+        a.removeImport(b, null);
+        assertEquals(0f, a.instability(), 0);
+        assertEquals(1f, a.distance(), 0);
+        assertEquals(0, b.afferentCoupling());
+
+        a.setVolatility(0);
+        assertEquals(0f, a.distance(), 0);
+    }
+}
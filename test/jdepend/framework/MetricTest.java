@@ -38,8 +38,20 @@ public class MetricTest extends JDependTestCase {
         assertAnalyzePackages();
     }
 
+    @Test
+    public void analyzeClassFilesWithoutClassImports() throws IOException {
+        jdepend.retainClassImports(false);
+        jdepend.addDirectory(getBuildDir());
+        jdepend.addDirectory(getTestBuildDir());
+        assertAnalyzePackages();
+
+        for (JavaClass jClass : jdepend.getPackage("jdepend.framework").getClasses()) {
+            assertTrue(jClass.getImportedPackages().isEmpty());
+        }
+    }
+
     private void assertAnalyzePackages() {
-        assertEquals(66, jdepend.countClasses());
+        assertEquals(99, jdepend.countClasses());
 
         PackageFilter filter = jdepend.getFilter().excluding("junit.*");
 
@@ -55,13 +67,13 @@ public class MetricTest extends JDependTestCase {
         JavaPackage p = jdepend.getPackage("jdepend.framework");
         assertNotNull(p);
 
-        assertEquals(27, p.getConcreteClassCount());
+        assertEquals(55, p.getConcreteClassCount());
         assertEquals(6, p.getAbstractClassCount());
-        assertEquals(3, p.afferentCoupling());
+        assertEquals(4, p.afferentCoupling());
         assertEquals(6, p.efferentCoupling());
-        assertEquals(format(0.18f), format(p.abstractness()));
-        assertEquals(format(0.67f), format(p.instability()));
-        assertEquals(format(0.15f), format(p.distance()));
+        assertEquals(format(0.10f), format(p.abstractness()));
+        assertEquals(format(0.6f), format(p.instability()));
+        assertEquals(format(0.3f), format(p.distance()));
         assertEquals(1, p.getVolatility());
     }
 
@@ -73,9 +85,9 @@ public class MetricTest extends JDependTestCase {
         assertEquals(0, p.getAbstractClassCount());
         assertEquals(1, p.efferentCoupling());
         assertEquals("0", format(p.abstractness()));
-        assertEquals(1, p.afferentCoupling());
-        assertEquals(format(0.5f), format(p.instability()));
-        assertEquals(format(0.5f), format(p.distance()));
+        assertEquals(2, p.afferentCoupling());
+        assertEquals(format(0.33f), format(p.instability()));
+        assertEquals(format(0.67f), format(p.distance()));
         assertEquals(1, p.getVolatility());
     }
 
@@ -97,13 +109,13 @@ public class MetricTest extends JDependTestCase {
         JavaPackage p = jdepend.getPackage("jdepend.xmlui");
         assertNotNull(p);
 
-        assertEquals(1, p.getConcreteClassCount());
+        assertEquals(2, p.getConcreteClassCount());
         assertEquals(0, p.getAbstractClassCount());
-        assertEquals(0, p.afferentCoupling());
+        assertEquals(1, p.afferentCoupling());
         assertEquals(2, p.efferentCoupling());
         assertEquals(format(0.0f), format(p.abstractness()));
-        assertEquals("1", format(p.instability()));
-        assertEquals(format(0.0f), format(p.distance()));
+        assertEquals(format(0.67f), format(p.instability()));
+        assertEquals(format(0.33f), format(p.distance()));
         assertEquals(1, p.getVolatility());
     }
 
@@ -0,0 +1,165 @@
+package jdepend.framework;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PackageGraphTest extends JDependTestCase {
+
+    @Test
+    public void graphMatchesPackages() throws IOException {
+        assertSameAnalysis(false);
+    }
+
+    @Test
+    public void offHeapGraphMatchesPackages() throws IOException {
+        assertSameAnalysis(true);
+    }
+
+    @Test
+    public void viewsAreReadOnly() throws IOException {
+        JDepend jdepend = new JDepend();
+        jdepend.addDirectory(getBuildDir());
+        jdepend.compactPackages(true);
+        jdepend.analyze();
+
+        JavaPackage framework = jdepend.getPackage("jdepend.framework");
+        try {
+            framework.addClass(new JavaClass("jdepend.framework.Foo"));
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            framework.dependsUpon(new JavaPackage("foo"));
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            framework.getEfferents().clear();
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            jdepend.reanalyze(new ArrayList<java.io.File>());
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void compactAnalysisIsRepeatable() throws IOException {
+        JDepend jdepend = new JDepend();
+        jdepend.addDirectory(getBuildDir());
+        jdepend.addPackage("jdepend.unused").setVolatility(0);
+        jdepend.compactPackages(true);
+        jdepend.analyze();
+        PackageGraph first = jdepend.getPackageGraph();
+        int packages = jdepend.countPackages();
+        int classes = jdepend.countClasses();
+
+        jdepend.analyze();
+        assertNotNull(jdepend.getPackageGraph());
+        assertFalse(first == jdepend.getPackageGraph());
+        assertEquals(packages, jdepend.countPackages());
+        assertEquals(classes, jdepend.getPackageGraph().classCount());
+        assertEquals(0, jdepend.getPackage("jdepend.unused").getVolatility());
+
+        jdepend.compactPackages(false);
+        jdepend.analyze();
+        assertNull(jdepend.getPackageGraph());
+        assertEquals(packages, jdepend.countPackages());
+        int analyzed = 0;
+        for (JavaPackage jPackage : jdepend.getPackages()) {
+            analyzed += jPackage.getClassCount();
+        }
+        assertEquals(classes, analyzed);
+        assertEquals(0, jdepend.getPackage("jdepend.unused").getVolatility());
+        jdepend.getPackage("jdepend.framework").addClass(new JavaClass("jdepend.framework.Foo"));
+    }
+
+    @Test
+    public void duplicateClassesAreAddedOnce() {
+        PackageGraph.Builder builder = new PackageGraph.Builder(false);
+        int a = builder.addPackage("a");
+        int b = builder.addPackage("b");
+        for (int i = 0; i < 5000; i++) {
+            assertTrue(builder.addClass("a.C" + i, a, i % 3 == 0));
+        }
+        assertFalse(builder.addClass("a.C42", a, false));
+        assertTrue(builder.addClass("b.été", b, false));
+        builder.addDependency(a, b, null);
+        builder.addDependency(a, b, null);
+        builder.addDependency(a, a, null);
+        PackageGraph graph = builder.build();
+
+        assertEquals(5001, graph.classCount());
+        assertEquals(1, graph.edgeCount());
+        JavaPackage pa = graph.getPackage("a");
+        assertEquals(5000, pa.getClassCount());
+        assertEquals(1667, pa.getAbstractClassCount());
+        assertEquals(2, pa.getDependencyWeight(new JavaPackage("b")));
+        assertEquals(0, pa.getDependencyWeight(pa));
+        assertEquals("b.été", graph.getPackage("b").getClasses().iterator().next().getName());
+        assertNull(graph.getPackage("c"));
+    }
+
+    private void assertSameAnalysis(boolean offHeap) throws IOException {
+        JDepend expected = new JDepend();
+        expected.addDirectory(getBuildDir());
+        expected.addDirectory(getTestBuildDir());
+        expected.scanCode(true);
+        expected.analyze();
+
+        JDepend actual = new JDepend();
+        actual.addDirectory(getBuildDir());
+        actual.addDirectory(getTestBuildDir());
+        actual.scanCode(true);
+        actual.storeClassNamesOffHeap(offHeap);
+        actual.compactPackages(true);
+        actual.analyze();
+
+        PackageGraph graph = actual.getPackageGraph();
+        assertNotNull(graph);
+        assertEquals(expected.countPackages(), graph.size());
+        assertEquals(expected.countPackages(), actual.countPackages());
+        for (JavaPackage e : expected.getPackages()) {
+            JavaPackage a = actual.getPackage(e.getName());
+            String name = e.getName();
+            assertEquals(name, e.getClasses(), new java.util.HashSet<JavaClass>(a.getClasses()));
+            assertEquals(name, e.getAbstractClassCount(), a.getAbstractClassCount());
+            assertEquals(name, names(e.getEfferents()), names(a.getEfferents()));
+            assertEquals(name, names(e.getAfferents()), names(a.getAfferents()));
+            for (JavaPackage efferent : e.getEfferents()) {
+                assertEquals(name, e.getDependencyWeight(efferent), a.getDependencyWeight(efferent));
+                assertEquals(name, e.getDependencyKinds(efferent), a.getDependencyKinds(efferent));
+                for (DependencyKind kind : DependencyKind.values()) {
+                    assertEquals(name, e.getDependencyCount(efferent, kind), a.getDependencyCount(efferent, kind));
+                }
+            }
+            assertEquals(name, e.distance(), a.distance(), 0);
+            assertEquals(name, e.containsCycle(), a.containsCycle());
+            List<JavaPackage> expectedCycle = new ArrayList<JavaPackage>();
+            List<JavaPackage> actualCycle = new ArrayList<JavaPackage>();
+            e.collectAllCycles(expectedCycle);
+            a.collectAllCycles(actualCycle);
+            assertEquals(name, names(expectedCycle), names(actualCycle));
+        }
+    }
+
+    private static List<String> names(Iterable<JavaPackage> packages) {
+        List<String> names = new ArrayList<String>();
+        for (JavaPackage jPackage : packages) {
+            names.add(jPackage.getName());
+        }
+        return names;
+    }
+}
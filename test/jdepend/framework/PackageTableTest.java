@@ -0,0 +1,108 @@
+package jdepend.framework;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class PackageTableTest extends JDependTestCase {
+
+    @Test
+    public void internedPackagesAreCanonical() {
+        PackageTable table = new PackageTable();
+        JavaPackage a = table.intern("a");
+        JavaPackage configured = new JavaPackage("b", 0);
+
+        assertSame(a, table.intern(new String("a")));
+        assertSame(configured, table.intern(configured));
+        assertSame(configured, table.intern("b"));
+        assertSame(a, table.intern(new JavaPackage("a")));
+        assertEquals(0, table.idOf("a"));
+        assertEquals(1, table.idOf("b"));
+        assertEquals(2, table.idOf("c"));
+        assertSame(configured, table.get(1));
+        assertEquals(3, table.size());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void unknownId() {
+        new PackageTable().get(0);
+    }
+
+    @Test
+    public void concurrentInterning() throws Exception {
+        final PackageTable table = new PackageTable();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<JavaPackage[]>> results = new ArrayList<Future<JavaPackage[]>>();
+            for (int t = 0; t < 4; t++) {
+                results.add(executor.submit(new Callable<JavaPackage[]>() {
+                    public JavaPackage[] call() {
+                        JavaPackage[] packages = new JavaPackage[1000];
+                        for (int i = 0; i < packages.length; i++) {
+                            packages[i] = table.intern("p" + i);
+                        }
+                        return packages;
+                    }
+                }));
+            }
+            JavaPackage[] first = results.get(0).get();
+            for (Future<JavaPackage[]> result : results) {
+                assertArrayEquals(first, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1000, table.size());
+        for (int id = 0; id < table.size(); id++) {
+            assertEquals(id, table.idOf(table.get(id).getName()));
+        }
+    }
+
+    @Test
+    public void parsersShareCanonicalPackages() throws IOException {
+        String dir = getTestBuildDir() + getPackageSubDir();
+        assertSameImports(new ClassFileParser(), dir);
+        assertSameImports(new ByteBufferClassFileParser(), dir);
+    }
+
+    @Test
+    public void analyzedPackagesAreImportedPackages() throws IOException {
+        JDepend jdepend = new JDepend();
+        jdepend.addDirectory(getBuildDir());
+        jdepend.analyze();
+
+        JavaPackage framework = jdepend.getPackage("jdepend.framework");
+        assertSame(framework, jdepend.getPackageTable().intern("jdepend.framework"));
+        for (JavaClass jClass : framework.getClasses()) {
+            assertSame(framework.getName(), jClass.getPackageName());
+            for (JavaPackage imported : jClass.getImportedPackages()) {
+                assertSame(jdepend.getPackage(imported.getName()), imported);
+            }
+        }
+    }
+
+    private void assertSameImports(AbstractParser parser, String dir) throws IOException {
+        JavaClass a = parser.parse(new File(dir + "ExampleConcreteClass.class"));
+        JavaClass b = parser.newWorker().parse(new File(dir + "ExampleAbstractClass.class"));
+
+        assertSame(a.getPackageName(), b.getPackageName());
+        JavaPackage javaLang = parser.getPackageTable().intern("java.lang");
+        assertTrue(a.getImportedPackages().contains(javaLang));
+        for (JavaPackage imported : a.getImportedPackages()) {
+            assertSame(parser.getPackageTable().intern(imported.getName()), imported);
+        }
+        for (JavaPackage imported : b.getImportedPackages()) {
+            assertSame(parser.getPackageTable().intern(imported.getName()), imported);
+        }
+    }
+}
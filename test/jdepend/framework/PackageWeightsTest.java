@@ -0,0 +1,55 @@
+package jdepend.framework;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PackageWeightsTest extends JDependTestCase {
+
+    @Test
+    public void weightsAreAddedByName() {
+        PackageWeights weights = new PackageWeights();
+        JavaPackage a = new JavaPackage("a");
+
+        assertEquals(0, weights.get(a));
+        weights.add(a, 1);
+        weights.add(new JavaPackage("a"), 2);
+        weights.add(new JavaPackage("b"), 1);
+
+        assertEquals(3, weights.get(a));
+        assertEquals(1, weights.get(new JavaPackage("b")));
+        assertEquals(0, weights.get(new JavaPackage("c")));
+        assertEquals(2, weights.size());
+    }
+
+    @Test
+    public void manyPackages() {
+        PackageWeights weights = new PackageWeights();
+        for (int i = 0; i < 10000; i++) {
+            weights.add(new JavaPackage("p" + i), i);
+            weights.add(new JavaPackage("p" + i), 1);
+        }
+
+        assertEquals(10000, weights.size());
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i + 1, weights.get(new JavaPackage("p" + i)));
+        }
+    }
+
+    @Test
+    public void removedWeightsKeepOthersReachable() {
+        PackageWeights weights = new PackageWeights();
+        for (int i = 0; i < 1000; i++) {
+            weights.add(new JavaPackage("p" + i), i + 1);
+        }
+        for (int i = 0; i < 1000; i += 3) {
+            weights.remove(new JavaPackage("p" + i));
+        }
+        weights.remove(new JavaPackage("q"));
+
+        assertEquals(666, weights.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 3 == 0 ? 0 : i + 1, weights.get(new JavaPackage("p" + i)));
+        }
+    }
+}
@@ -1,20 +1,45 @@
 package jdepend.framework;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
 import static java.lang.String.format;
 
 public class ProfilingHarness {
 
     public static void main(String[] args) throws Exception {
         long start = System.currentTimeMillis();
+        long allocated = 0;
         for (int i = 0; i < 10; i++) {
             JDepend jDepend = new JDepend();
             for (String arg : args) {
                 jDepend.addDirectory(arg);
             }
-            System.out.println(jDepend.countClasses());
+            long before = allocatedBytes();
+            jDepend.analyze();
+            allocated += allocatedBytes() - before;
+            System.out.println(jDepend.countPackages());
         }
         long end = System.currentTimeMillis();
         System.out.println(format("done: %sms", (end - start)));
+        if (allocatedBytes() >= 0) {
+            System.out.println(format("allocated per analysis: %sKB", allocated / 10 / 1024));
+        }
     }
 
+    /*
+     * Bytes allocated by the current thread, or -1 if the JVM cannot
+     * measure them.
+     */
+    private static long allocatedBytes() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            Method method = Class.forName("com.sun.management.ThreadMXBean")
+                    .getMethod("getThreadAllocatedBytes", long.class);
+            return (Long) method.invoke(bean, Thread.currentThread().getId());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
 }
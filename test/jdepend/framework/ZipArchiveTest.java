@@ -0,0 +1,135 @@
+package jdepend.framework;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ZipArchiveTest extends JDependTestCase {
+
+    @Test
+    public void deflatedEntries() throws IOException {
+        assertSameEntries(new File(getTestDataDir() + "test.jar"));
+        assertSameEntries(new File(getTestDataDir() + "test.zip"));
+    }
+
+    @Test
+    public void storedEntries() throws IOException {
+        File file = File.createTempFile("stored", ".jar");
+        file.deleteOnExit();
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            out.setMethod(ZipOutputStream.STORED);
+            addStored(out, "jdepend/framework/ExampleInterface.class",
+                    getTestBuildDir() + getPackageSubDir() + "ExampleInterface.class");
+            addStored(out, "jdepend/framework/ExampleAbstractClass.class",
+                    getTestBuildDir() + getPackageSubDir() + "ExampleAbstractClass.class");
+        } finally {
+            out.close();
+        }
+
+        assertSameEntries(file);
+
+        JavaClassBuilder builder = new JavaClassBuilder(new ByteBufferClassFileParser(), new FileManager());
+        assertEquals(2, builder.buildClasses(file).size());
+
+        // the mapped entries are parsed in place, never as streams
+        builder = new JavaClassBuilder(new ByteBufferClassFileParser() {
+            @Override
+            public JavaClass parse(InputStream is) throws IOException {
+                throw new AssertionError("Entry parsed as a stream");
+            }
+        }, new FileManager());
+        assertEquals(2, builder.buildClasses(file).size());
+    }
+
+    @Test(expected = ZipException.class)
+    public void closedArchive() throws IOException {
+        ZipArchive archive = ZipArchive.open(new File(getTestDataDir() + "test.jar"));
+        ZipArchive.Entry entry = archive.getEntries().get(0);
+        archive.close();
+        archive.close();
+        archive.read(entry);
+    }
+
+    @Test(expected = ZipException.class)
+    public void emptyFile() throws IOException {
+        File file = File.createTempFile("empty", ".zip");
+        file.deleteOnExit();
+        ZipArchive.open(file);
+    }
+
+    private void addStored(ZipOutputStream out, String name, String path) throws IOException {
+        byte[] data = read(new java.io.FileInputStream(path));
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ZipEntry entry = new ZipEntry(name);
+        entry.setSize(data.length);
+        entry.setCompressedSize(data.length);
+        entry.setCrc(crc.getValue());
+        out.putNextEntry(entry);
+        out.write(data);
+        out.closeEntry();
+    }
+
+    private void assertSameEntries(File file) throws IOException {
+        ZipArchive archive = ZipArchive.open(file);
+        ZipFile zipFile = new ZipFile(file);
+        try {
+            List<String> expectedNames = new ArrayList<String>();
+            for (Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements(); ) {
+                ZipEntry entry = e.nextElement();
+                if (!entry.isDirectory()) {
+                    expectedNames.add(entry.getName());
+                }
+            }
+
+            List<String> names = new ArrayList<String>();
+            for (ZipArchive.Entry entry : archive.getEntries()) {
+                names.add(entry.getName());
+
+                ZipEntry expected = zipFile.getEntry(entry.getName());
+                assertEquals(expected.getCrc(), entry.getCrc() & 0xFFFFFFFFL);
+                assertEquals(expected.getSize(), entry.getSize());
+
+                ByteBuffer buffer = archive.read(entry);
+                byte[] actual = new byte[buffer.remaining()];
+                buffer.get(actual);
+                assertArrayEquals(read(zipFile.getInputStream(expected)), actual);
+            }
+            assertEquals(expectedNames, names);
+        } finally {
+            archive.close();
+            zipFile.close();
+        }
+    }
+
+    private byte[] read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}